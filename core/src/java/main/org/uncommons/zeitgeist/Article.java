@@ -15,18 +15,14 @@
 // ============================================================================
 package org.uncommons.zeitgeist;
 
-import java.io.BufferedReader;
-import java.io.IOException;
-import java.io.InputStream;
-import java.io.InputStreamReader;
 import java.net.URL;
+import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Collections;
 import java.util.Date;
 import java.util.HashMap;
-import java.util.HashSet;
 import java.util.List;
 import java.util.Map;
-import java.util.Set;
 
 /**
  * Holds all of the information (title, date, contents) about a single article.
@@ -35,39 +31,17 @@ import java.util.Set;
 public class Article
 {
     private static final int HALF_HOUR = 1800000;
-    private static final Set<String> LOW_VALUE_WORDS = new HashSet<String>();
-    static
+    private static final StemCache STEM_CACHE = new StemCache(100000);
+    // Tokenisers re-use their buffers, so each thread has its own.
+    private static final ThreadLocal<Tokeniser> TOKENISER = new ThreadLocal<Tokeniser>()
     {
-        // Load the list of words that should be ignored.
-        InputStream wordStream = Article.class.getClassLoader().getResourceAsStream("org/uncommons/zeitgeist/low-value-words.txt");
-        BufferedReader wordReader = new BufferedReader(new InputStreamReader(wordStream));
-        try
+        @Override
+        protected Tokeniser initialValue()
         {
-            for (String word = wordReader.readLine(); word != null; word = wordReader.readLine())
-            {
-                String trimmed = word.trim();
-                if (!trimmed.isEmpty())
-                {
-                    LOW_VALUE_WORDS.add(trimmed);
-                }
-            }
+            return new Tokeniser();
         }
-        catch (IOException ex)
-        {
-            throw new IllegalStateException(ex);
-        }
-        finally
-        {
-            try
-            {
-                wordReader.close();
-            }
-            catch (IOException ex)
-            {
-                ex.printStackTrace();
-            }
-        }
-    }
+    };
+    private static volatile StopWords lowValueWords = StopWords.getDefault();
 
     private final String headline;
     private final String text;
@@ -77,6 +51,9 @@ public class Article
     private final String feedTitle;
     private final Image feedLogo;
     private final Image feedIcon;
+    // Tokenising and stemming is expensive, so it is done at most once (or occasionally
+    // twice, if two threads race, which is harmless since the result is the same).
+    private volatile WordCounts wordCounts = null;
 
 
     /**
@@ -167,49 +144,235 @@ public class Article
     }
 
 
+    /**
+     * @return A map from the stem of each word in the headline and text of this article
+     * (other than "low value words" like "the" and "it") to the number of times it occurs.
+     */
     public Map<String, Integer> getWordCounts()
     {
-        Map<String, Integer> wordCounts = countWords(FeedUtils.stripMarkUpAndPunctuation(text));
-        // Add headline words to the word counts from the content text.
-        for (Map.Entry<String, Integer> entry : countWords(FeedUtils.stripMarkUpAndPunctuation(headline)).entrySet())
+        WordCounts counts = getCachedWordCounts();
+        Map<String, Integer> map = new HashMap<String, Integer>(counts.words.length * 2);
+        for (int i = 0; i < counts.words.length; i++)
+        {
+            map.put(counts.words[i], counts.counts[i]);
+        }
+        return map;
+    }
+
+
+    /**
+     * Identifies the terms in the headline and text of this article, in the same way as
+     * {@link #getWordCounts()}, but with each term represented by its ID in the specified
+     * dictionary.
+     * @param dictionary Allocates the term IDs.
+     * @return The IDs and counts of the terms in this article.
+     */
+    public TermVector getTermVector(TermDictionary dictionary)
+    {
+        WordCounts counts = getCachedWordCounts();
+        int[] termIds = new int[counts.words.length];
+        for (int i = 0; i < termIds.length; i++)
+        {
+            termIds[i] = dictionary.getId(counts.words[i]);
+        }
+        return new TermVector(termIds, counts.counts);
+    }
+
+
+    /**
+     * Tokenise and stem the headline and text of this article now, on the calling thread,
+     * rather than when the words are first required.  This allows the work to be done
+     * by the threads that download the feeds, while they would otherwise be waiting for
+     * the network.
+     */
+    public void prepareWordCounts()
+    {
+        getCachedWordCounts();
+    }
+
+
+    /**
+     * Replaces the standard list of "low value words" (words like "the" and "it") that
+     * are excluded from the word counts of all articles.  Articles that have already
+     * counted their words are not affected.
+     * @param words The words to exclude.
+     */
+    public static void setLowValueWords(StopWords words)
+    {
+        lowValueWords = words;
+    }
+
+
+    /**
+     * @return The cache of word stems shared by all articles.
+     */
+    static StemCache getStemCache()
+    {
+        return STEM_CACHE;
+    }
+
+
+    /**
+     * Adds each distinct term in the headline and text of this article to a sketch of
+     * document frequencies.  Unless they have already been counted, the words are not
+     * kept, so that articles don't retain words that will turn out to be too rare to use.
+     */
+    void addTerms(CountMinSketch sketch)
+    {
+        for (String word : getWordCountsWithoutCaching().words)
         {
-            Integer count = wordCounts.get(entry.getKey());
-            if (count == null)
+            sketch.add(word);
+        }
+    }
+
+
+    /**
+     * Like {@link #getTermVector(TermDictionary)} but only for terms that, according to a
+     * sketch of document frequencies, may occur in enough articles.  Only those terms are
+     * added to the dictionary.  Unless they have already been counted, the words are not kept.
+     * @param dictionary Allocates the term IDs.
+     * @param sketch Estimates the number of articles that each term appears in.
+     * @param minArticles Terms estimated to appear in fewer articles than this are omitted.
+     * @return The IDs and counts of the remaining terms in this article.
+     */
+    TermVector getTermVector(TermDictionary dictionary, CountMinSketch sketch, int minArticles)
+    {
+        WordCounts counts = getWordCountsWithoutCaching();
+        int[] termIds = new int[counts.words.length];
+        int[] termCounts = new int[counts.words.length];
+        int size = 0;
+        for (int i = 0; i < counts.words.length; i++)
+        {
+            if (sketch.estimate(counts.words[i]) >= minArticles)
             {
-                count = 0;
+                termIds[size] = dictionary.getId(counts.words[i]);
+                termCounts[size++] = counts.counts[i];
             }
-            wordCounts.put(entry.getKey(), count + entry.getValue());
         }
-        return wordCounts;
+        return new TermVector(Arrays.copyOf(termIds, size), Arrays.copyOf(termCounts, size));
     }
 
 
     /**
-     * Count how many times each word occurs in the specified text.  Excludes words that are on
-     * the "low value words" list (words like "the" and "it").
-     * @param text The text to count the words of.
-     * @return A map of word counts.
+     * Like {@link #getTermVector(TermDictionary)} but with each term represented by the
+     * column that it is assigned to by a {@link FeatureHasher}, so that no dictionary is
+     * needed.  The counts of terms that are assigned to the same column are added together.
+     * Unless they have already been counted, the words are not kept.
+     * @param hasher Assigns terms to columns.
+     * @param sample Remembers a term for each column.
+     * @param sketch Estimates the number of articles that each term appears in, or null to
+     * include all terms.
+     * @param minArticles Terms estimated to appear in fewer articles than this are omitted.
+     * @return The columns and counts of the terms in this article.
      */
-    private Map<String, Integer> countWords(String text)
+    TermVector getTermVector(FeatureHasher hasher, FeatureHasher.Sample sample, CountMinSketch sketch, int minArticles)
     {
-        Map<String, Integer> wordCounts = new HashMap<String, Integer>();
-        String[] words = text.split("\\s+");
-        for (String word : words)
+        WordCounts counts = getWordCountsWithoutCaching();
+        int[] columns = new int[counts.words.length];
+        int[] termCounts = new int[counts.words.length];
+        int size = 0;
+        for (int i = 0; i < counts.words.length; i++)
         {
-            if (word.length() > 0 && !LOW_VALUE_WORDS.contains(word))
+            if (sketch == null || sketch.estimate(counts.words[i]) >= minArticles)
             {
-                String stem = new Stemmer().stem(word);
-                Integer count = wordCounts.get(stem);
-                wordCounts.put(stem, count == null ? 1 : ++count);
+                columns[size] = hasher.getColumn(counts.words[i]);
+                termCounts[size] = counts.counts[i];
+                sample.add(columns[size], counts.words[i], termCounts[size++]);
             }
         }
-        return wordCounts;
+        return new TermVector(Arrays.copyOf(columns, size), Arrays.copyOf(termCounts, size));
+    }
+
+
+    private WordCounts getCachedWordCounts()
+    {
+        WordCounts counts = wordCounts;
+        if (counts == null)
+        {
+            counts = countWords();
+            wordCounts = counts;
+        }
+        return counts;
+    }
+
+
+    private WordCounts getWordCountsWithoutCaching()
+    {
+        WordCounts counts = wordCounts;
+        return counts == null ? countWords() : counts;
+    }
+
+
+    private WordCounts countWords()
+    {
+        List<String> stems = new ArrayList<String>();
+        Tokeniser tokeniser = TOKENISER.get();
+        addStems(tokeniser, text, stems);
+        addStems(tokeniser, headline, stems);
+        return new WordCounts(stems);
+    }
+
+
+    /**
+     * Add the stem of each word in the specified text (or mark-up) to a list, excluding words
+     * that are on the "low value words" list (words like "the" and "it").
+     */
+    private void addStems(Tokeniser tokeniser, String text, final List<String> stems)
+    {
+        final StopWords words = lowValueWords;
+        tokeniser.tokenise(text, new Tokeniser.TokenHandler()
+        {
+            @Override
+            public void handleToken(char[] chars, int offset, int length)
+            {
+                if (!words.contains(chars, offset, length))
+                {
+                    stems.add(STEM_CACHE.getStem(chars, offset, length));
+                }
+            }
+        });
     }
 
 
     @Override
     public String toString()
     {
-        return '[' + headline + "]\n" + text + '\n' + getWordCounts().keySet() + '\n';
+        return '[' + headline + "]\n" + text + '\n' + Arrays.asList(getCachedWordCounts().words) + '\n';
+    }
+
+
+    /**
+     * The distinct words of an article, in alphabetical order, and how many times each
+     * occurs.  Held as a pair of arrays rather than a map, since this is retained for the
+     * lifetime of the article.
+     */
+    private static final class WordCounts
+    {
+        private final String[] words;
+        private final int[] counts;
+
+        WordCounts(List<String> stems)
+        {
+            Collections.sort(stems);
+            int distinct = 0;
+            for (int i = 0; i < stems.size(); i++)
+            {
+                if (i == 0 || !stems.get(i).equals(stems.get(i - 1)))
+                {
+                    ++distinct;
+                }
+            }
+            this.words = new String[distinct];
+            this.counts = new int[distinct];
+            int index = -1;
+            for (int i = 0; i < stems.size(); i++)
+            {
+                if (i == 0 || !stems.get(i).equals(stems.get(i - 1)))
+                {
+                    words[++index] = stems.get(i);
+                }
+                ++counts[index];
+            }
+        }
     }
 }
@@ -43,6 +43,7 @@ public class ArticleFetcher
     private static final SimpleLogger LOG = new SimpleLogger(ArticleFetcher.class);
 
     private final FeedFetcher fetcher;
+    private boolean prepareWordCounts = false;
 
     public ArticleFetcher()
     {
@@ -56,6 +57,19 @@ public class ArticleFetcher
     }
 
 
+    /**
+     * Sets whether the words of each article are extracted by the thread that downloads
+     * its feed, so that the work overlaps with waiting for other feeds, rather than when
+     * they are first needed.
+     * @param prepareWordCounts True to tokenise articles as they are downloaded (defaults
+     * to false).
+     */
+    public void setPrepareWordCounts(boolean prepareWordCounts)
+    {
+        this.prepareWordCounts = prepareWordCounts;
+    }
+
+
     /**
      * Download the specified feeds and extract the articles.  If any of the feeds cannot be retrieved
      * or parsed, an error will be logged but there will be no exception and the other feeds will be processed
@@ -75,7 +89,7 @@ public class ArticleFetcher
             List<Callable<List<Article>>> tasks = new ArrayList<Callable<List<Article>>>(feeds.size());
             for (final URL feedURL : feeds)
             {
-                tasks.add(new FeedDownloadTask(fetcher, feedURL, filters, true));
+                tasks.add(new FeedDownloadTask(fetcher, feedURL, filters, true, prepareWordCounts));
             }
 
             List<Future<List<Article>>> results = executor.invokeAll(tasks);
@@ -0,0 +1,189 @@
+// ============================================================================
+//   Copyright 2009-2012 Daniel W. Dyer
+//
+//   Licensed under the Apache License, Version 2.0 (the "License");
+//   you may not use this file except in compliance with the License.
+//   You may obtain a copy of the License at
+//
+//       http://www.apache.org/licenses/LICENSE-2.0
+//
+//   Unless required by applicable law or agreed to in writing, software
+//   distributed under the License is distributed on an "AS IS" BASIS,
+//   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+//   See the License for the specific language governing permissions and
+//   limitations under the License.
+// ============================================================================
+package org.uncommons.zeitgeist;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.DoubleBuffer;
+import java.nio.channels.FileChannel;
+
+/**
+ * Matrix storage held outside of the Java heap, either in direct buffers or in a
+ * memory-mapped scratch file.  A single buffer can hold at most 2<sup>31</sup> bytes, so
+ * the values are split between fixed-size chunks, which allows matrices with more than
+ * 2<sup>31</sup> elements.  Values are stored as doubles in the platform's native byte
+ * order.
+ * @author Daniel Dyer
+ */
+final class BufferStorage extends MatrixStorage
+{
+    // Each chunk holds 2^27 doubles (1GB).
+    static final int CHUNK_SHIFT = 27;
+
+    private final StorageMode mode;
+    private final long size;
+    private final int chunkShift;
+    private final long chunkMask;
+    private final DoubleBuffer[] chunks;
+
+    /**
+     * @param size The number of values to be stored.
+     * @param chunkShift The base-2 logarithm of the number of values per chunk.
+     * @param scratchFile The file to map the values into, or null if they should be held
+     * in direct buffers.  The file is overwritten, and it may be deleted once the storage
+     * has been created.
+     * @throws IOException If the scratch file cannot be mapped.
+     */
+    BufferStorage(long size, int chunkShift, File scratchFile) throws IOException
+    {
+        this.mode = scratchFile == null ? StorageMode.OFF_HEAP : StorageMode.MAPPED;
+        this.size = size;
+        this.chunkShift = chunkShift;
+        this.chunkMask = (1L << chunkShift) - 1;
+        this.chunks = new DoubleBuffer[(int) ((size + chunkMask) >>> chunkShift)];
+        RandomAccessFile file = scratchFile == null ? null : new RandomAccessFile(scratchFile, "rw");
+        try
+        {
+            if (file != null)
+            {
+                // Extending the file fills it with zeros.
+                file.setLength(0);
+                file.setLength(size * 8);
+            }
+            for (int i = 0; i < chunks.length; i++)
+            {
+                long chunkStart = (long) i << chunkShift;
+                int chunkBytes = (int) (Math.min(size - chunkStart, 1L << chunkShift) * 8);
+                ByteBuffer buffer = file == null
+                                    ? ByteBuffer.allocateDirect(chunkBytes)
+                                    : file.getChannel().map(FileChannel.MapMode.READ_WRITE, chunkStart * 8, chunkBytes);
+                chunks[i] = buffer.order(ByteOrder.nativeOrder()).asDoubleBuffer();
+            }
+        }
+        finally
+        {
+            // Mappings remain valid after the file is closed.
+            if (file != null)
+            {
+                file.close();
+            }
+        }
+    }
+
+
+    @Override
+    StorageMode getMode()
+    {
+        return mode;
+    }
+
+
+    @Override
+    long size()
+    {
+        return size;
+    }
+
+
+    @Override
+    double get(long index)
+    {
+        return chunks[(int) (index >>> chunkShift)].get((int) (index & chunkMask));
+    }
+
+
+    @Override
+    void set(long index, double value)
+    {
+        chunks[(int) (index >>> chunkShift)].put((int) (index & chunkMask), value);
+    }
+
+
+    @Override
+    void clear(long fromIndex, long toIndex)
+    {
+        for (long i = fromIndex; i < toIndex; i++)
+        {
+            set(i, 0);
+        }
+    }
+
+
+    @Override
+    double dot(long offset, MatrixStorage other, long otherOffset, int length)
+    {
+        DoubleBuffer chunk = getChunk(offset, length);
+        DoubleBuffer otherChunk = other instanceof BufferStorage
+                                  ? ((BufferStorage) other).getChunk(otherOffset, length)
+                                  : null;
+        if (chunk != null && otherChunk != null)
+        {
+            int start = (int) (offset & chunkMask);
+            int otherStart = (int) (otherOffset & ((BufferStorage) other).chunkMask);
+            double sum = 0;
+            for (int i = 0; i < length; i++)
+            {
+                sum += chunk.get(start + i) * otherChunk.get(otherStart + i);
+            }
+            return sum;
+        }
+        return genericDot(offset, other, otherOffset, length);
+    }
+
+
+    @Override
+    void addScaled(long offset, double scale, MatrixStorage source, long sourceOffset, int length)
+    {
+        DoubleBuffer chunk = getChunk(offset, length);
+        DoubleBuffer sourceChunk = source instanceof BufferStorage
+                                   ? ((BufferStorage) source).getChunk(sourceOffset, length)
+                                   : null;
+        if (chunk != null && sourceChunk != null)
+        {
+            int start = (int) (offset & chunkMask);
+            int sourceStart = (int) (sourceOffset & ((BufferStorage) source).chunkMask);
+            for (int i = 0; i < length; i++)
+            {
+                chunk.put(start + i, chunk.get(start + i) + scale * sourceChunk.get(sourceStart + i));
+            }
+        }
+        else
+        {
+            genericAddScaled(offset, scale, source, sourceOffset, length);
+        }
+    }
+
+
+    /**
+     * @return The chunk that contains the specified range of values, or null if the range
+     * spans more than one chunk.
+     */
+    private DoubleBuffer getChunk(long offset, int length)
+    {
+        long chunkIndex = offset >>> chunkShift;
+        return length == 0 || (offset + length - 1) >>> chunkShift == chunkIndex ? chunks[(int) chunkIndex] : null;
+    }
+
+
+    @Override
+    double squaredDistance(MatrixStorage other)
+    {
+        return genericSquaredDistance(other);
+    }
+}
@@ -0,0 +1,159 @@
+// ============================================================================
+//   Copyright 2009-2012 Daniel W. Dyer
+//
+//   Licensed under the Apache License, Version 2.0 (the "License");
+//   you may not use this file except in compliance with the License.
+//   You may obtain a copy of the License at
+//
+//       http://www.apache.org/licenses/LICENSE-2.0
+//
+//   Unless required by applicable law or agreed to in writing, software
+//   distributed under the License is distributed on an "AS IS" BASIS,
+//   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+//   See the License for the specific language governing permissions and
+//   limitations under the License.
+// ============================================================================
+package org.uncommons.zeitgeist;
+
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.util.Map;
+import java.util.TreeMap;
+
+/**
+ * Learns which words are so common that they say nothing about the topic of an article
+ * (boilerplate such as agency and site names, or "said").  For each such word it keeps
+ * the fraction of articles that the word has appeared in, averaged over runs so that a
+ * word doesn't come and go with small changes in its frequency.  A word is forgotten
+ * once its average falls well below the limit.  The file format is plain text, one line
+ * per word: the word and its average fraction, separated by a tab.
+ * @author Daniel Dyer
+ */
+final class CommonWords
+{
+    private static final String ENCODING = "UTF-8";
+
+    private final Map<String, Double> fractions = new TreeMap<String, Double>();
+
+
+    /**
+     * Updates the averages with the fractions of the current articles that words appear in.
+     * New words are only remembered if they are common in the current articles.
+     * @param fractions The fraction of the current articles that each word appears in.  Known
+     * words that are not included are treated as not appearing in any of the articles.
+     * @param maxFraction Words that appear, on average, in more than this fraction of articles
+     * are common.  Words whose average falls below a quarter of this are forgotten.
+     */
+    void update(Map<String, Double> fractions, double maxFraction)
+    {
+        Map<String, Double> updated = new TreeMap<String, Double>();
+        for (Map.Entry<String, Double> entry : this.fractions.entrySet())
+        {
+            Double fraction = fractions.get(entry.getKey());
+            double average = (entry.getValue() + (fraction == null ? 0 : fraction)) / 2;
+            if (average >= maxFraction / 4)
+            {
+                updated.put(entry.getKey(), average);
+            }
+        }
+        for (Map.Entry<String, Double> entry : fractions.entrySet())
+        {
+            if (!this.fractions.containsKey(entry.getKey()) && entry.getValue() > maxFraction)
+            {
+                updated.put(entry.getKey(), entry.getValue());
+            }
+        }
+        this.fractions.clear();
+        this.fractions.putAll(updated);
+    }
+
+
+    /**
+     * @param word A word stem.
+     * @param maxFraction Words that appear, on average, in more than this fraction of articles
+     * are common.
+     * @return Whether the specified word is common.
+     */
+    boolean isCommon(String word, double maxFraction)
+    {
+        Double fraction = fractions.get(word);
+        return fraction != null && fraction > maxFraction;
+    }
+
+
+    /**
+     * @return The number of words currently known to be common, or on their way to
+     * being forgotten.
+     */
+    int size()
+    {
+        return fractions.size();
+    }
+
+
+    /**
+     * Write the words to the specified file, replacing any existing contents.
+     */
+    void save(File file) throws IOException
+    {
+        Writer writer = new BufferedWriter(new OutputStreamWriter(new FileOutputStream(file), ENCODING));
+        try
+        {
+            for (Map.Entry<String, Double> entry : fractions.entrySet())
+            {
+                writer.write(entry.getKey());
+                writer.write('\t');
+                writer.write(Double.toString(entry.getValue()));
+                writer.write('\n');
+            }
+        }
+        finally
+        {
+            writer.close();
+        }
+    }
+
+
+    /**
+     * Read words from a file previously written by {@link #save(File)}.
+     */
+    static CommonWords load(File file) throws IOException
+    {
+        CommonWords words = new CommonWords();
+        BufferedReader reader = new BufferedReader(new InputStreamReader(new FileInputStream(file), ENCODING));
+        try
+        {
+            for (String line = reader.readLine(); line != null; line = reader.readLine())
+            {
+                if (line.length() > 0)
+                {
+                    String[] parts = line.split("\t");
+                    if (parts.length != 2)
+                    {
+                        throw new IOException("Invalid common word: " + line);
+                    }
+                    try
+                    {
+                        words.fractions.put(parts[0], Double.valueOf(parts[1]));
+                    }
+                    catch (NumberFormatException ex)
+                    {
+                        throw new IOException("Invalid fraction for common word " + parts[0]);
+                    }
+                }
+            }
+        }
+        finally
+        {
+            reader.close();
+        }
+        return words;
+    }
+}
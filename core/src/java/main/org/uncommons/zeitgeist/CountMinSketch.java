@@ -0,0 +1,116 @@
+// ============================================================================
+//   Copyright 2009-2012 Daniel W. Dyer
+//
+//   Licensed under the Apache License, Version 2.0 (the "License");
+//   you may not use this file except in compliance with the License.
+//   You may obtain a copy of the License at
+//
+//       http://www.apache.org/licenses/LICENSE-2.0
+//
+//   Unless required by applicable law or agreed to in writing, software
+//   distributed under the License is distributed on an "AS IS" BASIS,
+//   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+//   See the License for the specific language governing permissions and
+//   limitations under the License.
+// ============================================================================
+package org.uncommons.zeitgeist;
+
+import java.util.concurrent.atomic.AtomicIntegerArray;
+
+/**
+ * A count-min sketch: a fixed amount of memory that approximately counts how many times
+ * each of an unlimited number of distinct words has been added.  Each word increments
+ * one counter in each of several rows, chosen by a different hash for each row, and its
+ * count is estimated by the smallest of those counters.  Collisions can only make a
+ * counter bigger, so the estimate is never too low, and with a width of w the estimate
+ * is within 2.72N/w of the true count (N being the total of all counts) for all but a
+ * small fraction, exponential in the depth, of words.  A sketch may be updated by
+ * several threads at once.
+ * @author Daniel Dyer
+ */
+final class CountMinSketch
+{
+    private final int width;
+    private final int depth;
+    private final AtomicIntegerArray counters;
+
+
+    /**
+     * @param width The number of counters in each row.  This is rounded up to a power of two.
+     * @param depth The number of rows.
+     */
+    CountMinSketch(int width, int depth)
+    {
+        if (width < 1 || width > 1 << 30)
+        {
+            throw new IllegalArgumentException("Width must be between 1 and 2^30.");
+        }
+        if (depth < 1)
+        {
+            throw new IllegalArgumentException("Depth must be at least 1.");
+        }
+        this.width = width == 1 ? 1 : Integer.highestOneBit(width - 1) << 1;
+        this.depth = depth;
+        if ((long) this.width * depth > Integer.MAX_VALUE)
+        {
+            throw new IllegalArgumentException("Sketch is too big.");
+        }
+        this.counters = new AtomicIntegerArray(this.width * depth);
+    }
+
+
+    /**
+     * Increments the count for the specified word.
+     */
+    void add(String word)
+    {
+        int hash1 = mix(word.hashCode());
+        int hash2 = mix(hash1 ^ 0x9E3779B9) | 1;
+        for (int row = 0; row < depth; row++)
+        {
+            counters.incrementAndGet(row * width + ((hash1 + row * hash2) & (width - 1)));
+        }
+    }
+
+
+    /**
+     * @return An estimate of the number of times the specified word has been added, which
+     * may be too high but is never too low.
+     */
+    int estimate(String word)
+    {
+        int hash1 = mix(word.hashCode());
+        int hash2 = mix(hash1 ^ 0x9E3779B9) | 1;
+        int estimate = Integer.MAX_VALUE;
+        for (int row = 0; row < depth; row++)
+        {
+            estimate = Math.min(estimate, counters.get(row * width + ((hash1 + row * hash2) & (width - 1))));
+        }
+        return estimate;
+    }
+
+
+    /**
+     * @return The number of counters in each row.
+     */
+    int getWidth()
+    {
+        return width;
+    }
+
+
+    /**
+     * The MurmurHash3 finaliser.  Only the low bits of a hash are used to choose a
+     * counter, so every bit of String.hashCode() must affect them.
+     */
+    static int mix(int hash)
+    {
+        int mixed = hash;
+        mixed ^= mixed >>> 16;
+        mixed *= 0x85EBCA6B;
+        mixed ^= mixed >>> 13;
+        mixed *= 0xC2B2AE35;
+        mixed ^= mixed >>> 16;
+        return mixed;
+    }
+}
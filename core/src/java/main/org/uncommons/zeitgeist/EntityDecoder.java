@@ -0,0 +1,298 @@
+// ============================================================================
+//   Copyright 2009-2012 Daniel W. Dyer
+//
+//   Licensed under the Apache License, Version 2.0 (the "License");
+//   you may not use this file except in compliance with the License.
+//   You may obtain a copy of the License at
+//
+//       http://www.apache.org/licenses/LICENSE-2.0
+//
+//   Unless required by applicable law or agreed to in writing, software
+//   distributed under the License is distributed on an "AS IS" BASIS,
+//   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+//   See the License for the specific language governing permissions and
+//   limitations under the License.
+// ============================================================================
+package org.uncommons.zeitgeist;
+
+/**
+ * Decodes the HTML entities and folds the accented characters that occur in feed
+ * content.  Entity names are looked up in tries and accented characters in a table,
+ * so each conversion is a single scan of the text, with no regular expressions and
+ * no strings created for entities that are not recognised.
+ * @author Daniel Dyer
+ */
+final class EntityDecoder
+{
+    private static final String[] FOLDED_CHARS = new String[0x40]; // U+00C0 to U+00FF.
+    private static final Trie ACCENT_ENTITIES = new Trie();
+    private static final Trie SYMBOL_ENTITIES = new Trie();
+    static
+    {
+        addAccents("a", "Agrave:192", "agrave:224", "Aacute:193", "aacute:225", "Acirc:194", "acirc:226",
+                   "Atilde:195", "atilde:227", "Auml:196", "auml:228", "Aring:197", "aring:229");
+        addAccents("c", "Ccedil:199", "ccedil:231");
+        addAccents("e", "Egrave:200", "egrave:232", "Eacute:201", "eacute:233", "Ecirc:202", "ecirc:234",
+                   "Euml:203", "euml:235");
+        addAccents("i", "Igrave:204", "igrave:236", "Iacute:205", "iacute:237", "Icirc:206", "icirc:238",
+                   "Iuml:207", "iuml:239");
+        addAccents("n", "Ntilde:209", "ntilde:241");
+        addAccents("o", "Ograve:210", "ograve:242", "Oacute:211", "oacute:243", "Ocirc:212", "ocirc:244",
+                   "Otilde:213", "otilde:245", "Ouml:214", "ouml:246", "Oslash:216", "oslash:248");
+        addAccents("u", "Ugrave:217", "ugrave:249", "Uacute:218", "uacute:250", "Ucirc:219", "ucirc:251",
+                   "Uuml:220", "uuml:252");
+        addAccents("y", "Yacute:221", "yacute:253", "yuml:255");
+        addAccents("ss", "szlig:223");
+
+        // Apostrophes and currency symbols are kept, all other entities become spaces.
+        SYMBOL_ENTITIES.put("apos", "'");
+        SYMBOL_ENTITIES.put("#39", "'");
+        SYMBOL_ENTITIES.put("cent", "\u00A2");
+        SYMBOL_ENTITIES.put("#162", "\u00A2");
+        SYMBOL_ENTITIES.put("pound", "\u00A3");
+        SYMBOL_ENTITIES.put("#163", "\u00A3");
+        SYMBOL_ENTITIES.put("euro", "\u20AC");
+        SYMBOL_ENTITIES.put("yen", "\u00A5");
+        SYMBOL_ENTITIES.put("#165", "\u00A5");
+    }
+
+    private EntityDecoder()
+    {
+        // Prevents instantiation of utility class.
+    }
+
+
+    /**
+     * Registers the named and numeric entities for some accented characters, and the
+     * characters themselves, as being replaced by the specified (unaccented) replacement.
+     * @param accents Each entity name and its code point, separated by a colon.
+     */
+    private static void addAccents(String replacement, String... accents)
+    {
+        for (String accent : accents)
+        {
+            int separator = accent.indexOf(':');
+            String codePoint = accent.substring(separator + 1);
+            ACCENT_ENTITIES.put(accent.substring(0, separator), replacement);
+            ACCENT_ENTITIES.put('#' + codePoint, replacement);
+            FOLDED_CHARS[Integer.parseInt(codePoint) - 0xC0] = replacement;
+        }
+    }
+
+
+    /**
+     * @return The unaccented equivalent of the specified character, or null if it is not
+     * an accented character.
+     */
+    static String foldAccent(char c)
+    {
+        return c >= 0xC0 && c <= 0xFF ? FOLDED_CHARS[c - 0xC0] : null;
+    }
+
+
+    /**
+     * @param chars An array containing an entity.
+     * @param start The index of the first character of the entity name (after the '&amp;').
+     * @param end The index of the ';' at the end of the entity.
+     * @return The unaccented equivalent of the accented character that the entity represents,
+     * or null if it is not an accented character.
+     */
+    static String decodeAccent(char[] chars, int start, int end)
+    {
+        return ACCENT_ENTITIES.get(chars, start, end);
+    }
+
+
+    /**
+     * @return The index of the semi-colon that ends the entity (a '&amp;', an optional '#',
+     * word characters and a ';') that starts at the specified index, or -1 if there is no
+     * entity there.
+     */
+    static int findEntityEnd(char[] chars, int start, int length)
+    {
+        int i = start + 1;
+        if (i < length && chars[i] == '#')
+        {
+            ++i;
+        }
+        while (i < length && isWordCharacter(chars[i]))
+        {
+            ++i;
+        }
+        return i < length && chars[i] == ';' ? i : -1;
+    }
+
+
+    /**
+     * Replaces accented characters, and the entities for accented characters, with
+     * their unaccented equivalents.
+     * @param in The text to convert.
+     * @param length The number of characters of input.
+     * @param out Receives the converted text.  Must have room for twice as many characters
+     * as the input, since an eszett becomes "ss".
+     * @return The number of characters written to the output.
+     */
+    static int anglicise(char[] in, int length, char[] out)
+    {
+        int count = 0;
+        int i = 0;
+        while (i < length)
+        {
+            char c = in[i];
+            String replacement = foldAccent(c);
+            int next = i + 1;
+            if (c == '&')
+            {
+                int end = findEntityEnd(in, i, length);
+                if (end >= 0)
+                {
+                    replacement = decodeAccent(in, i + 1, end);
+                    next = end + 1;
+                }
+            }
+            if (replacement == null)
+            {
+                out[count++] = c;
+                ++i;
+            }
+            else
+            {
+                count = append(replacement, out, count);
+                i = next;
+            }
+        }
+        return count;
+    }
+
+
+    /**
+     * Replaces apostrophe and currency entities with the characters that they represent
+     * and all other entities with a space (rather than nothing, since an entity might
+     * separate two words).
+     * @param in The text to convert.
+     * @param length The number of characters of input.
+     * @param out Receives the converted text, which is never longer than the input.
+     * @return The number of characters written to the output.
+     */
+    static int expandEntities(char[] in, int length, char[] out)
+    {
+        int count = 0;
+        int i = 0;
+        while (i < length)
+        {
+            int end = in[i] == '&' ? findEntityEnd(in, i, length) : -1;
+            if (end < 0)
+            {
+                out[count++] = in[i++];
+            }
+            else
+            {
+                String replacement = SYMBOL_ENTITIES.get(in, i + 1, end);
+                count = append(replacement == null ? " " : replacement, out, count);
+                i = end + 1;
+            }
+        }
+        return count;
+    }
+
+
+    private static boolean isWordCharacter(char c)
+    {
+        return (c >= 'a' && c <= 'z') || (c >= 'A' && c <= 'Z') || (c >= '0' && c <= '9') || c == '_';
+    }
+
+
+    private static int append(String replacement, char[] out, int count)
+    {
+        replacement.getChars(0, replacement.length(), out, count);
+        return count + replacement.length();
+    }
+
+
+    /**
+     * Maps entity names (without the '&amp;' and ';') to their replacements.  Each node's
+     * children are held in a fixed-size block of a single array, indexed by character.
+     * Entity names only contain word characters and '#', so each block is small.
+     */
+    private static final class Trie
+    {
+        private static final int ALPHABET_SIZE = 64; // Digits, letters, '_' and '#'.
+
+        private int[] children = new int[ALPHABET_SIZE * 16];
+        private String[] values = new String[16];
+        private int nodeCount = 1; // Node zero is the root.
+
+        /**
+         * @return The position of the character in the alphabet, or -1 if it can't occur
+         * in an entity name.
+         */
+        static int index(char c)
+        {
+            if (c >= '0' && c <= '9')
+            {
+                return c - '0';
+            }
+            else if (c >= 'A' && c <= 'Z')
+            {
+                return c - 'A' + 10;
+            }
+            else if (c >= 'a' && c <= 'z')
+            {
+                return c - 'a' + 36;
+            }
+            else if (c == '_')
+            {
+                return 62;
+            }
+            else
+            {
+                return c == '#' ? 63 : -1;
+            }
+        }
+
+
+        void put(String name, String value)
+        {
+            int node = 0;
+            for (int i = 0; i < name.length(); i++)
+            {
+                int slot = node * ALPHABET_SIZE + index(name.charAt(i));
+                if (children[slot] == 0)
+                {
+                    if (nodeCount == values.length)
+                    {
+                        int[] newChildren = new int[children.length * 2];
+                        System.arraycopy(children, 0, newChildren, 0, children.length);
+                        children = newChildren;
+                        String[] newValues = new String[values.length * 2];
+                        System.arraycopy(values, 0, newValues, 0, values.length);
+                        values = newValues;
+                    }
+                    children[slot] = nodeCount++;
+                }
+                node = children[slot];
+            }
+            values[node] = value;
+        }
+
+
+        /**
+         * @return The value for the name held in the specified range of the array, or null
+         * if there is no such name.
+         */
+        String get(char[] chars, int start, int end)
+        {
+            int node = 0;
+            for (int i = start; i < end; i++)
+            {
+                int index = index(chars[i]);
+                node = index < 0 ? 0 : children[node * ALPHABET_SIZE + index];
+                if (node == 0)
+                {
+                    return null;
+                }
+            }
+            return values[node];
+        }
+    }
+}
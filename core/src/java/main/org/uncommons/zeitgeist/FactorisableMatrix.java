@@ -0,0 +1,67 @@
+// ============================================================================
+//   Copyright 2009-2012 Daniel W. Dyer
+//
+//   Licensed under the Apache License, Version 2.0 (the "License");
+//   you may not use this file except in compliance with the License.
+//   You may obtain a copy of the License at
+//
+//       http://www.apache.org/licenses/LICENSE-2.0
+//
+//   Unless required by applicable law or agreed to in writing, software
+//   distributed under the License is distributed on an "AS IS" BASIS,
+//   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+//   See the License for the specific language governing permissions and
+//   limitations under the License.
+// ============================================================================
+package org.uncommons.zeitgeist;
+
+/**
+ * The operations that the non-negative matrix factorisation algorithm requires of
+ * the matrix that is being factorised.  The factors themselves are always dense
+ * {@link Matrix} instances, but the matrix being factorised may be stored in whatever
+ * form is most efficient (e.g. a {@link SparseMatrix} for document-term data).
+ * @author Daniel Dyer
+ */
+public interface FactorisableMatrix
+{
+    int getRowCount();
+
+    int getColumnCount();
+
+    /**
+     * Multiply this matrix (row-by-column) by the specified matrix, writing the product
+     * into an existing matrix.
+     * @param m The matrix to multiply by.
+     * @param result Overwritten with the product.  Must have the same number of rows as
+     * this matrix and the same number of columns as {@code m}.
+     * @param partitioner Determines how the work is split between threads.
+     */
+    void multiply(Matrix m, Matrix result, RowPartitioner partitioner);
+
+    /**
+     * Transpose this matrix and multiply (row-by-column) by the specified matrix, writing
+     * the product into an existing matrix.
+     * @param m The matrix to multiply by.
+     * @param result Overwritten with the product.  Must have as many rows as this matrix
+     * has columns and the same number of columns as {@code m}.
+     * @param partitioner Determines how the work is split between threads.
+     */
+    void multiplyTransposeLeft(Matrix m, Matrix result, RowPartitioner partitioner);
+
+    /**
+     * @return The sum of all of the elements of this matrix.
+     */
+    double sum();
+
+    /**
+     * @return The sum of the squares of the elements of this matrix (the square of its
+     * Frobenius norm).
+     */
+    double squaredNorm();
+
+    /**
+     * @return The sum of the squared differences between the elements of this matrix
+     * and the corresponding elements of the specified (same-sized) matrix.
+     */
+    double diffCost(Matrix other);
+}
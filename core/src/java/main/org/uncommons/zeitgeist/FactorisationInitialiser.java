@@ -0,0 +1,42 @@
+// ============================================================================
+//   Copyright 2009-2012 Daniel W. Dyer
+//
+//   Licensed under the Apache License, Version 2.0 (the "License");
+//   you may not use this file except in compliance with the License.
+//   You may obtain a copy of the License at
+//
+//       http://www.apache.org/licenses/LICENSE-2.0
+//
+//   Unless required by applicable law or agreed to in writing, software
+//   distributed under the License is distributed on an "AS IS" BASIS,
+//   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+//   See the License for the specific language governing permissions and
+//   limitations under the License.
+// ============================================================================
+package org.uncommons.zeitgeist;
+
+import java.util.Random;
+
+/**
+ * A strategy for choosing the starting point of a {@link Factoriser}.  The closer the
+ * initial factors are to a good factorisation, the fewer iterations are required.
+ * @author Daniel Dyer
+ */
+public interface FactorisationInitialiser
+{
+    /**
+     * Populate the initial factors.  All elements must be non-negative and, since the
+     * multiplicative updates can never move an element away from zero, should be positive.
+     * @param matrix The matrix that is being factorised (X, m &times; n).
+     * @param weights The weights matrix to populate (W, m &times; k).
+     * @param featuresTranspose The transpose of the features matrix to populate (H', n &times; k).
+     * @param rng The source of randomness.  This is the only source of randomness that an
+     * initialiser may use, so that seeding it makes the factorisation repeatable.
+     * @param partitioner Determines how the work of any matrix products is split between threads.
+     */
+    void initialise(FactorisableMatrix matrix,
+                    Matrix weights,
+                    Matrix featuresTranspose,
+                    Random rng,
+                    RowPartitioner partitioner);
+}
@@ -0,0 +1,32 @@
+// ============================================================================
+//   Copyright 2009-2012 Daniel W. Dyer
+//
+//   Licensed under the Apache License, Version 2.0 (the "License");
+//   you may not use this file except in compliance with the License.
+//   You may obtain a copy of the License at
+//
+//       http://www.apache.org/licenses/LICENSE-2.0
+//
+//   Unless required by applicable law or agreed to in writing, software
+//   distributed under the License is distributed on an "AS IS" BASIS,
+//   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+//   See the License for the specific language governing permissions and
+//   limitations under the License.
+// ============================================================================
+package org.uncommons.zeitgeist;
+
+/**
+ * Call-back interface so that programs can monitor the progress of a factorisation.
+ * @author Daniel Dyer
+ */
+public interface FactorisationObserver
+{
+    /**
+     * Invoked once for the initial state of the factorisation and then after every
+     * iteration.  When a {@link Factoriser} performs several restarts concurrently, this
+     * method is invoked from multiple threads, so implementations must be thread-safe.
+     * It should also return quickly, since the factorisation waits for it.
+     * @param data The progress of the factorisation.
+     */
+    void iterationComplete(IterationData data);
+}
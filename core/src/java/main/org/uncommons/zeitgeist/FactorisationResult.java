@@ -0,0 +1,97 @@
+// ============================================================================
+//   Copyright 2009-2012 Daniel W. Dyer
+//
+//   Licensed under the Apache License, Version 2.0 (the "License");
+//   you may not use this file except in compliance with the License.
+//   You may obtain a copy of the License at
+//
+//       http://www.apache.org/licenses/LICENSE-2.0
+//
+//   Unless required by applicable law or agreed to in writing, software
+//   distributed under the License is distributed on an "AS IS" BASIS,
+//   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+//   See the License for the specific language governing permissions and
+//   limitations under the License.
+// ============================================================================
+package org.uncommons.zeitgeist;
+
+import java.util.Collections;
+import java.util.List;
+import org.uncommons.zeitgeist.termination.TerminationCondition;
+
+/**
+ * The outcome of a factorisation: the factors themselves plus details of how they
+ * were arrived at, including why the factorisation stopped.
+ * @author Daniel Dyer
+ */
+public final class FactorisationResult
+{
+    private final Matrix weights;
+    private final Matrix features;
+    private final double cost;
+    private final int iterations;
+    private final List<TerminationCondition> satisfiedConditions;
+
+
+    FactorisationResult(Matrix weights,
+                        Matrix features,
+                        double cost,
+                        int iterations,
+                        List<TerminationCondition> satisfiedConditions)
+    {
+        this.weights = weights;
+        this.features = features;
+        this.cost = cost;
+        this.iterations = iterations;
+        this.satisfiedConditions = Collections.unmodifiableList(satisfiedConditions);
+    }
+
+
+    /**
+     * @return The weights matrix, one row per row of the factorised matrix and one
+     * column per feature.
+     */
+    public Matrix getWeights()
+    {
+        return weights;
+    }
+
+
+    /**
+     * @return The features matrix, one row per feature and one column per column of
+     * the factorised matrix.
+     */
+    public Matrix getFeatures()
+    {
+        return features;
+    }
+
+
+    /**
+     * @return The sum of the squared differences between the factorised matrix and
+     * the product of the weights and features.
+     */
+    public double getCost()
+    {
+        return cost;
+    }
+
+
+    /**
+     * @return The number of iterations performed (by the chosen restart, if there
+     * were several).
+     */
+    public int getIterations()
+    {
+        return iterations;
+    }
+
+
+    /**
+     * @return The termination conditions that caused the factorisation to stop.
+     */
+    public List<TerminationCondition> getSatisfiedTerminationConditions()
+    {
+        return satisfiedConditions;
+    }
+}
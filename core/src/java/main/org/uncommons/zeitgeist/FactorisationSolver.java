@@ -0,0 +1,39 @@
+// ============================================================================
+//   Copyright 2009-2012 Daniel W. Dyer
+//
+//   Licensed under the Apache License, Version 2.0 (the "License");
+//   you may not use this file except in compliance with the License.
+//   You may obtain a copy of the License at
+//
+//       http://www.apache.org/licenses/LICENSE-2.0
+//
+//   Unless required by applicable law or agreed to in writing, software
+//   distributed under the License is distributed on an "AS IS" BASIS,
+//   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+//   See the License for the specific language governing permissions and
+//   limitations under the License.
+// ============================================================================
+package org.uncommons.zeitgeist;
+
+/**
+ * A strategy for the alternating updates performed by the {@link Factoriser}.  On each
+ * iteration the factoriser calls {@link #update(Matrix, Matrix, Matrix, RowPartitioner)}
+ * twice, once for each factor, while holding the other factor fixed.  Both updates have
+ * the same form because the features are updated in transposed form: for data X, weights
+ * W and features H, the weights are fitted to X using H' and the transposed features are
+ * fitted to X' using W.
+ * @author Daniel Dyer
+ */
+public interface FactorisationSolver
+{
+    /**
+     * Updates a factor F, in place, to reduce ||Y - FG'||&sup2; while G is held constant.
+     * Each row of F is independent of the others, so implementations may split the rows
+     * between threads.
+     * @param factor The factor being updated (F, r &times; k).
+     * @param numerator The product of the data and the fixed factor (YG, r &times; k).
+     * @param gram The Gram matrix of the fixed factor (G'G, k &times; k).
+     * @param partitioner Determines how the work is split between threads.
+     */
+    void update(Matrix factor, Matrix numerator, Matrix gram, RowPartitioner partitioner);
+}
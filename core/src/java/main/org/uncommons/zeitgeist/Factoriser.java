@@ -0,0 +1,561 @@
+// ============================================================================
+//   Copyright 2009-2012 Daniel W. Dyer
+//
+//   Licensed under the Apache License, Version 2.0 (the "License");
+//   you may not use this file except in compliance with the License.
+//   You may obtain a copy of the License at
+//
+//       http://www.apache.org/licenses/LICENSE-2.0
+//
+//   Unless required by applicable law or agreed to in writing, software
+//   distributed under the License is distributed on an "AS IS" BASIS,
+//   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+//   See the License for the specific language governing permissions and
+//   limitations under the License.
+// ============================================================================
+package org.uncommons.zeitgeist;
+
+import java.lang.management.ManagementFactory;
+import java.lang.management.ThreadMXBean;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import org.grlea.log.SimpleLogger;
+import org.uncommons.zeitgeist.termination.MinimumImprovement;
+import org.uncommons.zeitgeist.termination.TerminationCondition;
+
+/**
+ * Non-negative matrix factorisation by alternately updating the weights and the features.
+ * The update rule is provided by a {@link FactorisationSolver}, by default the
+ * multiplicative update rules of Lee and Seung.  The matrix to be factorised may be
+ * dense or sparse, the resulting factors are always dense.
+ * @author Daniel Dyer
+ */
+public class Factoriser
+{
+    private static final SimpleLogger LOG = new SimpleLogger(Factoriser.class);
+    private static final ThreadMXBean THREAD_BEAN = ManagementFactory.getThreadMXBean();
+    // A restart is not abandoned until it has had this many iterations to improve.
+    private static final int WARM_UP_ITERATIONS = 5;
+    // How many more iterations' improvement, at the current rate, a restart is credited
+    // with when deciding whether it can still beat the best restart so far.
+    private static final int LOOKAHEAD_ITERATIONS = 10;
+
+    private int threadCount = 1;
+    private FactorisationSolver solver = new MultiplicativeUpdateSolver();
+    private FactorisationInitialiser initialiser = new RandomInitialiser();
+    private Long seed = null;
+    private int restarts = 1;
+    private StorageMode storageMode = StorageMode.DOUBLE;
+    private List<TerminationCondition> terminationConditions
+        = Collections.<TerminationCondition>singletonList(new MinimumImprovement(0.01));
+    private final List<FactorisationObserver> observers = new CopyOnWriteArrayList<FactorisationObserver>();
+
+
+    /**
+     * Sets the number of threads used for the matrix products at the heart of the
+     * factorisation.  The results are the same regardless of the number of threads.
+     * @param threadCount The number of threads to use (defaults to 1).
+     */
+    public void setThreadCount(int threadCount)
+    {
+        if (threadCount < 1)
+        {
+            throw new IllegalArgumentException("Thread count must be at least 1.");
+        }
+        this.threadCount = threadCount;
+    }
+
+
+    /**
+     * Sets the rule used to update the factors on each iteration.
+     * @param solver The update rule (defaults to a {@link MultiplicativeUpdateSolver}).
+     */
+    public void setSolver(FactorisationSolver solver)
+    {
+        this.solver = solver;
+    }
+
+
+    /**
+     * Sets the strategy used to choose the initial factors.
+     * @param initialiser The initialisation strategy (defaults to a {@link RandomInitialiser}).
+     */
+    public void setInitialiser(FactorisationInitialiser initialiser)
+    {
+        this.initialiser = initialiser;
+    }
+
+
+    /**
+     * Seeds the random number generator used to initialise the factors, so that repeated
+     * factorisations of the same matrix, with the same settings, give identical results.
+     * If no seed is set, every factorisation starts from a different random state.
+     * @param seed The seed for the random number generator.
+     */
+    public void setSeed(long seed)
+    {
+        this.seed = seed;
+    }
+
+
+    /**
+     * Sets the number of independent factorisations that are attempted.  Since the result
+     * depends on the starting point, several attempts increase the chance of finding a good
+     * factorisation.  Only the attempt with the lowest error is kept.  The attempts are run
+     * concurrently (one per thread, up to the thread count) and any attempt that can no
+     * longer beat the best one so far is abandoned early.
+     * @param restarts The number of factorisations to attempt (defaults to 1).
+     */
+    public void setRestarts(int restarts)
+    {
+        if (restarts < 1)
+        {
+            throw new IllegalArgumentException("Number of restarts must be at least 1.");
+        }
+        this.restarts = restarts;
+    }
+
+
+    /**
+     * Sets how the values of the factors (and of the intermediate results derived from
+     * them) are stored.  {@link StorageMode#FLOAT} halves the memory required, and the
+     * memory traffic of the products, for a small loss of precision.
+     * @param storageMode The storage for the factors (defaults to {@link StorageMode#DOUBLE}).
+     */
+    public void setStorageMode(StorageMode storageMode)
+    {
+        this.storageMode = storageMode;
+    }
+
+
+    /**
+     * Sets the conditions under which the factorisation stops iterating.  It stops as soon
+     * as any one of them is satisfied.  Conditions such as
+     * {@link org.uncommons.zeitgeist.termination.IterationCount},
+     * {@link org.uncommons.zeitgeist.termination.ElapsedTime} and
+     * {@link org.uncommons.zeitgeist.termination.UserAbort} put an upper bound on the time
+     * taken, in which case the best factors found so far are returned.
+     * @param conditions One or more termination conditions (defaults to stopping once an
+     * iteration improves the error by less than 1%).
+     */
+    public void setTerminationConditions(TerminationCondition... conditions)
+    {
+        if (conditions.length == 0)
+        {
+            throw new IllegalArgumentException("At least one termination condition must be specified.");
+        }
+        this.terminationConditions = Arrays.asList(conditions.clone());
+    }
+
+
+    /**
+     * Adds a listener that is notified of the progress of every factorisation performed
+     * by this factoriser.
+     * @param observer The observer to add.
+     */
+    public void addObserver(FactorisationObserver observer)
+    {
+        observers.add(observer);
+    }
+
+
+    /**
+     * Stops the specified observer from receiving further notifications.
+     * @param observer The observer to remove.
+     */
+    public void removeObserver(FactorisationObserver observer)
+    {
+        observers.remove(observer);
+    }
+
+
+    /**
+     * Perform non-negative factorisation on the specified matrix.
+     * The result is a pair of matrices (weights and features) that,
+     * when multiplied, approximate the matrix.
+     * @param matrix The matrix to factorise.
+     * @param featureCount An estimate of how many distinct features there are to be
+     * discovered.  This is used as the number of rows in the feature matrix and the
+     * number of columns in the weight matrix.
+     * @return A 2-element list containing a matrix of weights (first element) and
+     * a matrix of features (second element).
+     */
+    public List<Matrix> factorise(FactorisableMatrix matrix, int featureCount)
+    {
+        return factorise(matrix, featureCount, initialiser);
+    }
+
+
+    /**
+     * Perform non-negative factorisation on the specified matrix, starting from the state
+     * chosen by the specified initialiser rather than the one configured for this factoriser.
+     * This is useful when the initialiser depends on the data, as with a
+     * {@link WarmStartInitialiser}.
+     * @param matrix The matrix to factorise.
+     * @param featureCount The number of features to be discovered.
+     * @param initialiser Chooses the starting point of the factorisation.
+     * @return A 2-element list containing a matrix of weights (first element) and
+     * a matrix of features (second element).
+     */
+    public List<Matrix> factorise(FactorisableMatrix matrix,
+                                  int featureCount,
+                                  FactorisationInitialiser initialiser)
+    {
+        FactorisationResult result = factoriseWithResult(matrix, featureCount, initialiser);
+        return Arrays.asList(result.getWeights(), result.getFeatures());
+    }
+
+
+    /**
+     * Perform non-negative factorisation on the specified matrix, returning the factors
+     * along with details of the factorisation, such as why it stopped.
+     * @param matrix The matrix to factorise.
+     * @param featureCount The number of features to be discovered.
+     * @return The factors found and the details of how they were found.
+     */
+    public FactorisationResult factoriseWithResult(FactorisableMatrix matrix, int featureCount)
+    {
+        return factoriseWithResult(matrix, featureCount, initialiser);
+    }
+
+
+    /**
+     * Perform non-negative factorisation on the specified matrix, starting from the state
+     * chosen by the specified initialiser, and return the factors along with details of
+     * the factorisation, such as why it stopped.
+     * @param matrix The matrix to factorise.
+     * @param featureCount The number of features to be discovered.
+     * @param initialiser Chooses the starting point of the factorisation.
+     * @return The factors found and the details of how they were found.
+     */
+    public FactorisationResult factoriseWithResult(FactorisableMatrix matrix,
+                                                   int featureCount,
+                                                   FactorisationInitialiser initialiser)
+    {
+        long startTime = System.nanoTime();
+        Random rng = seed == null ? new Random() : new Random(seed);
+        FactorisationResult best;
+        if (restarts == 1)
+        {
+            RowPartitioner partitioner = threadCount == 1 ? RowPartitioner.SERIAL : new RowPartitioner(threadCount);
+            try
+            {
+                best = factoriseOnce(matrix, featureCount, initialiser, rng, partitioner, startTime, new BestCost(), 0);
+            }
+            finally
+            {
+                partitioner.shutdown();
+            }
+        }
+        else
+        {
+            best = factoriseWithRestarts(matrix, featureCount, initialiser, rng, startTime);
+        }
+        LOG.debug("Minimised factorisation error: " + best.getCost() + " after " + best.getIterations()
+                  + " iterations (" + (System.nanoTime() - startTime) / 1000000 + "ms).");
+        return best;
+    }
+
+
+    /**
+     * Run several independent factorisations, concurrently if there are multiple threads,
+     * and keep the best one.  Each restart is single-threaded and has its own random number
+     * generator, seeded from the master generator so that the set of restarts is repeatable.
+     * The matrix being factorised is only ever read, so it is shared by all of the restarts.
+     */
+    private FactorisationResult factoriseWithRestarts(final FactorisableMatrix matrix,
+                                                      final int featureCount,
+                                                      final FactorisationInitialiser initialiser,
+                                                      Random rng,
+                                                      final long startTime)
+    {
+        final BestCost bestCost = new BestCost();
+        List<Callable<FactorisationResult>> tasks = new ArrayList<Callable<FactorisationResult>>(restarts);
+        for (int i = 0; i < restarts; i++)
+        {
+            final int restart = i;
+            final Random restartRNG = new Random(rng.nextLong());
+            tasks.add(new Callable<FactorisationResult>()
+            {
+                public FactorisationResult call()
+                {
+                    return factoriseOnce(matrix,
+                                         featureCount,
+                                         initialiser,
+                                         restartRNG,
+                                         RowPartitioner.SERIAL,
+                                         startTime,
+                                         bestCost,
+                                         restart);
+                }
+            });
+        }
+
+        ExecutorService executor = Executors.newFixedThreadPool(Math.min(threadCount, restarts));
+        try
+        {
+            FactorisationResult best = null;
+            int abandoned = 0;
+            for (Future<FactorisationResult> future : executor.invokeAll(tasks))
+            {
+                FactorisationResult result = future.get();
+                if (result == null)
+                {
+                    ++abandoned;
+                }
+                else if (best == null || result.getCost() < best.getCost())
+                {
+                    best = result;
+                }
+            }
+            LOG.debug("Kept best of " + restarts + " factorisations, " + abandoned + " abandoned early.");
+            return best;
+        }
+        catch (InterruptedException ex)
+        {
+            // Restore interrupt status.
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("Interrupted while waiting for factorisation.", ex);
+        }
+        catch (ExecutionException ex)
+        {
+            throw new IllegalStateException(ex.getCause());
+        }
+        finally
+        {
+            executor.shutdown();
+        }
+    }
+
+
+    /**
+     * Perform a single factorisation, starting from the state chosen by the initialiser.
+     * The factors returned are those with the lowest cost, which are usually, but not
+     * always, the last ones.  Rounding (particularly with {@link StorageMode#FLOAT}), the
+     * clamping of values by some solvers, and stopping at an arbitrary point (on a time
+     * limit or abort) can all leave the last iteration worse than an earlier one.
+     * @param startTime The value of {@link System#nanoTime()} when the factorisation started
+     * (for time-based termination conditions).
+     * @param bestCost The lowest cost achieved by any other (completed) factorisation of
+     * the same matrix.  If it becomes clear that this factorisation will not beat it,
+     * it is abandoned.
+     * @param restart The index of this factorisation, for the observers.
+     * @return The factorisation, or null if it was abandoned.
+     */
+    private FactorisationResult factoriseOnce(FactorisableMatrix matrix,
+                                              int featureCount,
+                                              FactorisationInitialiser initialiser,
+                                              Random rng,
+                                              RowPartitioner partitioner,
+                                              long startTime,
+                                              BestCost bestCost,
+                                              int restart)
+    {
+        int rows = matrix.getRowCount();
+        int columns = matrix.getColumnCount();
+        // The features are held in transposed form until the end so that both factors
+        // can be updated in the same way (see FactorisationSolver).
+        Matrix weights = new Matrix(rows, featureCount, storageMode);
+        Matrix featuresTranspose = new Matrix(columns, featureCount, storageMode);
+
+        // All of the intermediate results are allocated up-front and overwritten on each
+        // iteration, so that the steady-state loop generates no garbage.  None of them is
+        // larger than the factors themselves; the full (rows x columns) product of the
+        // factors is never formed.  The (features x features) Gram matrices are small, so are
+        // kept on the heap rather than each being given a direct buffer or scratch file, and
+        // in double precision, since each of their elements is a sum over every row of a factor.
+        Matrix weightsGram = new Matrix(featureCount, featureCount, StorageMode.DOUBLE);
+        Matrix featuresGram = new Matrix(featureCount, featureCount, StorageMode.DOUBLE);
+        Matrix hn = new Matrix(columns, featureCount, storageMode);
+        Matrix wn = new Matrix(rows, featureCount, storageMode);
+
+        long allocatedBytes = getThreadAllocatedBytes();
+        initialiser.initialise(matrix, weights, featuresTranspose, rng, partitioner);
+        double squaredNorm = matrix.squaredNorm();
+        matrix.multiply(featuresTranspose, wn, partitioner);
+        weights.multiplyTransposeLeft(weights, weightsGram, partitioner);
+        featuresTranspose.multiplyTransposeLeft(featuresTranspose, featuresGram, partitioner);
+
+        double cost = cost(squaredNorm, weights, wn, weightsGram, featuresGram);
+        int iterations = 0;
+        long previousAllocatedBytes = allocatedBytes;
+        allocatedBytes = getThreadAllocatedBytes();
+        IterationData data = new IterationData(restart,
+                                               iterations,
+                                               cost,
+                                               Double.MAX_VALUE,
+                                               System.nanoTime() - startTime,
+                                               allocatedBytes < 0 ? -1 : allocatedBytes - previousAllocatedBytes);
+        notifyObservers(data);
+        List<TerminationCondition> satisfiedConditions = getSatisfiedConditions(data);
+        // A copy of the best factors so far is only made when the current factors are
+        // about to be overwritten, and only if they are the best so far.
+        double lowestCost = cost;
+        boolean currentIsBest = true;
+        Matrix bestWeights = null;
+        Matrix bestFeaturesTranspose = null;
+        while (satisfiedConditions.isEmpty())
+        {
+            if (currentIsBest)
+            {
+                if (bestWeights == null)
+                {
+                    bestWeights = new Matrix(rows, featureCount, storageMode);
+                    bestFeaturesTranspose = new Matrix(columns, featureCount, storageMode);
+                }
+                weights.copy(bestWeights);
+                featuresTranspose.copy(bestFeaturesTranspose);
+            }
+
+            matrix.multiplyTransposeLeft(weights, hn, partitioner);
+            solver.update(featuresTranspose, hn, weightsGram, partitioner);
+            featuresTranspose.multiplyTransposeLeft(featuresTranspose, featuresGram, partitioner);
+
+            matrix.multiply(featuresTranspose, wn, partitioner);
+            solver.update(weights, wn, featuresGram, partitioner);
+            // The Gram matrix of the new weights is needed both for the cost and for
+            // the next update of the features.
+            weights.multiplyTransposeLeft(weights, weightsGram, partitioner);
+
+            double oldCost = cost;
+            cost = cost(squaredNorm, weights, wn, weightsGram, featuresGram);
+            ++iterations;
+            previousAllocatedBytes = allocatedBytes;
+            allocatedBytes = getThreadAllocatedBytes();
+            long allocated = allocatedBytes < 0 ? -1 : allocatedBytes - previousAllocatedBytes;
+            if (observers.isEmpty())
+            {
+                // Nothing can have retained the previous data, so it can be re-used.
+                data.update(iterations, cost, oldCost, System.nanoTime() - startTime, allocated);
+            }
+            else
+            {
+                data = new IterationData(restart, iterations, cost, oldCost, System.nanoTime() - startTime, allocated);
+                notifyObservers(data);
+            }
+            satisfiedConditions = getSatisfiedConditions(data);
+            currentIsBest = cost < lowestCost;
+            lowestCost = Math.min(lowestCost, cost);
+
+            // Even if the current rate of improvement were sustained for several more
+            // iterations (it usually slows), would this factorisation beat the best so far?
+            if (satisfiedConditions.isEmpty()
+                && iterations >= WARM_UP_ITERATIONS
+                && cost * Math.pow(cost / oldCost, LOOKAHEAD_ITERATIONS) > bestCost.get())
+            {
+                return null;
+            }
+        }
+        bestCost.update(lowestCost);
+        if (!currentIsBest)
+        {
+            weights = bestWeights;
+            featuresTranspose = bestFeaturesTranspose;
+        }
+        return new FactorisationResult(weights,
+                                       featuresTranspose.transpose(),
+                                       lowestCost,
+                                       iterations,
+                                       satisfiedConditions);
+    }
+
+
+    private void notifyObservers(IterationData data)
+    {
+        for (FactorisationObserver observer : observers)
+        {
+            observer.iterationComplete(data);
+        }
+    }
+
+
+    /**
+     * @return The total number of bytes allocated so far by the current thread, or -1 if
+     * the JVM can't measure it.
+     */
+    private static long getThreadAllocatedBytes()
+    {
+        if (THREAD_BEAN instanceof com.sun.management.ThreadMXBean)
+        {
+            com.sun.management.ThreadMXBean bean = (com.sun.management.ThreadMXBean) THREAD_BEAN;
+            if (bean.isThreadAllocatedMemorySupported() && bean.isThreadAllocatedMemoryEnabled())
+            {
+                return bean.getThreadAllocatedBytes(Thread.currentThread().getId());
+            }
+        }
+        return -1;
+    }
+
+
+    /**
+     * @return The conditions that are satisfied, or an empty list (which is shared, so that
+     * iterations that don't stop allocate nothing).
+     */
+    private List<TerminationCondition> getSatisfiedConditions(IterationData data)
+    {
+        List<TerminationCondition> satisfiedConditions = Collections.emptyList();
+        for (TerminationCondition condition : terminationConditions)
+        {
+            if (condition.shouldTerminate(data))
+            {
+                if (satisfiedConditions.isEmpty())
+                {
+                    satisfiedConditions = new ArrayList<TerminationCondition>(1);
+                }
+                satisfiedConditions.add(condition);
+            }
+        }
+        return satisfiedConditions;
+    }
+
+
+    /**
+     * Calculates the squared error of the factorisation, ||X - WH||&sup2;, without forming the
+     * product WH.  Expanding the square gives ||X||&sup2; - 2&middot;tr(W'XH') + tr(W'W&middot;HH'),
+     * and each of these traces is a sum of element-wise products of small matrices.
+     * @param squaredNorm The squared Frobenius norm of the matrix being factorised (X).
+     * @param weights The weights matrix (W).
+     * @param product The product of X and the transpose of the features matrix (XH').
+     * @param weightsGram The product of the transpose of W and W itself (W'W).
+     * @param featuresGram The product of H and its transpose (HH').
+     * @return The sum of the squared differences between X and WH.
+     */
+    static double cost(double squaredNorm,
+                       Matrix weights,
+                       Matrix product,
+                       Matrix weightsGram,
+                       Matrix featuresGram)
+    {
+        double cost = squaredNorm - 2 * weights.innerProduct(product) + weightsGram.innerProduct(featuresGram);
+        // Cancellation can leave a tiny negative value when the fit is (almost) exact.
+        return Math.max(0, cost);
+    }
+
+
+    /**
+     * The lowest cost of any completed factorisation, shared between concurrent restarts.
+     */
+    private static final class BestCost
+    {
+        private double cost = Double.MAX_VALUE;
+
+        synchronized double get()
+        {
+            return cost;
+        }
+
+        synchronized void update(double cost)
+        {
+            this.cost = Math.min(this.cost, cost);
+        }
+    }
+}
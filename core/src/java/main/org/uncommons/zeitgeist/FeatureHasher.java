@@ -0,0 +1,138 @@
+// ============================================================================
+//   Copyright 2009-2012 Daniel W. Dyer
+//
+//   Licensed under the Apache License, Version 2.0 (the "License");
+//   you may not use this file except in compliance with the License.
+//   You may obtain a copy of the License at
+//
+//       http://www.apache.org/licenses/LICENSE-2.0
+//
+//   Unless required by applicable law or agreed to in writing, software
+//   distributed under the License is distributed on an "AS IS" BASIS,
+//   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+//   See the License for the specific language governing permissions and
+//   limitations under the License.
+// ============================================================================
+package org.uncommons.zeitgeist;
+
+/**
+ * Assigns words to a fixed number of columns by hashing them (the "hashing trick"), so
+ * that each row of a document-term matrix can be built on its own, without a dictionary
+ * of all of the words in all of the documents.  Different words may share a column, which
+ * matters little when there are many more columns than words that are used.  Unlike the
+ * usual hashing trick, there is no second hash to choose the sign of each word's counts,
+ * since the matrix must be non-negative.
+ * @author Daniel Dyer
+ */
+final class FeatureHasher
+{
+    private final int columnCount;
+
+
+    /**
+     * @param columnCount The number of columns that words are assigned to.
+     */
+    FeatureHasher(int columnCount)
+    {
+        if (columnCount < 1)
+        {
+            throw new IllegalArgumentException("Column count must be at least 1.");
+        }
+        this.columnCount = columnCount;
+    }
+
+
+    /**
+     * @return The number of columns that words are assigned to.
+     */
+    int getColumnCount()
+    {
+        return columnCount;
+    }
+
+
+    /**
+     * @param word A word stem.
+     * @return The column assigned to the word, between zero (inclusive) and the column
+     * count (exclusive).  The same word is always assigned the same column.
+     */
+    int getColumn(String word)
+    {
+        return (CountMinSketch.mix(word.hashCode()) & Integer.MAX_VALUE) % columnCount;
+    }
+
+
+    /**
+     * Remembers a word for each column, so that columns can be displayed as words.  Each
+     * column keeps a single candidate and a count (Boyer and Moore's majority vote), so
+     * if one word accounts for most of the occurrences in a column, that is the word
+     * remembered.  Otherwise it is one of the more frequent words in the column.  A sample
+     * is not thread-safe, but samples from different threads can be merged.
+     */
+    static final class Sample
+    {
+        private final String[] words;
+        private final int[] counts;
+
+
+        Sample(int columnCount)
+        {
+            this.words = new String[columnCount];
+            this.counts = new int[columnCount];
+        }
+
+
+        /**
+         * @param column The column assigned to the word.
+         * @param word A word.
+         * @param count The number of occurrences of the word.
+         */
+        void add(int column, String word, int count)
+        {
+            if (counts[column] == 0 || word.equals(words[column]))
+            {
+                words[column] = word;
+                counts[column] += count;
+            }
+            else if (counts[column] >= count)
+            {
+                counts[column] -= count;
+            }
+            else
+            {
+                words[column] = word;
+                counts[column] = count - counts[column];
+            }
+        }
+
+
+        /**
+         * Adds the words of another sample to this one.
+         */
+        void merge(Sample sample)
+        {
+            for (int column = 0; column < words.length; column++)
+            {
+                if (sample.counts[column] > 0)
+                {
+                    add(column, sample.words[column], sample.counts[column]);
+                }
+                else if (words[column] == null)
+                {
+                    words[column] = sample.words[column];
+                }
+            }
+        }
+
+
+        /**
+         * @param column A column.
+         * @return The word remembered for the column, or null if no words have been
+         * assigned to the column.
+         */
+        String getWord(int column)
+        {
+            return words[column];
+        }
+    }
+}
@@ -0,0 +1,147 @@
+// ============================================================================
+//   Copyright 2009-2012 Daniel W. Dyer
+//
+//   Licensed under the Apache License, Version 2.0 (the "License");
+//   you may not use this file except in compliance with the License.
+//   You may obtain a copy of the License at
+//
+//       http://www.apache.org/licenses/LICENSE-2.0
+//
+//   Unless required by applicable law or agreed to in writing, software
+//   distributed under the License is distributed on an "AS IS" BASIS,
+//   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+//   See the License for the specific language governing permissions and
+//   limitations under the License.
+// ============================================================================
+package org.uncommons.zeitgeist;
+
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * The features found by a factorisation together with the words that label their
+ * columns.  Persisting the model allows the next factorisation of a similar set of
+ * articles to start from where this one finished (see {@link WarmStartInitialiser}).
+ * The file format is plain text, one line per word: the word followed by its weight
+ * in each feature, separated by tabs.
+ * @author Daniel Dyer
+ */
+public final class FeatureModel
+{
+    private static final String ENCODING = "UTF-8";
+
+    private final Matrix features;
+    private final List<String> words;
+
+
+    /**
+     * @param features The features matrix, one row per feature and one column per word.
+     * @param words The word corresponding to each column of the features matrix.
+     */
+    public FeatureModel(Matrix features, List<String> words)
+    {
+        if (features.getColumnCount() != words.size())
+        {
+            throw new IllegalArgumentException("There must be exactly one word per column.");
+        }
+        this.features = features;
+        this.words = Collections.unmodifiableList(new ArrayList<String>(words));
+    }
+
+
+    public Matrix getFeatures()
+    {
+        return features;
+    }
+
+
+    public List<String> getWords()
+    {
+        return words;
+    }
+
+
+    /**
+     * Write this model to the specified file, replacing any existing contents.
+     */
+    public void save(File file) throws IOException
+    {
+        Writer writer = new BufferedWriter(new OutputStreamWriter(new FileOutputStream(file), ENCODING));
+        try
+        {
+            for (int column = 0; column < words.size(); column++)
+            {
+                writer.write(words.get(column));
+                for (int row = 0; row < features.getRowCount(); row++)
+                {
+                    writer.write('\t');
+                    writer.write(Double.toString(features.get(row, column)));
+                }
+                writer.write('\n');
+            }
+        }
+        finally
+        {
+            writer.close();
+        }
+    }
+
+
+    /**
+     * Read a model from a file previously written by {@link #save(File)}.
+     */
+    public static FeatureModel load(File file) throws IOException
+    {
+        List<String> words = new ArrayList<String>();
+        List<String[]> lines = new ArrayList<String[]>();
+        BufferedReader reader = new BufferedReader(new InputStreamReader(new FileInputStream(file), ENCODING));
+        try
+        {
+            for (String line = reader.readLine(); line != null; line = reader.readLine())
+            {
+                if (line.length() > 0)
+                {
+                    String[] parts = line.split("\t");
+                    if (!lines.isEmpty() && parts.length != lines.get(0).length)
+                    {
+                        throw new IOException("Inconsistent number of features for word " + parts[0]);
+                    }
+                    words.add(parts[0]);
+                    lines.add(parts);
+                }
+            }
+        }
+        finally
+        {
+            reader.close();
+        }
+
+        int featureCount = lines.isEmpty() ? 0 : lines.get(0).length - 1;
+        Matrix features = new Matrix(featureCount, words.size());
+        try
+        {
+            for (int column = 0; column < lines.size(); column++)
+            {
+                for (int row = 0; row < featureCount; row++)
+                {
+                    features.set(row, column, Double.parseDouble(lines.get(column)[row + 1]));
+                }
+            }
+        }
+        catch (NumberFormatException ex)
+        {
+            throw new IOException("Invalid feature model: " + ex.getMessage());
+        }
+        return new FeatureModel(features, words);
+    }
+}
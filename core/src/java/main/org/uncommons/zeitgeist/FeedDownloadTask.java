@@ -62,6 +62,7 @@ class FeedDownloadTask implements Callable<List<Article>>
     private final URL feedURL;
     private final List<? extends ArticleFilter> filters;
     private final boolean includeInlineImages;
+    private final boolean prepareWordCounts;
 
 
     FeedDownloadTask(FeedFetcher fetcher,
@@ -76,11 +77,26 @@ class FeedDownloadTask implements Callable<List<Article>>
                      URL feedURL,
                      List<? extends ArticleFilter> filters,
                      boolean includeInlineImages)
+    {
+        this(fetcher, feedURL, filters, includeInlineImages, false);
+    }
+
+
+    /**
+     * @param prepareWordCounts Whether to tokenise each article that passes the filters
+     * as part of this task, rather than leaving it until the words are first needed.
+     */
+    FeedDownloadTask(FeedFetcher fetcher,
+                     URL feedURL,
+                     List<? extends ArticleFilter> filters,
+                     boolean includeInlineImages,
+                     boolean prepareWordCounts)
     {
         this.fetcher = fetcher;
         this.feedURL = feedURL;
         this.filters = filters;
         this.includeInlineImages = includeInlineImages;
+        this.prepareWordCounts = prepareWordCounts;
     }
 
 
@@ -112,6 +128,10 @@ class FeedDownloadTask implements Callable<List<Article>>
                                               feedIcon);
                 if (matchAllFilters(article))
                 {
+                    if (prepareWordCounts)
+                    {
+                        article.prepareWordCounts();
+                    }
                     feedArticles.add(article);
                 }
             }
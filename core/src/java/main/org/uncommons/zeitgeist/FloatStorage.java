@@ -0,0 +1,116 @@
+// ============================================================================
+//   Copyright 2009-2012 Daniel W. Dyer
+//
+//   Licensed under the Apache License, Version 2.0 (the "License");
+//   you may not use this file except in compliance with the License.
+//   You may obtain a copy of the License at
+//
+//       http://www.apache.org/licenses/LICENSE-2.0
+//
+//   Unless required by applicable law or agreed to in writing, software
+//   distributed under the License is distributed on an "AS IS" BASIS,
+//   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+//   See the License for the specific language governing permissions and
+//   limitations under the License.
+// ============================================================================
+package org.uncommons.zeitgeist;
+
+import java.util.Arrays;
+
+/**
+ * Matrix storage backed by an array of floats.  This halves the memory used, and the
+ * memory bandwidth consumed by the products, at the cost of precision.  Values are rounded
+ * to single precision when they are stored.  Dot products and distances are accumulated in
+ * double precision, but a product written into float storage is summed in place, so each
+ * of its partial sums is rounded to single precision too.
+ * @author Daniel Dyer
+ */
+final class FloatStorage extends MatrixStorage
+{
+    private final float[] data;
+
+    FloatStorage(int size)
+    {
+        this.data = new float[size];
+    }
+
+
+    @Override
+    StorageMode getMode()
+    {
+        return StorageMode.FLOAT;
+    }
+
+
+    @Override
+    long size()
+    {
+        return data.length;
+    }
+
+
+    @Override
+    double get(long index)
+    {
+        return data[(int) index];
+    }
+
+
+    @Override
+    void set(long index, double value)
+    {
+        data[(int) index] = (float) value;
+    }
+
+
+    @Override
+    void clear(long fromIndex, long toIndex)
+    {
+        Arrays.fill(data, (int) fromIndex, (int) toIndex, 0);
+    }
+
+
+    @Override
+    double dot(long offset, MatrixStorage other, long otherOffset, int length)
+    {
+        if (other instanceof FloatStorage)
+        {
+            return Kernels.dot(data, (int) offset, ((FloatStorage) other).data, (int) otherOffset, length);
+        }
+        return genericDot(offset, other, otherOffset, length);
+    }
+
+
+    @Override
+    void addScaled(long offset, double scale, MatrixStorage source, long sourceOffset, int length)
+    {
+        if (source instanceof FloatStorage)
+        {
+            // Kept entirely in single precision (rather than converting each term) so
+            // that the loop can be vectorised.
+            float floatScale = (float) scale;
+            float[] sourceData = ((FloatStorage) source).data;
+            int start = (int) offset;
+            int sourceStart = (int) sourceOffset;
+            for (int i = 0; i < length; i++)
+            {
+                data[start + i] += floatScale * sourceData[sourceStart + i];
+            }
+        }
+        else
+        {
+            genericAddScaled(offset, scale, source, sourceOffset, length);
+        }
+    }
+
+
+    @Override
+    double squaredDistance(MatrixStorage other)
+    {
+        if (other instanceof FloatStorage)
+        {
+            return Kernels.squaredDistance(data, ((FloatStorage) other).data, data.length);
+        }
+        return genericSquaredDistance(other);
+    }
+}
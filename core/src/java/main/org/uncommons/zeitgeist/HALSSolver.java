@@ -0,0 +1,64 @@
+// ============================================================================
+//   Copyright 2009-2012 Daniel W. Dyer
+//
+//   Licensed under the Apache License, Version 2.0 (the "License");
+//   you may not use this file except in compliance with the License.
+//   You may obtain a copy of the License at
+//
+//       http://www.apache.org/licenses/LICENSE-2.0
+//
+//   Unless required by applicable law or agreed to in writing, software
+//   distributed under the License is distributed on an "AS IS" BASIS,
+//   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+//   See the License for the specific language governing permissions and
+//   limitations under the License.
+// ============================================================================
+package org.uncommons.zeitgeist;
+
+/**
+ * Hierarchical alternating least squares (Cichocki &amp; Phan).  Each column of the factor
+ * is, in turn, replaced by the non-negative least squares solution with all of the other
+ * columns held fixed.  This usually reduces the error far more per iteration than the
+ * multiplicative updates, for about the same amount of arithmetic.
+ * @author Daniel Dyer
+ */
+public class HALSSolver implements FactorisationSolver
+{
+    // Elements are not allowed to reach zero, since a column of zeros would have a zero
+    // Gram diagonal and could never recover.
+    private static final double EPSILON = 1e-16;
+
+    public void update(final Matrix factor,
+                       final Matrix numerator,
+                       final Matrix gram,
+                       RowPartitioner partitioner)
+    {
+        final int k = factor.getColumnCount();
+        long operationCount = (long) factor.getRowCount() * k * k;
+        partitioner.execute(factor.getRowCount(), operationCount, new RowPartitioner.RowTask()
+        {
+            public void processRows(int fromRow, int toRow)
+            {
+                for (int row = fromRow; row < toRow; row++)
+                {
+                    // Unlike the multiplicative updates, each column sees the new values
+                    // of the columns before it.
+                    for (int j = 0; j < k; j++)
+                    {
+                        double diagonal = gram.get(j, j);
+                        if (diagonal > 0)
+                        {
+                            double sum = 0;
+                            for (int l = 0; l < k; l++)
+                            {
+                                sum += factor.get(row, l) * gram.get(l, j);
+                            }
+                            double value = factor.get(row, j) + (numerator.get(row, j) - sum) / diagonal;
+                            factor.set(row, j, Math.max(EPSILON, value));
+                        }
+                    }
+                }
+            }
+        });
+    }
+}
@@ -0,0 +1,158 @@
+// ============================================================================
+//   Copyright 2009-2012 Daniel W. Dyer
+//
+//   Licensed under the Apache License, Version 2.0 (the "License");
+//   you may not use this file except in compliance with the License.
+//   You may obtain a copy of the License at
+//
+//       http://www.apache.org/licenses/LICENSE-2.0
+//
+//   Unless required by applicable law or agreed to in writing, software
+//   distributed under the License is distributed on an "AS IS" BASIS,
+//   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+//   See the License for the specific language governing permissions and
+//   limitations under the License.
+// ============================================================================
+package org.uncommons.zeitgeist;
+
+/**
+ * Snapshot of the progress of a factorisation after a given number of iterations.
+ * Instances passed to a {@link FactorisationObserver} are never modified.  When there are
+ * no observers, the {@link Factoriser} re-uses a single instance for each iteration, so
+ * termination conditions must not retain the data that they are given.
+ * @author Daniel Dyer
+ */
+public final class IterationData
+{
+    private int restart;
+    private int iteration;
+    private double cost;
+    private double improvement;
+    private long elapsedNanos;
+    private long allocatedBytes;
+
+
+    /**
+     * @param iteration The number of iterations completed.
+     * @param cost The cost after the latest iteration.
+     * @param previousCost The cost before the latest iteration.
+     * @param elapsedNanos The time, in nanoseconds, since the factorisation started.
+     */
+    public IterationData(int iteration, double cost, double previousCost, long elapsedNanos)
+    {
+        this(iteration, cost, previousCost, elapsedNanos, -1);
+    }
+
+
+    /**
+     * @param iteration The number of iterations completed.
+     * @param cost The cost after the latest iteration.
+     * @param previousCost The cost before the latest iteration.
+     * @param elapsedNanos The time, in nanoseconds, since the factorisation started.
+     * @param allocatedBytes The number of bytes allocated during the latest iteration,
+     * or -1 if this is not known.
+     */
+    public IterationData(int iteration, double cost, double previousCost, long elapsedNanos, long allocatedBytes)
+    {
+        this(0, iteration, cost, previousCost, elapsedNanos, allocatedBytes);
+    }
+
+
+    /**
+     * @param restart The index of the factorisation (see {@link Factoriser#setRestarts(int)})
+     * that this data belongs to.
+     * @param iteration The number of iterations completed.
+     * @param cost The cost after the latest iteration.
+     * @param previousCost The cost before the latest iteration.
+     * @param elapsedNanos The time, in nanoseconds, since the factorisation started.
+     * @param allocatedBytes The number of bytes allocated during the latest iteration,
+     * or -1 if this is not known.
+     */
+    public IterationData(int restart,
+                         int iteration,
+                         double cost,
+                         double previousCost,
+                         long elapsedNanos,
+                         long allocatedBytes)
+    {
+        this.restart = restart;
+        this.iteration = iteration;
+        this.cost = cost;
+        this.improvement = 1 - cost / previousCost;
+        this.elapsedNanos = elapsedNanos;
+        this.allocatedBytes = allocatedBytes;
+    }
+
+
+    /**
+     * Overwrite the values for a later iteration of the same factorisation.
+     */
+    void update(int iteration, double cost, double previousCost, long elapsedNanos, long allocatedBytes)
+    {
+        this.iteration = iteration;
+        this.cost = cost;
+        this.improvement = 1 - cost / previousCost;
+        this.elapsedNanos = elapsedNanos;
+        this.allocatedBytes = allocatedBytes;
+    }
+
+
+    /**
+     * @return The index, from zero, of the factorisation that this data belongs to.  When
+     * there are several restarts, they run concurrently and their data is interleaved.
+     */
+    public int getRestart()
+    {
+        return restart;
+    }
+
+
+    /**
+     * @return The number of iterations completed (zero for the initial state).
+     */
+    public int getIteration()
+    {
+        return iteration;
+    }
+
+
+    /**
+     * @return The sum of the squared differences between the matrix being factorised
+     * and the product of the current factors.
+     */
+    public double getCost()
+    {
+        return cost;
+    }
+
+
+    /**
+     * @return The fractional reduction in cost achieved by the latest iteration (e.g. 0.05
+     * if the cost fell by 5%).  For the initial state, this is 1.
+     */
+    public double getImprovement()
+    {
+        return improvement;
+    }
+
+
+    /**
+     * @return The time, in nanoseconds, since the factorisation started.
+     */
+    public long getElapsedNanos()
+    {
+        return elapsedNanos;
+    }
+
+
+    /**
+     * @return The number of bytes of heap allocated by the factorising thread during the
+     * latest iteration (or, for the initial state, during initialisation).  Allocations by
+     * the worker threads of a multi-threaded factorisation are not included.  Returns -1
+     * if the JVM does not support measuring per-thread allocation.
+     */
+    public long getAllocatedBytes()
+    {
+        return allocatedBytes;
+    }
+}
@@ -0,0 +1,94 @@
+// ============================================================================
+//   Copyright 2009-2012 Daniel W. Dyer
+//
+//   Licensed under the Apache License, Version 2.0 (the "License");
+//   you may not use this file except in compliance with the License.
+//   You may obtain a copy of the License at
+//
+//       http://www.apache.org/licenses/LICENSE-2.0
+//
+//   Unless required by applicable law or agreed to in writing, software
+//   distributed under the License is distributed on an "AS IS" BASIS,
+//   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+//   See the License for the specific language governing permissions and
+//   limitations under the License.
+// ============================================================================
+package org.uncommons.zeitgeist;
+
+import java.io.IOException;
+import java.io.Writer;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * A {@link FactorisationObserver} that records the progress of every iteration so that
+ * it can be written out, as CSV or JSON, for later analysis.
+ * @author Daniel Dyer
+ */
+public class IterationRecorder implements FactorisationObserver
+{
+    private final List<IterationData> iterations = new ArrayList<IterationData>();
+
+
+    public synchronized void iterationComplete(IterationData data)
+    {
+        iterations.add(data);
+    }
+
+
+    /**
+     * @return The data recorded so far, in the order that it was recorded.
+     */
+    public synchronized List<IterationData> getIterations()
+    {
+        return new ArrayList<IterationData>(iterations);
+    }
+
+
+    /**
+     * Write the recorded data as comma-separated values, one line per iteration, with
+     * a header line.  The last column identifies the restart that each iteration belongs to.
+     */
+    public void writeCSV(Writer writer) throws IOException
+    {
+        writer.write("iteration,cost,improvement,elapsedNanos,allocatedBytes,restart\n");
+        for (IterationData data : getIterations())
+        {
+            writer.write(data.getIteration() + "," + data.getCost() + "," + data.getImprovement() + ","
+                         + data.getElapsedNanos() + "," + data.getAllocatedBytes() + "," + data.getRestart() + "\n");
+        }
+        writer.flush();
+    }
+
+
+    /**
+     * Write the recorded data as a JSON array, with one object per iteration.
+     */
+    public void writeJSON(Writer writer) throws IOException
+    {
+        writer.write("[");
+        String separator = "\n";
+        for (IterationData data : getIterations())
+        {
+            writer.write(separator);
+            writer.write("  {\"iteration\": " + data.getIteration()
+                         + ", \"cost\": " + toJSON(data.getCost())
+                         + ", \"improvement\": " + toJSON(data.getImprovement())
+                         + ", \"elapsedNanos\": " + data.getElapsedNanos()
+                         + ", \"allocatedBytes\": " + data.getAllocatedBytes()
+                         + ", \"restart\": " + data.getRestart() + "}");
+            separator = ",\n";
+        }
+        writer.write("\n]\n");
+        writer.flush();
+    }
+
+
+    /**
+     * JSON has no representation for NaN or infinity, so they are written as null.
+     */
+    private String toJSON(double value)
+    {
+        return Double.isNaN(value) || Double.isInfinite(value) ? "null" : String.valueOf(value);
+    }
+}
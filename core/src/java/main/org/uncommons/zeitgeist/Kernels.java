@@ -0,0 +1,233 @@
+// ============================================================================
+//   Copyright 2009-2012 Daniel W. Dyer
+//
+//   Licensed under the Apache License, Version 2.0 (the "License");
+//   you may not use this file except in compliance with the License.
+//   You may obtain a copy of the License at
+//
+//       http://www.apache.org/licenses/LICENSE-2.0
+//
+//   Unless required by applicable law or agreed to in writing, software
+//   distributed under the License is distributed on an "AS IS" BASIS,
+//   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+//   See the License for the specific language governing permissions and
+//   limitations under the License.
+// ============================================================================
+package org.uncommons.zeitgeist;
+
+/**
+ * The reductions (dot products and sums of squares) at the heart of the dense matrix
+ * operations.  There are two implementations, chosen once, at start-up, by the
+ * {@code zeitgeist.kernels} system property:
+ * <ul>
+ *   <li>{@code scalar} (the default) adds the terms strictly in order, using a single
+ *   accumulator.</li>
+ *   <li>{@code unrolled} uses four independent accumulators, which are combined at the
+ *   end.  This breaks the chain of dependent additions, so that the processor can overlap
+ *   them, which makes long reductions considerably faster.</li>
+ * </ul>
+ * Floating-point addition is not associative, so the two implementations round
+ * differently.  For a reduction of n terms t<sub>i</sub>, the results of the two differ by
+ * no more than {@link #TOLERANCE} &times; n &times; &Sigma;|t<sub>i</sub>|, which for
+ * non-negative data (all terms positive) is a relative difference of at most a few
+ * multiples of n times the machine epsilon.
+ * @author Daniel Dyer
+ */
+final class Kernels
+{
+    static final String PROPERTY = "zeitgeist.kernels";
+    static final boolean UNROLLED = "unrolled".equalsIgnoreCase(System.getProperty(PROPERTY, "scalar"));
+    /**
+     * Twice the machine epsilon for doubles (each implementation can be wrong by up to
+     * n &times; epsilon relative to the sum of the absolute values of the terms).
+     */
+    static final double TOLERANCE = 2 * Math.ulp(1.0);
+
+    private Kernels()
+    {
+        // Prevents instantiation.
+    }
+
+
+    /**
+     * @return The sum of the products of the corresponding elements of the two ranges.
+     */
+    static double dot(double[] a, int aOffset, double[] b, int bOffset, int length)
+    {
+        return UNROLLED ? unrolledDot(a, aOffset, b, bOffset, length) : scalarDot(a, aOffset, b, bOffset, length);
+    }
+
+
+    /**
+     * @return The sum of the squared differences between corresponding elements of the
+     * two ranges.
+     */
+    static double squaredDistance(double[] a, double[] b, int length)
+    {
+        return UNROLLED ? unrolledSquaredDistance(a, b, length) : scalarSquaredDistance(a, b, length);
+    }
+
+
+    static double scalarDot(double[] a, int aOffset, double[] b, int bOffset, int length)
+    {
+        double sum = 0;
+        for (int i = 0; i < length; i++)
+        {
+            sum += a[aOffset + i] * b[bOffset + i];
+        }
+        return sum;
+    }
+
+
+    static double unrolledDot(double[] a, int aOffset, double[] b, int bOffset, int length)
+    {
+        double sum0 = 0;
+        double sum1 = 0;
+        double sum2 = 0;
+        double sum3 = 0;
+        int i = 0;
+        for (; i < length - 3; i += 4)
+        {
+            sum0 += a[aOffset + i] * b[bOffset + i];
+            sum1 += a[aOffset + i + 1] * b[bOffset + i + 1];
+            sum2 += a[aOffset + i + 2] * b[bOffset + i + 2];
+            sum3 += a[aOffset + i + 3] * b[bOffset + i + 3];
+        }
+        for (; i < length; i++)
+        {
+            sum0 += a[aOffset + i] * b[bOffset + i];
+        }
+        return (sum0 + sum1) + (sum2 + sum3);
+    }
+
+
+    static double scalarSquaredDistance(double[] a, double[] b, int length)
+    {
+        double sum = 0;
+        for (int i = 0; i < length; i++)
+        {
+            double delta = a[i] - b[i];
+            sum += delta * delta;
+        }
+        return sum;
+    }
+
+
+    static double unrolledSquaredDistance(double[] a, double[] b, int length)
+    {
+        double sum0 = 0;
+        double sum1 = 0;
+        double sum2 = 0;
+        double sum3 = 0;
+        int i = 0;
+        for (; i < length - 3; i += 4)
+        {
+            double delta0 = a[i] - b[i];
+            double delta1 = a[i + 1] - b[i + 1];
+            double delta2 = a[i + 2] - b[i + 2];
+            double delta3 = a[i + 3] - b[i + 3];
+            sum0 += delta0 * delta0;
+            sum1 += delta1 * delta1;
+            sum2 += delta2 * delta2;
+            sum3 += delta3 * delta3;
+        }
+        for (; i < length; i++)
+        {
+            double delta = a[i] - b[i];
+            sum0 += delta * delta;
+        }
+        return (sum0 + sum1) + (sum2 + sum3);
+    }
+
+
+    /**
+     * @return The sum of the products of the corresponding elements of the two ranges,
+     * accumulated in double precision.
+     */
+    static double dot(float[] a, int aOffset, float[] b, int bOffset, int length)
+    {
+        return UNROLLED ? unrolledDot(a, aOffset, b, bOffset, length) : scalarDot(a, aOffset, b, bOffset, length);
+    }
+
+
+    /**
+     * @return The sum of the squared differences between corresponding elements of the
+     * two ranges, accumulated in double precision.
+     */
+    static double squaredDistance(float[] a, float[] b, int length)
+    {
+        return UNROLLED ? unrolledSquaredDistance(a, b, length) : scalarSquaredDistance(a, b, length);
+    }
+
+
+    static double scalarDot(float[] a, int aOffset, float[] b, int bOffset, int length)
+    {
+        double sum = 0;
+        for (int i = 0; i < length; i++)
+        {
+            sum += (double) a[aOffset + i] * b[bOffset + i];
+        }
+        return sum;
+    }
+
+
+    static double unrolledDot(float[] a, int aOffset, float[] b, int bOffset, int length)
+    {
+        double sum0 = 0;
+        double sum1 = 0;
+        double sum2 = 0;
+        double sum3 = 0;
+        int i = 0;
+        for (; i < length - 3; i += 4)
+        {
+            sum0 += (double) a[aOffset + i] * b[bOffset + i];
+            sum1 += (double) a[aOffset + i + 1] * b[bOffset + i + 1];
+            sum2 += (double) a[aOffset + i + 2] * b[bOffset + i + 2];
+            sum3 += (double) a[aOffset + i + 3] * b[bOffset + i + 3];
+        }
+        for (; i < length; i++)
+        {
+            sum0 += (double) a[aOffset + i] * b[bOffset + i];
+        }
+        return (sum0 + sum1) + (sum2 + sum3);
+    }
+
+
+    static double scalarSquaredDistance(float[] a, float[] b, int length)
+    {
+        double sum = 0;
+        for (int i = 0; i < length; i++)
+        {
+            double delta = (double) a[i] - b[i];
+            sum += delta * delta;
+        }
+        return sum;
+    }
+
+
+    static double unrolledSquaredDistance(float[] a, float[] b, int length)
+    {
+        double sum0 = 0;
+        double sum1 = 0;
+        double sum2 = 0;
+        double sum3 = 0;
+        int i = 0;
+        for (; i < length - 3; i += 4)
+        {
+            double delta0 = (double) a[i] - b[i];
+            double delta1 = (double) a[i + 1] - b[i + 1];
+            double delta2 = (double) a[i + 2] - b[i + 2];
+            double delta3 = (double) a[i + 3] - b[i + 3];
+            sum0 += delta0 * delta0;
+            sum1 += delta1 * delta1;
+            sum2 += delta2 * delta2;
+            sum3 += delta3 * delta3;
+        }
+        for (; i < length; i++)
+        {
+            double delta = (double) a[i] - b[i];
+            sum0 += delta * delta;
+        }
+        return (sum0 + sum1) + (sum2 + sum3);
+    }
+}
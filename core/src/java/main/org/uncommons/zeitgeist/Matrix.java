@@ -15,39 +15,51 @@
 // ============================================================================
 package org.uncommons.zeitgeist;
 
-import java.util.Random;
 import java.util.List;
-import java.util.Arrays;
-import org.grlea.log.SimpleLogger;
+import java.util.Random;
 
 /**
  * Simple matrix implementation that supports specific operations required by the
- * non-negative matrix factorisation algorithm.
+ * non-negative matrix factorisation algorithm.  Values are stored in a single array
+ * in row-major order, so the product kernels are arranged to read rows sequentially
+ * wherever possible.  The values may be held as doubles or, to halve the memory
+ * required, as floats.  Very large matrices can be held outside of the Java heap, in
+ * which case the number of elements may exceed 2<sup>31</sup> (see {@link StorageMode}).
  * @author Daniel Dyer
  */
-public final class Matrix
+public final class Matrix implements FactorisableMatrix
 {
-    private static final SimpleLogger LOG = new SimpleLogger(Matrix.class);
-    private static final Random RNG = new Random();
-    
+    // The product kernels are tiled so that the data touched by their inner loops
+    // (measured in doubles) fits comfortably within a typical 256KB L2 cache.
+    private static final int BLOCK_SIZE = 8192;
+
     private final int rowCount;
     private final int columnCount;
-    private final double[] data;
+    private final MatrixStorage data;
 
     public Matrix(int rowCount, int columnCount)
+    {
+        this(rowCount, columnCount, StorageMode.DOUBLE);
+    }
+
+
+    /**
+     * Creates a matrix of zeros, with values stored in the specified form.
+     */
+    public Matrix(int rowCount, int columnCount, StorageMode storageMode)
     {
         this.rowCount = rowCount;
         this.columnCount = columnCount;
-        this.data = new double[rowCount * columnCount];
+        this.data = storageMode.allocate((long) rowCount * columnCount);
     }
 
 
     public Matrix(int rowCount, int columnCount, Random rng)
     {
         this(rowCount, columnCount);
-        for (int i = 0; i < data.length; i++)
+        for (long i = 0; i < data.size(); i++)
         {
-            data[i] = rng.nextDouble();
+            data.set(i, rng.nextDouble());
         }
     }
 
@@ -67,13 +79,13 @@ public final class Matrix
 
     public final double get(int row, int column)
     {
-        return data[row * columnCount + column];
+        return data.get((long) row * columnCount + column);
     }
 
 
     public final void set(int row, int column, double value)
     {
-        data[row * columnCount + column] = value;
+        data.set((long) row * columnCount + column, value);
     }
 
 
@@ -89,6 +101,16 @@ public final class Matrix
     }
 
 
+    /**
+     * @return How the values of this matrix are stored.  Matrices created by operations
+     * on this matrix use the same form.
+     */
+    public StorageMode getStorageMode()
+    {
+        return data.getMode();
+    }
+
+
     /**
      * Perform non-negative factorisation on this matrix.
      * The result is a pair of matrices (weights and features) that,
@@ -101,41 +123,50 @@ public final class Matrix
      */
     public List<Matrix> factorise(int featureCount)
     {
-        Matrix weights = new Matrix(getRowCount(), featureCount, RNG);
-        Matrix features = new Matrix(featureCount, getColumnCount(), RNG);
+        return new Factoriser().factorise(this, featureCount);
+    }
 
-        double oldCost = Double.MAX_VALUE;
-        Matrix product = weights.multiply(features);
-        double cost = diffCost(product);
-        while (cost / oldCost < 0.99) // Once improvement is less than 1%, stop iterating.
-        {
-            Matrix hn = weights.multiplyTransposeLeft(this);
-            Matrix hd = weights.multiplyTransposeLeft(weights).multiply(features);
-            features.elementMultiplyAndDivide(hn, hd);
 
-            Matrix wn = multiplyTransposeRight(features);
-            Matrix wd = weights.multiply(features).multiplyTransposeRight(features);
-            weights.elementMultiplyAndDivide(wn, wd);
+    public double diffCost(Matrix other)
+    {
+        other.checkDimensions(rowCount, columnCount);
+        return data.squaredDistance(other.data);
+    }
+
 
-            product = weights.multiply(features);
-            oldCost = cost;
-            cost = diffCost(product);
+    public double sum()
+    {
+        double sum = 0;
+        for (long i = 0; i < data.size(); i++)
+        {
+            sum += data.get(i);
         }
-        LOG.debug("Minimised factorisation error: " + cost);
+        return sum;
+    }
+
 
-        return Arrays.asList(weights, features);
+    public double squaredNorm()
+    {
+        return innerProduct(this);
     }
 
 
-    private double diffCost(Matrix other)
+    /**
+     * Calculates the Frobenius inner product of this matrix and the specified (same-sized)
+     * matrix, i.e. the sum of the products of corresponding elements.  This is equivalent to
+     * the trace of the product of the transpose of this matrix and the other matrix, but
+     * without forming that product.
+     */
+    double innerProduct(Matrix other)
     {
-        double diff = 0;
-        for (int i = 0; i < data.length; i++)
+        other.checkDimensions(rowCount, columnCount);
+        double sum = 0;
+        for (int row = 0; row < rowCount; row++)
         {
-            double delta = data[i] - other.data[i];
-            diff += delta * delta;
+            long offset = (long) row * columnCount;
+            sum += data.dot(offset, other.data, offset, columnCount);
         }
-        return diff;
+        return sum;
     }
 
 
@@ -145,20 +176,69 @@ public final class Matrix
      */
     public Matrix multiply(Matrix m)
     {
-        Matrix result = new Matrix(rowCount, m.getColumnCount());
-        for (int row = 0; row < result.getRowCount(); row++)
+        return multiply(m, RowPartitioner.SERIAL);
+    }
+
+
+    /**
+     * Multiply this matrix (row-by-column) by the specified matrix, splitting the rows
+     * of the result between the threads of the specified partitioner.
+     * Rather than computing each result element as a dot product of a row and a column
+     * (which walks down the columns of the second matrix, touching a different cache
+     * line for every element), each row of the result is accumulated by adding scaled
+     * rows of the second matrix, so all three arrays are read sequentially.  The result
+     * is processed in vertical tiles so that the rows of the second matrix that
+     * contribute to a tile stay in cache while it is calculated for a block of rows.
+     * @return A new matrix that is the result of the multiplication.
+     */
+    public Matrix multiply(Matrix m, RowPartitioner partitioner)
+    {
+        Matrix result = new Matrix(rowCount, m.getColumnCount(), getStorageMode());
+        multiply(m, result, partitioner);
+        return result;
+    }
+
+
+    /**
+     * Multiply this matrix (row-by-column) by the specified matrix, writing the product
+     * into an existing matrix rather than allocating a new one.
+     * @param m The matrix to multiply by.
+     * @param result Overwritten with the product.  Must have the same number of rows as
+     * this matrix and the same number of columns as {@code m}, and must not be either of
+     * the matrices being multiplied.
+     * @param partitioner Determines how the work is split between threads.
+     */
+    public void multiply(final Matrix m, final Matrix result, RowPartitioner partitioner)
+    {
+        checkProductDimensions(columnCount, m.getRowCount());
+        result.checkDimensions(rowCount, m.getColumnCount());
+        long operationCount = result.data.size() * columnCount;
+        partitioner.execute(result.getRowCount(), operationCount, new RowPartitioner.RowTask()
         {
-            for (int column = 0; column < result.getColumnCount(); column++)
+            public void processRows(int fromRow, int toRow)
             {
-                double value = 0;
-                for (int i = 0; i < columnCount; i++)
+                int width = result.columnCount;
+                int tileWidth = Math.max(1, BLOCK_SIZE / Math.max(1, columnCount));
+                result.data.clear((long) fromRow * width, (long) toRow * width);
+                for (int fromColumn = 0; fromColumn < width; fromColumn += tileWidth)
                 {
-                    value += get(row, i) * m.get(i, column);
+                    int toColumn = Math.min(width, fromColumn + tileWidth);
+                    for (int row = fromRow; row < toRow; row++)
+                    {
+                        long resultOffset = (long) row * width;
+                        long offset = (long) row * columnCount;
+                        for (int i = 0; i < columnCount; i++)
+                        {
+                            result.data.addScaled(resultOffset + fromColumn,
+                                                  data.get(offset + i),
+                                                  m.data,
+                                                  (long) i * width + fromColumn,
+                                                  toColumn - fromColumn);
+                        }
+                    }
                 }
-                result.set(row, column, value);
             }
-        }
-        return result;
+        });
     }
 
 
@@ -166,22 +246,64 @@ public final class Matrix
      * Multiply this matrix (row-by-column) by the transpose of the specified matrix.
      * @return A new matrix that is the result of the multiplication.
      */
-    Matrix multiplyTransposeRight(Matrix m)
+    public Matrix multiplyTransposeRight(Matrix m)
+    {
+        return multiplyTransposeRight(m, RowPartitioner.SERIAL);
+    }
+
+
+    /**
+     * Multiply this matrix (row-by-column) by the transpose of the specified matrix, splitting
+     * the rows of the result between the threads of the specified partitioner.
+     * Each result element is the dot product of a row of this matrix and a row of the
+     * other, both of which are contiguous.  The rows of the other matrix are processed in
+     * blocks small enough to remain in cache while they are combined with every row of
+     * this matrix.
+     * @return A new matrix that is the result of the multiplication.
+     */
+    public Matrix multiplyTransposeRight(Matrix m, RowPartitioner partitioner)
+    {
+        Matrix result = new Matrix(rowCount, m.getRowCount(), getStorageMode());
+        multiplyTransposeRight(m, result, partitioner);
+        return result;
+    }
+
+
+    /**
+     * Multiply this matrix (row-by-column) by the transpose of the specified matrix, writing
+     * the product into an existing matrix rather than allocating a new one.
+     * @param m The matrix whose transpose this matrix is multiplied by.
+     * @param result Overwritten with the product.  Must have the same number of rows as
+     * this matrix and as many columns as {@code m} has rows, and must not be either of the
+     * matrices being multiplied.
+     * @param partitioner Determines how the work is split between threads.
+     */
+    public void multiplyTransposeRight(final Matrix m, final Matrix result, RowPartitioner partitioner)
     {
-        Matrix result = new Matrix(rowCount, m.getRowCount());
-        for (int row = 0; row < result.getRowCount(); row++)
+        checkProductDimensions(columnCount, m.getColumnCount());
+        result.checkDimensions(rowCount, m.getRowCount());
+        long operationCount = result.data.size() * columnCount;
+        partitioner.execute(result.getRowCount(), operationCount, new RowPartitioner.RowTask()
         {
-            for (int column = 0; column < result.getColumnCount(); column++)
+            public void processRows(int fromRow, int toRow)
             {
-                double value = 0;
-                for (int i = 0; i < columnCount; i++)
+                int width = result.columnCount;
+                int blockHeight = Math.max(1, BLOCK_SIZE / Math.max(1, columnCount));
+                for (int fromColumn = 0; fromColumn < width; fromColumn += blockHeight)
                 {
-                    value += get(row, i) * m.get(column, i);
+                    int toColumn = Math.min(width, fromColumn + blockHeight);
+                    for (int row = fromRow; row < toRow; row++)
+                    {
+                        long offset = (long) row * columnCount;
+                        for (int column = fromColumn; column < toColumn; column++)
+                        {
+                            result.data.set((long) row * width + column,
+                                            data.dot(offset, m.data, (long) column * columnCount, columnCount));
+                        }
+                    }
                 }
-                result.set(row, column, value);
             }
-        }
-        return result;
+        });
     }
 
 
@@ -191,23 +313,175 @@ public final class Matrix
      */
     Matrix multiplyTransposeLeft(Matrix m)
     {
-        Matrix result = new Matrix(columnCount, m.getColumnCount());
-        for (int row = 0; row < result.getRowCount(); row++)
+        return multiplyTransposeLeft(m, RowPartitioner.SERIAL);
+    }
+
+
+    /**
+     * Transpose this matrix and multiply (row-by-column) by the specified matrix, splitting
+     * the rows of the result between the threads of the specified partitioner.
+     * The transpose is never materialised.  Instead, the rows of both matrices are read
+     * sequentially and each pair of rows adds one scaled row of the other matrix to every
+     * result row in the current block.  The result is processed in blocks of whole rows,
+     * small enough that the portion being accumulated stays in cache, so each addition
+     * covers the full width of a result row however many rows the result has.
+     * @return A new matrix that is the result of the multiplication.
+     */
+    Matrix multiplyTransposeLeft(Matrix m, RowPartitioner partitioner)
+    {
+        Matrix result = new Matrix(columnCount, m.getColumnCount(), getStorageMode());
+        multiplyTransposeLeft(m, result, partitioner);
+        return result;
+    }
+
+
+    /**
+     * Transpose this matrix and multiply (row-by-column) by the specified matrix, writing
+     * the product into an existing matrix rather than allocating a new one.
+     * @param m The matrix to multiply by.
+     * @param result Overwritten with the product.  Must have as many rows as this matrix
+     * has columns and the same number of columns as {@code m}, and must not be either of
+     * the matrices being multiplied.
+     * @param partitioner Determines how the work is split between threads.
+     */
+    public void multiplyTransposeLeft(final Matrix m, final Matrix result, RowPartitioner partitioner)
+    {
+        checkProductDimensions(rowCount, m.getRowCount());
+        result.checkDimensions(columnCount, m.getColumnCount());
+        long operationCount = result.data.size() * rowCount;
+        partitioner.execute(result.getRowCount(), operationCount, new RowPartitioner.RowTask()
         {
-            for (int column = 0; column < result.getColumnCount(); column++)
+            public void processRows(int fromRow, int toRow)
             {
-                double value = 0;
-                for (int i = 0; i < rowCount; i++)
+                int width = result.columnCount;
+                int blockHeight = Math.max(1, BLOCK_SIZE / Math.max(1, width));
+                result.data.clear((long) fromRow * width, (long) toRow * width);
+                for (int fromBlockRow = fromRow; fromBlockRow < toRow; fromBlockRow += blockHeight)
                 {
-                    value += get(i, row) * m.get(i, column);
+                    int toBlockRow = Math.min(toRow, fromBlockRow + blockHeight);
+                    for (int i = 0; i < rowCount; i++)
+                    {
+                        long offset = (long) i * columnCount;
+                        long mOffset = (long) i * width;
+                        for (int row = fromBlockRow; row < toBlockRow; row++)
+                        {
+                            result.data.addScaled((long) row * width,
+                                                  data.get(offset + row),
+                                                  m.data,
+                                                  mOffset,
+                                                  width);
+                        }
+                    }
                 }
-                result.set(row, column, value);
             }
-        }
+        });
+    }
+
+
+    /**
+     * @return A new matrix that is the transpose of this matrix.
+     */
+    Matrix transpose()
+    {
+        Matrix result = new Matrix(columnCount, rowCount, getStorageMode());
+        transpose(result);
         return result;
     }
 
 
+    /**
+     * Write the transpose of this matrix into an existing matrix.
+     * @param result Overwritten with the transpose.  Must have as many rows as this matrix
+     * has columns and vice versa.
+     */
+    void transpose(Matrix result)
+    {
+        result.checkDimensions(columnCount, rowCount);
+        for (int row = 0; row < rowCount; row++)
+        {
+            for (int column = 0; column < columnCount; column++)
+            {
+                result.data.set((long) column * rowCount + row, data.get((long) row * columnCount + column));
+            }
+        }
+    }
+
+
+    /**
+     * Set every value in the specified row of this matrix to zero.
+     */
+    void clearRow(int row)
+    {
+        data.clear((long) row * columnCount, (long) (row + 1) * columnCount);
+    }
+
+
+    /**
+     * Add a multiple of a row of another matrix, which must have the same number of columns,
+     * to a row of this matrix.  Both rows are contiguous in their matrices' storage.
+     */
+    void addScaledRow(int row, double scale, Matrix source, int sourceRow)
+    {
+        data.addScaled((long) row * columnCount, scale, source.data, (long) sourceRow * columnCount, columnCount);
+    }
+
+
+    /**
+     * Overwrite an existing matrix with the values of this matrix.
+     * @param result Overwritten with a copy of this matrix.  Must have the same dimensions.
+     */
+    void copy(Matrix result)
+    {
+        result.checkDimensions(rowCount, columnCount);
+        result.data.clear(0, result.data.size());
+        for (int row = 0; row < rowCount; row++)
+        {
+            long offset = (long) row * columnCount;
+            result.data.addScaled(offset, 1, data, offset, columnCount);
+        }
+    }
+
+
+    /**
+     * Multiply the transpose of the specified matrix (row-by-column) by this matrix.
+     * @return A new matrix that is the result of the multiplication.
+     */
+    public Matrix premultiplyTranspose(Matrix m)
+    {
+        return premultiplyTranspose(m, RowPartitioner.SERIAL);
+    }
+
+
+    /**
+     * Multiply the transpose of the specified matrix (row-by-column) by this matrix, splitting
+     * the rows of the result between the threads of the specified partitioner.
+     * @return A new matrix that is the result of the multiplication.
+     */
+    public Matrix premultiplyTranspose(Matrix m, RowPartitioner partitioner)
+    {
+        return m.multiplyTransposeLeft(this, partitioner);
+    }
+
+
+    private void checkDimensions(int rows, int columns)
+    {
+        if (rowCount != rows || columnCount != columns)
+        {
+            throw new IllegalArgumentException("Expected a " + rows + "x" + columns + " matrix, was "
+                                               + rowCount + "x" + columnCount + ".");
+        }
+    }
+
+
+    private static void checkProductDimensions(int leftSize, int rightSize)
+    {
+        if (leftSize != rightSize)
+        {
+            throw new IllegalArgumentException("Incompatible matrix dimensions for multiplication.");
+        }
+    }
+
+
     /**
      * Multiply each value in this matrix by the corresponding value in the first specified
      * matrix, then divide by the corresponding value in the second specified matrix.  This
@@ -215,11 +489,11 @@ public final class Matrix
      */
     void elementMultiplyAndDivide(Matrix multiplier, Matrix divisor)
     {
-        for (int i = 0; i < data.length; i++)
+        for (long i = 0; i < data.size(); i++)
         {
             // Avoid division by zero.
-            double divisorValue = divisor.data[i] > 0 ? divisor.data[i] : Double.MIN_VALUE;
-            this.data[i] = this.data[i] * multiplier.data[i] / divisorValue;
+            double divisorValue = divisor.data.get(i) > 0 ? divisor.data.get(i) : Double.MIN_VALUE;
+            data.set(i, data.get(i) * multiplier.data.get(i) / divisorValue);
         }
     }
 }
@@ -0,0 +1,119 @@
+// ============================================================================
+//   Copyright 2009-2012 Daniel W. Dyer
+//
+//   Licensed under the Apache License, Version 2.0 (the "License");
+//   you may not use this file except in compliance with the License.
+//   You may obtain a copy of the License at
+//
+//       http://www.apache.org/licenses/LICENSE-2.0
+//
+//   Unless required by applicable law or agreed to in writing, software
+//   distributed under the License is distributed on an "AS IS" BASIS,
+//   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+//   See the License for the specific language governing permissions and
+//   limitations under the License.
+// ============================================================================
+package org.uncommons.zeitgeist;
+
+/**
+ * The array of values behind a {@link Matrix}.  Values are addressed by their index in
+ * row-major order and are always read and written as doubles, regardless of how they are
+ * actually stored.  As well as element access, implementations provide the row-level
+ * kernels used by the matrix products, so that those can run directly on the underlying
+ * arrays.  When both operands use the same representation the kernels use the fast
+ * path, otherwise they fall back to element-by-element access.
+ * @author Daniel Dyer
+ */
+abstract class MatrixStorage
+{
+    /**
+     * @return The representation used by this storage.
+     */
+    abstract StorageMode getMode();
+
+
+    /**
+     * @return The number of values stored.
+     */
+    abstract long size();
+
+
+    abstract double get(long index);
+
+
+    abstract void set(long index, double value);
+
+
+    /**
+     * Set every value in the specified range to zero.
+     * @param fromIndex The first index to clear (inclusive).
+     * @param toIndex The last index to clear (exclusive).
+     */
+    abstract void clear(long fromIndex, long toIndex);
+
+
+    /**
+     * @return The sum of the products of the {@code length} values starting at
+     * {@code offset} and the corresponding values of the other storage starting at
+     * {@code otherOffset}.
+     */
+    abstract double dot(long offset, MatrixStorage other, long otherOffset, int length);
+
+
+    /**
+     * Add {@code scale} times the {@code length} values of the source, starting at
+     * {@code sourceOffset}, to the values of this storage starting at {@code offset}.
+     */
+    abstract void addScaled(long offset, double scale, MatrixStorage source, long sourceOffset, int length);
+
+
+    /**
+     * @return The sum of the squared differences between each value and the corresponding
+     * value of the other (same-sized) storage.
+     */
+    abstract double squaredDistance(MatrixStorage other);
+
+
+    /**
+     * Fallback for {@link #dot(long, MatrixStorage, long, int)} when the two representations
+     * differ.
+     */
+    final double genericDot(long offset, MatrixStorage other, long otherOffset, int length)
+    {
+        double sum = 0;
+        for (int i = 0; i < length; i++)
+        {
+            sum += get(offset + i) * other.get(otherOffset + i);
+        }
+        return sum;
+    }
+
+
+    /**
+     * Fallback for {@link #addScaled(long, double, MatrixStorage, long, int)} when the two
+     * representations differ.
+     */
+    final void genericAddScaled(long offset, double scale, MatrixStorage source, long sourceOffset, int length)
+    {
+        for (int i = 0; i < length; i++)
+        {
+            set(offset + i, get(offset + i) + scale * source.get(sourceOffset + i));
+        }
+    }
+
+
+    /**
+     * Fallback for {@link #squaredDistance(MatrixStorage)} when the two representations
+     * differ.
+     */
+    final double genericSquaredDistance(MatrixStorage other)
+    {
+        double sum = 0;
+        for (long i = 0; i < size(); i++)
+        {
+            double delta = get(i) - other.get(i);
+            sum += delta * delta;
+        }
+        return sum;
+    }
+}
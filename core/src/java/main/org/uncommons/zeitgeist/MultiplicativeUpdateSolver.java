@@ -0,0 +1,69 @@
+// ============================================================================
+//   Copyright 2009-2012 Daniel W. Dyer
+//
+//   Licensed under the Apache License, Version 2.0 (the "License");
+//   you may not use this file except in compliance with the License.
+//   You may obtain a copy of the License at
+//
+//       http://www.apache.org/licenses/LICENSE-2.0
+//
+//   Unless required by applicable law or agreed to in writing, software
+//   distributed under the License is distributed on an "AS IS" BASIS,
+//   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+//   See the License for the specific language governing permissions and
+//   limitations under the License.
+// ============================================================================
+package org.uncommons.zeitgeist;
+
+/**
+ * The multiplicative update rules of Lee and Seung.  Each element of the factor is
+ * multiplied by the ratio of the corresponding elements of YG and FG'G.  The updates
+ * never make an element negative, but convergence can be slow.
+ * @author Daniel Dyer
+ */
+public class MultiplicativeUpdateSolver implements FactorisationSolver
+{
+    // Each thread re-uses the same scratch row, so that updates don't generate garbage.
+    private final ThreadLocal<double[]> denominatorRows = new ThreadLocal<double[]>();
+
+
+    public void update(final Matrix factor,
+                       final Matrix numerator,
+                       final Matrix gram,
+                       RowPartitioner partitioner)
+    {
+        final int k = factor.getColumnCount();
+        long operationCount = (long) factor.getRowCount() * k * k;
+        partitioner.execute(factor.getRowCount(), operationCount, new RowPartitioner.RowTask()
+        {
+            public void processRows(int fromRow, int toRow)
+            {
+                double[] denominators = denominatorRows.get();
+                if (denominators == null || denominators.length < k)
+                {
+                    denominators = new double[k];
+                    denominatorRows.set(denominators);
+                }
+                for (int row = fromRow; row < toRow; row++)
+                {
+                    // All denominators must be calculated from the old values of the row.
+                    for (int j = 0; j < k; j++)
+                    {
+                        double sum = 0;
+                        for (int l = 0; l < k; l++)
+                        {
+                            sum += factor.get(row, l) * gram.get(l, j);
+                        }
+                        denominators[j] = sum;
+                    }
+                    for (int j = 0; j < k; j++)
+                    {
+                        // Avoid division by zero.
+                        double divisor = denominators[j] > 0 ? denominators[j] : Double.MIN_VALUE;
+                        factor.set(row, j, factor.get(row, j) * numerator.get(row, j) / divisor);
+                    }
+                }
+            }
+        });
+    }
+}
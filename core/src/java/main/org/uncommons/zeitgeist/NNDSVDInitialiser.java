@@ -0,0 +1,348 @@
+// ============================================================================
+//   Copyright 2009-2012 Daniel W. Dyer
+//
+//   Licensed under the Apache License, Version 2.0 (the "License");
+//   you may not use this file except in compliance with the License.
+//   You may obtain a copy of the License at
+//
+//       http://www.apache.org/licenses/LICENSE-2.0
+//
+//   Unless required by applicable law or agreed to in writing, software
+//   distributed under the License is distributed on an "AS IS" BASIS,
+//   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+//   See the License for the specific language governing permissions and
+//   limitations under the License.
+// ============================================================================
+package org.uncommons.zeitgeist;
+
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.Random;
+
+/**
+ * Non-negative double singular value decomposition (Boutsidis &amp; Gallopoulos).  The
+ * factors are initialised from the leading singular triplets of the matrix being
+ * factorised.  Each singular vector pair is split into its positive and negative parts,
+ * and whichever pair of parts carries more of the singular value becomes a non-negative
+ * feature.  Zeros are then replaced with the mean value of the matrix (the "NNDSVDa"
+ * variant) so that the multiplicative updates are not prevented from adjusting them.
+ * The decomposition is deterministic, although the truncated SVD is calculated by
+ * randomised subspace iteration, so the random number generator is used for the starting
+ * vectors.
+ * @author Daniel Dyer
+ */
+public class NNDSVDInitialiser implements FactorisationInitialiser
+{
+    // Extra singular vectors computed (then discarded) to improve the accuracy of the
+    // leading ones.
+    private static final int OVERSAMPLING = 10;
+    private static final int POWER_ITERATIONS = 4;
+    private static final int MAX_JACOBI_SWEEPS = 50;
+
+    public void initialise(FactorisableMatrix matrix,
+                           Matrix weights,
+                           Matrix featuresTranspose,
+                           Random rng,
+                           RowPartitioner partitioner)
+    {
+        int rowCount = matrix.getRowCount();
+        int columnCount = matrix.getColumnCount();
+        if (rowCount == 0 || columnCount == 0)
+        {
+            // Nothing to approximate (and no mean value for the zeros), so leave the
+            // factors as zeros.
+            return;
+        }
+        int featureCount = weights.getColumnCount();
+        int size = Math.min(featureCount + OVERSAMPLING, Math.min(rowCount, columnCount));
+
+        // Subspace iteration to find an orthonormal basis (right) for the dominant right
+        // singular vectors.
+        Matrix right = new Matrix(columnCount, size);
+        for (int row = 0; row < columnCount; row++)
+        {
+            for (int column = 0; column < size; column++)
+            {
+                right.set(row, column, rng.nextGaussian());
+            }
+        }
+        orthonormalise(right);
+        Matrix left = new Matrix(rowCount, size);
+        for (int i = 0; i < POWER_ITERATIONS; i++)
+        {
+            matrix.multiply(right, left, partitioner);
+            orthonormalise(left);
+            matrix.multiplyTransposeLeft(left, right, partitioner);
+            orthonormalise(right);
+        }
+
+        // If Y = XQ then the eigenvectors (E) and eigenvalues of Y'Y give the SVD of X:
+        // the singular values are the square roots of the eigenvalues, the left singular
+        // vectors are the columns of YE (normalised) and the right singular vectors are
+        // the columns of QE.
+        matrix.multiply(right, left, partitioner);
+        double[][] eigenvectors = new double[size][size];
+        final double[] eigenvalues = eigenDecomposition(left.multiplyTransposeLeft(left), eigenvectors);
+        Integer[] order = new Integer[size];
+        for (int i = 0; i < size; i++)
+        {
+            order[i] = i;
+        }
+        Arrays.sort(order, new Comparator<Integer>()
+        {
+            public int compare(Integer i, Integer j)
+            {
+                return Double.compare(eigenvalues[j], eigenvalues[i]);
+            }
+        });
+
+        double[] u = new double[rowCount];
+        double[] v = new double[columnCount];
+        for (int feature = 0; feature < Math.min(featureCount, size); feature++)
+        {
+            int index = order[feature];
+            double singularValue = Math.sqrt(Math.max(0, eigenvalues[index]));
+            if (singularValue > 0)
+            {
+                combine(left, eigenvectors, index, 1 / singularValue, u);
+                combine(right, eigenvectors, index, 1, v);
+                setFeature(weights, featuresTranspose, feature, singularValue, u, v);
+            }
+        }
+
+        double mean = matrix.sum() / ((double) rowCount * columnCount);
+        replaceZeros(weights, mean, rng);
+        replaceZeros(featuresTranspose, mean, rng);
+    }
+
+
+    /**
+     * Set one column of each factor from the positive or negative parts of a pair of
+     * (unit) singular vectors, whichever pair of parts has the larger product of norms.
+     */
+    private void setFeature(Matrix weights,
+                            Matrix featuresTranspose,
+                            int feature,
+                            double singularValue,
+                            double[] u,
+                            double[] v)
+    {
+        double uPositive = norm(u, 1);
+        double uNegative = norm(u, -1);
+        double vPositive = norm(v, 1);
+        double vNegative = norm(v, -1);
+        double sign = uPositive * vPositive >= uNegative * vNegative ? 1 : -1;
+        double uNorm = sign > 0 ? uPositive : uNegative;
+        double vNorm = sign > 0 ? vPositive : vNegative;
+        if (uNorm > 0 && vNorm > 0)
+        {
+            double scale = Math.sqrt(singularValue * uNorm * vNorm);
+            for (int row = 0; row < u.length; row++)
+            {
+                weights.set(row, feature, scale * Math.max(0, sign * u[row]) / uNorm);
+            }
+            for (int row = 0; row < v.length; row++)
+            {
+                featuresTranspose.set(row, feature, scale * Math.max(0, sign * v[row]) / vNorm);
+            }
+        }
+    }
+
+
+    /**
+     * Set the vector to the linear combination of the columns of the basis matrix given
+     * by column {@code index} of the coefficients, multiplied by a scale factor.
+     */
+    private void combine(Matrix basis, double[][] coefficients, int index, double scale, double[] vector)
+    {
+        for (int row = 0; row < vector.length; row++)
+        {
+            double sum = 0;
+            for (int i = 0; i < coefficients.length; i++)
+            {
+                sum += basis.get(row, i) * coefficients[i][index];
+            }
+            vector[row] = sum * scale;
+        }
+    }
+
+
+    /**
+     * @param sign 1 for the norm of the positive part of the vector, -1 for the norm
+     * of the negative part.
+     */
+    private double norm(double[] vector, int sign)
+    {
+        double sum = 0;
+        for (double value : vector)
+        {
+            if (value * sign > 0)
+            {
+                sum += value * value;
+            }
+        }
+        return Math.sqrt(sum);
+    }
+
+
+    /**
+     * Orthonormalise the columns of the matrix in place (modified Gram-Schmidt).  Columns
+     * that are linearly dependent on the preceding columns are set to zero.
+     */
+    static void orthonormalise(Matrix matrix)
+    {
+        int rows = matrix.getRowCount();
+        for (int column = 0; column < matrix.getColumnCount(); column++)
+        {
+            double originalNorm = columnNorm(matrix, column);
+            for (int previous = 0; previous < column; previous++)
+            {
+                double dot = 0;
+                for (int row = 0; row < rows; row++)
+                {
+                    dot += matrix.get(row, previous) * matrix.get(row, column);
+                }
+                for (int row = 0; row < rows; row++)
+                {
+                    matrix.set(row, column, matrix.get(row, column) - dot * matrix.get(row, previous));
+                }
+            }
+            double norm = columnNorm(matrix, column);
+            double scale = norm > originalNorm * 1e-10 ? 1 / norm : 0;
+            for (int row = 0; row < rows; row++)
+            {
+                matrix.set(row, column, matrix.get(row, column) * scale);
+            }
+        }
+    }
+
+
+    private static double columnNorm(Matrix matrix, int column)
+    {
+        double sum = 0;
+        for (int row = 0; row < matrix.getRowCount(); row++)
+        {
+            double value = matrix.get(row, column);
+            sum += value * value;
+        }
+        return Math.sqrt(sum);
+    }
+
+
+    /**
+     * Calculates the eigenvalues and eigenvectors of a (small) symmetric matrix using
+     * the cyclic Jacobi method.
+     * @param matrix A symmetric matrix.
+     * @param eigenvectors Overwritten with the eigenvectors, one per column.
+     * @return The eigenvalues, in the same order as the eigenvectors.
+     */
+    static double[] eigenDecomposition(Matrix matrix, double[][] eigenvectors)
+    {
+        int size = matrix.getRowCount();
+        double[][] a = new double[size][size];
+        for (int row = 0; row < size; row++)
+        {
+            Arrays.fill(eigenvectors[row], 0);
+            eigenvectors[row][row] = 1;
+            for (int column = 0; column < size; column++)
+            {
+                a[row][column] = matrix.get(row, column);
+            }
+        }
+
+        for (int sweep = 0; sweep < MAX_JACOBI_SWEEPS; sweep++)
+        {
+            double offDiagonal = 0;
+            double diagonal = 0;
+            for (int p = 0; p < size; p++)
+            {
+                diagonal += a[p][p] * a[p][p];
+                for (int q = p + 1; q < size; q++)
+                {
+                    offDiagonal += a[p][q] * a[p][q];
+                }
+            }
+            if (offDiagonal <= diagonal * 1e-24)
+            {
+                break;
+            }
+            for (int p = 0; p < size; p++)
+            {
+                for (int q = p + 1; q < size; q++)
+                {
+                    if (a[p][q] != 0)
+                    {
+                        rotate(a, eigenvectors, p, q);
+                    }
+                }
+            }
+        }
+
+        double[] eigenvalues = new double[size];
+        for (int i = 0; i < size; i++)
+        {
+            eigenvalues[i] = a[i][i];
+        }
+        return eigenvalues;
+    }
+
+
+    /**
+     * Apply the Jacobi rotation that zeroes element (p, q) of the symmetric matrix a,
+     * accumulating the rotation into the eigenvectors.
+     */
+    private static void rotate(double[][] a, double[][] eigenvectors, int p, int q)
+    {
+        double theta = (a[q][q] - a[p][p]) / (2 * a[p][q]);
+        double t = Math.signum(theta) / (Math.abs(theta) + Math.sqrt(theta * theta + 1));
+        if (theta == 0)
+        {
+            t = 1;
+        }
+        double c = 1 / Math.sqrt(t * t + 1);
+        double s = t * c;
+        for (int k = 0; k < a.length; k++)
+        {
+            double akp = a[k][p];
+            double akq = a[k][q];
+            a[k][p] = c * akp - s * akq;
+            a[k][q] = s * akp + c * akq;
+        }
+        for (int k = 0; k < a.length; k++)
+        {
+            double apk = a[p][k];
+            double aqk = a[q][k];
+            a[p][k] = c * apk - s * aqk;
+            a[q][k] = s * apk + c * aqk;
+        }
+        for (int k = 0; k < a.length; k++)
+        {
+            double vkp = eigenvectors[k][p];
+            double vkq = eigenvectors[k][q];
+            eigenvectors[k][p] = c * vkp - s * vkq;
+            eigenvectors[k][q] = s * vkp + c * vkq;
+        }
+    }
+
+
+    /**
+     * Replace zeros with the mean value of the matrix being factorised.  Features that
+     * could not be initialised at all (because the matrix has fewer singular values than
+     * there are features) get random values instead so that they are not all identical.
+     */
+    private void replaceZeros(Matrix matrix, double mean, Random rng)
+    {
+        for (int column = 0; column < matrix.getColumnCount(); column++)
+        {
+            boolean empty = columnNorm(matrix, column) == 0;
+            for (int row = 0; row < matrix.getRowCount(); row++)
+            {
+                if (matrix.get(row, column) == 0)
+                {
+                    double value = empty ? mean * rng.nextDouble() : mean;
+                    matrix.set(row, column, value + Double.MIN_VALUE);
+                }
+            }
+        }
+    }
+}
@@ -0,0 +1,111 @@
+// ============================================================================
+//   Copyright 2009-2012 Daniel W. Dyer
+//
+//   Licensed under the Apache License, Version 2.0 (the "License");
+//   you may not use this file except in compliance with the License.
+//   You may obtain a copy of the License at
+//
+//       http://www.apache.org/licenses/LICENSE-2.0
+//
+//   Unless required by applicable law or agreed to in writing, software
+//   distributed under the License is distributed on an "AS IS" BASIS,
+//   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+//   See the License for the specific language governing permissions and
+//   limitations under the License.
+// ============================================================================
+package org.uncommons.zeitgeist;
+
+import java.util.Random;
+
+/**
+ * The random Acol initialisation of Langville et al.  Each column of the weights is the
+ * average of a few randomly-chosen columns of the matrix being factorised, and each row of
+ * the features is the average of a few randomly-chosen rows.  The factors therefore start
+ * out with the same sparsity structure and scale as the data.
+ * @author Daniel Dyer
+ */
+public class RandomAcolInitialiser implements FactorisationInitialiser
+{
+    private final int sampleSize;
+
+
+    /**
+     * Creates an initialiser that averages 5 columns (or rows) per feature.
+     */
+    public RandomAcolInitialiser()
+    {
+        this(5);
+    }
+
+
+    /**
+     * @param sampleSize The number of columns (or rows) of the data that are averaged
+     * to initialise each feature.
+     */
+    public RandomAcolInitialiser(int sampleSize)
+    {
+        if (sampleSize < 1)
+        {
+            throw new IllegalArgumentException("Sample size must be at least 1.");
+        }
+        this.sampleSize = sampleSize;
+    }
+
+
+    public void initialise(FactorisableMatrix matrix,
+                           Matrix weights,
+                           Matrix featuresTranspose,
+                           Random rng,
+                           RowPartitioner partitioner)
+    {
+        if (matrix.getRowCount() == 0 || matrix.getColumnCount() == 0)
+        {
+            // Nothing to average (and no scale for the zeros), so leave the factors as zeros.
+            return;
+        }
+        // The averages are calculated as products with selection matrices, i.e.
+        // W = XS and H' = X'R, where each column of S (and R) has sampleSize non-zero
+        // elements equal to 1/sampleSize.
+        int featureCount = weights.getColumnCount();
+        matrix.multiply(selection(matrix.getColumnCount(), featureCount, rng), weights, partitioner);
+        matrix.multiplyTransposeLeft(selection(matrix.getRowCount(), featureCount, rng),
+                                     featuresTranspose,
+                                     partitioner);
+
+        // Replace any zeros, which could never be changed by the multiplicative updates,
+        // with small random values.
+        double scale = matrix.sum() / ((double) matrix.getRowCount() * matrix.getColumnCount()) / 100;
+        replaceZeros(weights, scale, rng);
+        replaceZeros(featuresTranspose, scale, rng);
+    }
+
+
+    private Matrix selection(int size, int featureCount, Random rng)
+    {
+        Matrix selection = new Matrix(size, featureCount);
+        for (int feature = 0; feature < featureCount; feature++)
+        {
+            for (int i = 0; i < sampleSize; i++)
+            {
+                int index = rng.nextInt(size);
+                selection.set(index, feature, selection.get(index, feature) + 1.0 / sampleSize);
+            }
+        }
+        return selection;
+    }
+
+
+    private void replaceZeros(Matrix matrix, double scale, Random rng)
+    {
+        for (int row = 0; row < matrix.getRowCount(); row++)
+        {
+            for (int column = 0; column < matrix.getColumnCount(); column++)
+            {
+                if (matrix.get(row, column) == 0)
+                {
+                    matrix.set(row, column, rng.nextDouble() * scale + Double.MIN_VALUE);
+                }
+            }
+        }
+    }
+}
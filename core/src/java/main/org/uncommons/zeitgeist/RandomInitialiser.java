@@ -0,0 +1,47 @@
+// ============================================================================
+//   Copyright 2009-2012 Daniel W. Dyer
+//
+//   Licensed under the Apache License, Version 2.0 (the "License");
+//   you may not use this file except in compliance with the License.
+//   You may obtain a copy of the License at
+//
+//       http://www.apache.org/licenses/LICENSE-2.0
+//
+//   Unless required by applicable law or agreed to in writing, software
+//   distributed under the License is distributed on an "AS IS" BASIS,
+//   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+//   See the License for the specific language governing permissions and
+//   limitations under the License.
+// ============================================================================
+package org.uncommons.zeitgeist;
+
+import java.util.Random;
+
+/**
+ * Initialises both factors with uniformly-distributed random values in the range [0, 1).
+ * @author Daniel Dyer
+ */
+public class RandomInitialiser implements FactorisationInitialiser
+{
+    public void initialise(FactorisableMatrix matrix,
+                           Matrix weights,
+                           Matrix featuresTranspose,
+                           Random rng,
+                           RowPartitioner partitioner)
+    {
+        fill(weights, rng);
+        fill(featuresTranspose, rng);
+    }
+
+
+    private void fill(Matrix matrix, Random rng)
+    {
+        for (int row = 0; row < matrix.getRowCount(); row++)
+        {
+            for (int column = 0; column < matrix.getColumnCount(); column++)
+            {
+                matrix.set(row, column, rng.nextDouble());
+            }
+        }
+    }
+}
@@ -0,0 +1,160 @@
+// ============================================================================
+//   Copyright 2009-2012 Daniel W. Dyer
+//
+//   Licensed under the Apache License, Version 2.0 (the "License");
+//   you may not use this file except in compliance with the License.
+//   You may obtain a copy of the License at
+//
+//       http://www.apache.org/licenses/LICENSE-2.0
+//
+//   Unless required by applicable law or agreed to in writing, software
+//   distributed under the License is distributed on an "AS IS" BASIS,
+//   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+//   See the License for the specific language governing permissions and
+//   limitations under the License.
+// ============================================================================
+package org.uncommons.zeitgeist;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadFactory;
+
+/**
+ * Splits row-oriented matrix operations into contiguous blocks of rows that are processed
+ * concurrently by a fixed pool of threads.  Each block only writes to its own rows of the
+ * result, and each element of the result is calculated in exactly the same way as it would
+ * be by a single thread, so results are identical regardless of the number of threads.
+ * @author Daniel Dyer
+ */
+public final class RowPartitioner
+{
+    /**
+     * A partitioner that does all of the work on the calling thread.
+     */
+    public static final RowPartitioner SERIAL = new RowPartitioner(1);
+
+    // Operations smaller than this (in multiply-adds) are not worth distributing.
+    private static final long PARALLEL_THRESHOLD = 100000;
+
+    private final int threadCount;
+    private final ExecutorService executor;
+
+
+    /**
+     * @param threadCount The number of threads to use.  If this is 1, all work is done
+     * on the calling thread.
+     */
+    public RowPartitioner(int threadCount)
+    {
+        if (threadCount < 1)
+        {
+            throw new IllegalArgumentException("Thread count must be at least 1.");
+        }
+        this.threadCount = threadCount;
+        this.executor = threadCount == 1 ? null : Executors.newFixedThreadPool(threadCount, new DaemonThreadFactory());
+    }
+
+
+    public int getThreadCount()
+    {
+        return threadCount;
+    }
+
+
+    /**
+     * Process all of the specified rows, splitting them into one block per thread.
+     * This method does not return until all blocks have been processed.
+     * @param rowCount The number of rows to process.
+     * @param operationCount An estimate of the total amount of work.  Small operations
+     * are done on the calling thread, since it would cost more to distribute them.
+     * @param task The operation to perform on each block of rows.
+     */
+    void execute(int rowCount, long operationCount, final RowTask task)
+    {
+        if (executor == null || rowCount < 2 || operationCount < PARALLEL_THRESHOLD)
+        {
+            task.processRows(0, rowCount);
+            return;
+        }
+
+        int blockCount = Math.min(rowCount, threadCount);
+        List<Callable<Object>> blocks = new ArrayList<Callable<Object>>(blockCount);
+        for (int block = 0; block < blockCount; block++)
+        {
+            final int fromRow = (int) ((long) rowCount * block / blockCount);
+            final int toRow = (int) ((long) rowCount * (block + 1) / blockCount);
+            blocks.add(new Callable<Object>()
+            {
+                public Object call()
+                {
+                    task.processRows(fromRow, toRow);
+                    return null;
+                }
+            });
+        }
+
+        try
+        {
+            for (Future<Object> result : executor.invokeAll(blocks))
+            {
+                result.get();
+            }
+        }
+        catch (InterruptedException ex)
+        {
+            // Restore interrupt status.
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("Interrupted while waiting for matrix operation.", ex);
+        }
+        catch (ExecutionException ex)
+        {
+            throw new IllegalStateException(ex.getCause());
+        }
+    }
+
+
+    /**
+     * Release the threads used by this partitioner.  It cannot be used after this method is called.
+     */
+    public void shutdown()
+    {
+        if (executor != null)
+        {
+            executor.shutdown();
+        }
+    }
+
+
+    /**
+     * An operation that can be performed independently on separate blocks of rows.
+     */
+    interface RowTask
+    {
+        /**
+         * @param fromRow The first row to process (inclusive).
+         * @param toRow The last row to process (exclusive).
+         */
+        void processRows(int fromRow, int toRow);
+    }
+
+
+    /**
+     * Worker threads must not prevent the JVM from exiting if the partitioner is not shut down.
+     */
+    private static class DaemonThreadFactory implements ThreadFactory
+    {
+        private final ThreadFactory delegate = Executors.defaultThreadFactory();
+
+        public Thread newThread(Runnable runnable)
+        {
+            Thread thread = delegate.newThread(runnable);
+            thread.setDaemon(true);
+            return thread;
+        }
+    }
+}
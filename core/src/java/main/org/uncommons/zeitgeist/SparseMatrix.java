@@ -0,0 +1,361 @@
+// ============================================================================
+//   Copyright 2009-2012 Daniel W. Dyer
+//
+//   Licensed under the Apache License, Version 2.0 (the "License");
+//   you may not use this file except in compliance with the License.
+//   You may obtain a copy of the License at
+//
+//       http://www.apache.org/licenses/LICENSE-2.0
+//
+//   Unless required by applicable law or agreed to in writing, software
+//   distributed under the License is distributed on an "AS IS" BASIS,
+//   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+//   See the License for the specific language governing permissions and
+//   limitations under the License.
+// ============================================================================
+package org.uncommons.zeitgeist;
+
+import java.util.Arrays;
+
+/**
+ * Immutable sparse matrix stored in compressed sparse row (CSR) form.  Only the
+ * non-zero values are stored, so memory usage and the cost of multiplication grow
+ * with the number of non-zero elements rather than with rows &times; columns.  This
+ * is the natural representation for a document-term matrix, where each article
+ * contains only a small fraction of the total vocabulary.  The first product with the
+ * transpose of this matrix makes a second copy of the non-zero values, in column order,
+ * so that products with either this matrix or its transpose can stream through them
+ * sequentially.  This doubles the memory used by the matrix, but is only done if the
+ * transpose is needed, as it is for factorisation.
+ * @author Daniel Dyer
+ */
+public final class SparseMatrix implements FactorisableMatrix
+{
+    private final int rowCount;
+    private final int columnCount;
+    // The non-zero values of row i occupy indices rowOffsets[i] (inclusive) to
+    // rowOffsets[i + 1] (exclusive) of the columnIndices and values arrays.  Within
+    // a row, entries are sorted by column index.
+    private final int[] rowOffsets;
+    private final int[] columnIndices;
+    private final double[] values;
+    // The same values in compressed sparse column form, created when first required.
+    private volatile ColumnForm columnForm = null;
+
+
+    /**
+     * Creates a sparse matrix directly from its CSR arrays.  The arrays are not copied
+     * so must not be modified afterwards.
+     * @param rowCount The number of rows in the matrix.
+     * @param columnCount The number of columns in the matrix.
+     * @param rowOffsets Start offset of each row's entries (length rowCount + 1).
+     * @param columnIndices The column of each non-zero entry, sorted within each row.
+     * @param values The value of each non-zero entry.
+     */
+    SparseMatrix(int rowCount,
+                 int columnCount,
+                 int[] rowOffsets,
+                 int[] columnIndices,
+                 double[] values)
+    {
+        if (rowOffsets.length != rowCount + 1)
+        {
+            throw new IllegalArgumentException("There must be exactly one offset per row plus one.");
+        }
+        if (columnIndices.length != values.length || rowOffsets[rowCount] != values.length)
+        {
+            throw new IllegalArgumentException("Column indices and values must match the row offsets.");
+        }
+        this.rowCount = rowCount;
+        this.columnCount = columnCount;
+        this.rowOffsets = rowOffsets;
+        this.columnIndices = columnIndices;
+        this.values = values;
+    }
+
+
+    /**
+     * Creates a sparse matrix from a dense array of values.  Zero values are not stored.
+     */
+    public SparseMatrix(double[][] values)
+    {
+        this.rowCount = values.length;
+        this.columnCount = values[0].length;
+        this.rowOffsets = new int[rowCount + 1];
+        int nonZeroCount = 0;
+        for (double[] row : values)
+        {
+            for (double value : row)
+            {
+                if (value != 0)
+                {
+                    ++nonZeroCount;
+                }
+            }
+        }
+        this.columnIndices = new int[nonZeroCount];
+        this.values = new double[nonZeroCount];
+        int index = 0;
+        for (int row = 0; row < rowCount; row++)
+        {
+            rowOffsets[row] = index;
+            for (int column = 0; column < values[row].length; column++)
+            {
+                if (values[row][column] != 0)
+                {
+                    this.columnIndices[index] = column;
+                    this.values[index] = values[row][column];
+                    ++index;
+                }
+            }
+        }
+        rowOffsets[rowCount] = index;
+    }
+
+
+    private ColumnForm getColumnForm()
+    {
+        ColumnForm form = columnForm;
+        if (form == null)
+        {
+            synchronized (this)
+            {
+                form = columnForm;
+                if (form == null)
+                {
+                    form = new ColumnForm();
+                    columnForm = form;
+                }
+            }
+        }
+        return form;
+    }
+
+
+    public double get(int row, int column)
+    {
+        int index = Arrays.binarySearch(columnIndices, rowOffsets[row], rowOffsets[row + 1], column);
+        return index < 0 ? 0 : values[index];
+    }
+
+
+    public int getRowCount()
+    {
+        return rowCount;
+    }
+
+
+    public int getColumnCount()
+    {
+        return columnCount;
+    }
+
+
+    /**
+     * @return The number of elements that are explicitly stored (i.e. the non-zero elements).
+     */
+    public int getNonZeroCount()
+    {
+        return values.length;
+    }
+
+
+    /**
+     * Multiply this matrix (row-by-column) by the transpose of the specified matrix.
+     * @return A new matrix that is the result of the multiplication.
+     */
+    public Matrix multiplyTransposeRight(Matrix m)
+    {
+        return multiplyTransposeRight(m, RowPartitioner.SERIAL);
+    }
+
+
+    /**
+     * Multiply this matrix (row-by-column) by the transpose of the specified matrix.
+     * @param m The matrix to multiply by.
+     * @param partitioner Determines how the work is split between threads.
+     * @return A new matrix that is the result of the multiplication.
+     */
+    public Matrix multiplyTransposeRight(Matrix m, RowPartitioner partitioner)
+    {
+        Matrix result = new Matrix(rowCount, m.getRowCount(), m.getStorageMode());
+        multiply(m.transpose(), result, partitioner);
+        return result;
+    }
+
+
+    /**
+     * {@inheritDoc}
+     * Only the non-zero elements of each row of this matrix are visited.  Each non-zero
+     * element adds a contiguous, scaled row of the specified matrix to the corresponding
+     * row of the result.  Each row of the result depends only on the corresponding row of
+     * this matrix, so the rows are split between threads.
+     */
+    public void multiply(final Matrix m, final Matrix result, RowPartitioner partitioner)
+    {
+        if (m.getRowCount() != columnCount
+            || result.getRowCount() != rowCount
+            || result.getColumnCount() != m.getColumnCount())
+        {
+            throw new IllegalArgumentException("Incompatible matrix dimensions for multiplication.");
+        }
+        long operationCount = (long) values.length * result.getColumnCount();
+        partitioner.execute(rowCount, operationCount, new RowPartitioner.RowTask()
+        {
+            public void processRows(int fromRow, int toRow)
+            {
+                for (int row = fromRow; row < toRow; row++)
+                {
+                    result.clearRow(row);
+                    for (int i = rowOffsets[row]; i < rowOffsets[row + 1]; i++)
+                    {
+                        result.addScaledRow(row, values[i], m, columnIndices[i]);
+                    }
+                }
+            }
+        });
+    }
+
+
+    /**
+     * Multiply the transpose of the specified matrix (row-by-column) by this matrix.
+     * @return A new matrix that is the result of the multiplication.
+     */
+    public Matrix premultiplyTranspose(Matrix m)
+    {
+        return premultiplyTranspose(m, RowPartitioner.SERIAL);
+    }
+
+
+    /**
+     * Multiply the transpose of the specified matrix (row-by-column) by this matrix.
+     * @param m The matrix to multiply by.
+     * @param partitioner Determines how the work is split between threads.
+     * @return A new matrix that is the result of the multiplication.
+     */
+    public Matrix premultiplyTranspose(Matrix m, RowPartitioner partitioner)
+    {
+        Matrix result = new Matrix(columnCount, m.getColumnCount(), m.getStorageMode());
+        multiplyTransposeLeft(m, result, partitioner);
+        return result.transpose();
+    }
+
+
+    /**
+     * {@inheritDoc}
+     * Row j of the result is the sum of the rows of the specified matrix, weighted by the
+     * non-zero elements in column j of this matrix.  Using the column-oriented copy of the
+     * values, each thread calculates a contiguous range of result rows, reading a contiguous
+     * row of the specified matrix for each non-zero element.
+     */
+    public void multiplyTransposeLeft(final Matrix m, final Matrix result, RowPartitioner partitioner)
+    {
+        if (m.getRowCount() != rowCount
+            || result.getRowCount() != columnCount
+            || result.getColumnCount() != m.getColumnCount())
+        {
+            throw new IllegalArgumentException("Incompatible matrix dimensions for multiplication.");
+        }
+        final ColumnForm form = getColumnForm();
+        long operationCount = (long) values.length * result.getColumnCount();
+        partitioner.execute(columnCount, operationCount, new RowPartitioner.RowTask()
+        {
+            public void processRows(int fromRow, int toRow)
+            {
+                for (int column = fromRow; column < toRow; column++)
+                {
+                    result.clearRow(column);
+                    for (int i = form.columnOffsets[column]; i < form.columnOffsets[column + 1]; i++)
+                    {
+                        result.addScaledRow(column, form.values[i], m, form.rowIndices[i]);
+                    }
+                }
+            }
+        });
+    }
+
+
+    public double sum()
+    {
+        double sum = 0;
+        for (double value : values)
+        {
+            sum += value;
+        }
+        return sum;
+    }
+
+
+    /**
+     * {@inheritDoc}
+     * Only the non-zero elements contribute, so this is proportional to the number of
+     * non-zero elements rather than the size of the matrix.
+     */
+    public double squaredNorm()
+    {
+        double sum = 0;
+        for (double value : values)
+        {
+            sum += value * value;
+        }
+        return sum;
+    }
+
+
+    public double diffCost(Matrix other)
+    {
+        double diff = 0;
+        for (int row = 0; row < rowCount; row++)
+        {
+            int index = rowOffsets[row];
+            int end = rowOffsets[row + 1];
+            for (int column = 0; column < columnCount; column++)
+            {
+                double value = 0;
+                if (index < end && columnIndices[index] == column)
+                {
+                    value = values[index];
+                    ++index;
+                }
+                double delta = value - other.get(row, column);
+                diff += delta * delta;
+            }
+        }
+        return diff;
+    }
+
+
+    /**
+     * The non-zero values in compressed sparse column form, so that products involving the
+     * transpose of the matrix can also read them sequentially.  Within each column, the
+     * entries are in ascending row order.
+     */
+    private final class ColumnForm
+    {
+        private final int[] columnOffsets = new int[columnCount + 1];
+        private final int[] rowIndices = new int[SparseMatrix.this.values.length];
+        private final double[] values = new double[SparseMatrix.this.values.length];
+
+        ColumnForm()
+        {
+            for (int column : columnIndices)
+            {
+                ++columnOffsets[column + 1];
+            }
+            for (int column = 0; column < columnCount; column++)
+            {
+                columnOffsets[column + 1] += columnOffsets[column];
+            }
+            int[] next = Arrays.copyOf(columnOffsets, columnCount);
+            for (int row = 0; row < rowCount; row++)
+            {
+                for (int i = rowOffsets[row]; i < rowOffsets[row + 1]; i++)
+                {
+                    int index = next[columnIndices[i]]++;
+                    rowIndices[index] = row;
+                    values[index] = SparseMatrix.this.values[i];
+                }
+            }
+        }
+    }
+}
@@ -0,0 +1,203 @@
+// ============================================================================
+//   Copyright 2009-2012 Daniel W. Dyer
+//
+//   Licensed under the Apache License, Version 2.0 (the "License");
+//   you may not use this file except in compliance with the License.
+//   You may obtain a copy of the License at
+//
+//       http://www.apache.org/licenses/LICENSE-2.0
+//
+//   Unless required by applicable law or agreed to in writing, software
+//   distributed under the License is distributed on an "AS IS" BASIS,
+//   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+//   See the License for the specific language governing permissions and
+//   limitations under the License.
+// ============================================================================
+package org.uncommons.zeitgeist;
+
+import java.util.Arrays;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Remembers the stems of words that have already been stemmed.  News vocabulary is very
+ * repetitive, both between articles and between runs, so most words are found in the cache.
+ * Stems that are not are calculated by a {@link Stemmer} belonging to the calling thread,
+ * so a cache may be shared by any number of threads.  Words are looked up directly from the
+ * tokeniser's buffer, so a copy of the word is only made when it is added to the cache.
+ * The cache is bounded: when it is full it is emptied, so that words that are no longer
+ * used don't occupy it forever.
+ * @author Daniel Dyer
+ */
+final class StemCache
+{
+    private final ConcurrentMap<Word, String> stems = new ConcurrentHashMap<Word, String>();
+    private final AtomicLong hits = new AtomicLong(0);
+    private final AtomicLong misses = new AtomicLong(0);
+    private final int maxSize;
+    private final ThreadLocal<Stemmer> stemmers = new ThreadLocal<Stemmer>()
+    {
+        @Override
+        protected Stemmer initialValue()
+        {
+            return new Stemmer();
+        }
+    };
+    // Each thread's look-ups re-use the same key, which refers to the caller's array.
+    private final ThreadLocal<Word> keys = new ThreadLocal<Word>()
+    {
+        @Override
+        protected Word initialValue()
+        {
+            return new Word();
+        }
+    };
+
+
+    /**
+     * @param maxSize The maximum number of words to remember.
+     */
+    StemCache(int maxSize)
+    {
+        if (maxSize < 1)
+        {
+            throw new IllegalArgumentException("Maximum size must be at least 1.");
+        }
+        this.maxSize = maxSize;
+    }
+
+
+    /**
+     * @param word A word, in lower case.
+     * @return The stem of the word.
+     */
+    String getStem(String word)
+    {
+        return getStem(word.toCharArray(), 0, word.length());
+    }
+
+
+    /**
+     * @param chars An array containing a word, in lower case.  It is not modified.
+     * @param offset The index of the first character of the word.
+     * @param length The number of characters in the word.
+     * @return The stem of the word.
+     */
+    String getStem(char[] chars, int offset, int length)
+    {
+        Word key = keys.get().set(chars, offset, length);
+        String stem = stems.get(key);
+        if (stem != null)
+        {
+            hits.incrementAndGet();
+        }
+        else
+        {
+            misses.incrementAndGet();
+            stem = stemmers.get().stem(chars, offset, length);
+            // The map's own size is used, rather than a separate count, so that concurrent
+            // additions can't make the two disagree.
+            if (stems.size() >= maxSize)
+            {
+                stems.clear();
+            }
+            stems.put(key.copy(), stem);
+        }
+        return stem;
+    }
+
+
+    /**
+     * @return The number of words that were found in the cache.
+     */
+    long getHitCount()
+    {
+        return hits.get();
+    }
+
+
+    /**
+     * @return The number of words that had to be stemmed.
+     */
+    long getMissCount()
+    {
+        return misses.get();
+    }
+
+
+    /**
+     * @return The number of words currently remembered.
+     */
+    int size()
+    {
+        return stems.size();
+    }
+
+
+    /**
+     * A word held in a portion of a char array.  Keys in the cache have arrays of their own;
+     * the keys used for look-ups refer to the caller's array and are never stored.
+     */
+    private static final class Word
+    {
+        private char[] chars;
+        private int offset;
+        private int length;
+        private int hash;
+
+        Word set(char[] chars, int offset, int length)
+        {
+            this.chars = chars;
+            this.offset = offset;
+            this.length = length;
+            int h = 0;
+            for (int i = offset; i < offset + length; i++)
+            {
+                h = 31 * h + chars[i];
+            }
+            this.hash = h;
+            return this;
+        }
+
+
+        Word copy()
+        {
+            return new Word().set(Arrays.copyOfRange(chars, offset, offset + length), 0, length);
+        }
+
+
+        @Override
+        public int hashCode()
+        {
+            return hash;
+        }
+
+
+        @Override
+        public boolean equals(Object other)
+        {
+            if (this == other)
+            {
+                return true;
+            }
+            if (!(other instanceof Word))
+            {
+                return false;
+            }
+            Word word = (Word) other;
+            if (word.hash != hash || word.length != length)
+            {
+                return false;
+            }
+            for (int i = 0; i < length; i++)
+            {
+                if (word.chars[word.offset + i] != chars[offset + i])
+                {
+                    return false;
+                }
+            }
+            return true;
+        }
+    }
+}
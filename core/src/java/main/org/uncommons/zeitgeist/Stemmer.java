@@ -18,9 +18,11 @@ package org.uncommons.zeitgeist;
 /**
  * Implementation of the Porter Stemming Algorithm (from http://tartarus.org/~martin/PorterStemmer/).
  *
- * The Stemmer class transforms a word into its root form.  The input
- * word can be provided a character at time (by calling add()), or at once
- * by calling one of the various stem(something) methods.
+ * The Stemmer class transforms a word into its root form.  The word can be
+ * provided as a string (or other character sequence) or as a portion of a char
+ * array.  A stemmer can be re-used for any number of words, which avoids
+ * allocating a new buffer for each one, but it must not be shared between threads.
+ * {@link StemCache} keeps one stemmer per thread.
  */
 class Stemmer
 {
@@ -42,22 +44,37 @@ class Stemmer
 
 
     /**
-     * Adds wLen characters to the word being stemmed contained in a portion
-     * of a char[] array. This is like repeated calls of add(char ch), but
-     * faster.
+     * Adds characters to the end of the word being stemmed, growing the buffer if necessary.
      */
-    private void add(String word)
+    private void add(CharSequence word, int start, int end)
     {
-        char[] chars = word.toCharArray();
-        if (i + chars.length >= buffer.length)
+        ensureCapacity(end - start);
+        for (int index = start; index < end; index++)
         {
-            char[] newBuffer = new char[i + chars.length + INC];
-            System.arraycopy(buffer, 0, newBuffer, 0, i);
-            buffer = newBuffer;
+            buffer[i++] = word.charAt(index);
         }
-        for (char ch : chars)
+    }
+
+
+    /**
+     * Adds characters, from a portion of an array, to the end of the word being stemmed.
+     * This is like {@link #add(CharSequence, int, int)} but without the per-character calls.
+     */
+    private void add(char[] chars, int offset, int length)
+    {
+        ensureCapacity(length);
+        System.arraycopy(chars, offset, buffer, i, length);
+        i += length;
+    }
+
+
+    private void ensureCapacity(int length)
+    {
+        if (i + length >= buffer.length)
         {
-            buffer[i++] = ch;
+            char[] newBuffer = new char[i + length + INC];
+            System.arraycopy(buffer, 0, newBuffer, 0, i);
+            buffer = newBuffer;
         }
     }
 
@@ -622,15 +639,53 @@ class Stemmer
     }
 
 
+    /**
+     * Discards any partially stemmed word, so that the stemmer can be re-used.  This
+     * happens automatically at the start of each call to one of the stem methods, so it
+     * is only needed to release the memory used by an exceptionally long word.
+     */
+    public void reset()
+    {
+        if (buffer.length > INC)
+        {
+            buffer = new char[INC];
+        }
+        i = 0;
+        i_end = 0;
+    }
+
+
+    /**
+     * @return The stem of the specified word, which must be in lower case.
+     */
+    public String stem(CharSequence word)
+    {
+        i = 0;
+        add(word, 0, word.length());
+        return stemBuffer();
+    }
+
+
+    /**
+     * Stems a word held in a portion of an array, without copying it to a string first.
+     * @param chars An array containing the word, in lower case.  It is not modified.
+     * @param offset The index of the first character of the word.
+     * @param length The number of characters in the word.
+     * @return The stem of the word.
+     */
+    public String stem(char[] chars, int offset, int length)
+    {
+        i = 0;
+        add(chars, offset, length);
+        return stemBuffer();
+    }
+
+
     /**
      * Stem the word placed into the Stemmer buffer through calls to add().
-     * Returns true if the stemming process resulted in a word different
-     * from the input.  You can retrieve the result with
-     * getResultLength()/getResultBuffer() or toString().
      */
-    public String stem(String word)
+    private String stemBuffer()
     {
-        add(word);
         k = i - 1;
         if (k > 1)
         {
@@ -645,4 +700,4 @@ class Stemmer
         i = 0;
         return new String(buffer, 0, i_end);
     }
-}
\ No newline at end of file
+}
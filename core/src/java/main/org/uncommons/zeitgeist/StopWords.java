@@ -0,0 +1,320 @@
+// ============================================================================
+//   Copyright 2009-2012 Daniel W. Dyer
+//
+//   Licensed under the Apache License, Version 2.0 (the "License");
+//   you may not use this file except in compliance with the License.
+//   You may obtain a copy of the License at
+//
+//       http://www.apache.org/licenses/LICENSE-2.0
+//
+//   Unless required by applicable law or agreed to in writing, software
+//   distributed under the License is distributed on an "AS IS" BASIS,
+//   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+//   See the License for the specific language governing permissions and
+//   limitations under the License.
+// ============================================================================
+package org.uncommons.zeitgeist;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Set;
+
+/**
+ * An immutable set of words that should be ignored when counting the words in an article
+ * (words like "the" and "it").  Membership can be tested for a word held in a portion of a
+ * char array, so the words that are rejected never need to become strings.  The words are
+ * held in a perfect hash table (built by "hash and displace"): a word's hash selects a
+ * bucket and each bucket has a displacement, chosen when the table is built, that sends
+ * each of its words to a slot of its own.  A lookup is therefore two hash calculations and
+ * a comparison with the one word in the slot, with no probing.
+ * @author Daniel Dyer
+ */
+public final class StopWords
+{
+    private static final String DEFAULT_WORDS = "org/uncommons/zeitgeist/low-value-words.txt";
+    private static final int WORDS_PER_BUCKET = 4;
+    private static final int MAX_DISPLACEMENTS = 100000;
+
+    private final int[] displacements;
+    private final char[] chars; // All of the words, in slot order.
+    private final int[] offsets; // Where each slot's word starts in the chars array (plus one for the end).
+    private final int size;
+    private final int maxLength;
+
+
+    /**
+     * @param words The words to ignore.  Duplicates and empty strings are ignored.
+     */
+    public StopWords(Collection<String> words)
+    {
+        Set<String> distinct = new LinkedHashSet<String>(words);
+        distinct.remove("");
+        String[] wordArray = distinct.toArray(new String[distinct.size()]);
+        long[] hashes = new long[wordArray.length];
+        for (int i = 0; i < wordArray.length; i++)
+        {
+            hashes[i] = hash(wordArray[i].toCharArray(), 0, wordArray[i].length());
+        }
+
+        // Each attempt leaves more empty slots, which makes it easier to find displacements.
+        int slotCount = Math.max(wordArray.length, 1);
+        int[] slotWords = new int[slotCount];
+        int[] bucketDisplacements = displace(hashes, slotWords);
+        while (bucketDisplacements == null)
+        {
+            if (slotCount > wordArray.length * 4)
+            {
+                // Only possible if two words have the same 64-bit hash.
+                throw new IllegalStateException("Unable to build perfect hash table.");
+            }
+            slotCount += slotCount / 8 + 1;
+            slotWords = new int[slotCount];
+            bucketDisplacements = displace(hashes, slotWords);
+        }
+
+        this.displacements = bucketDisplacements;
+        this.size = wordArray.length;
+        int longest = 0;
+        for (String word : wordArray)
+        {
+            longest = Math.max(longest, word.length());
+        }
+        this.maxLength = longest;
+        this.offsets = new int[slotCount + 1];
+        StringBuilder buffer = new StringBuilder();
+        for (int i = 0; i < slotCount; i++)
+        {
+            offsets[i] = buffer.length();
+            if (slotWords[i] > 0)
+            {
+                buffer.append(wordArray[slotWords[i] - 1]);
+            }
+        }
+        offsets[slotCount] = buffer.length();
+        this.chars = buffer.toString().toCharArray();
+    }
+
+
+    /**
+     * Reads a list of words, one per line, ignoring leading and trailing white space and
+     * blank lines.
+     * @param stream A UTF-8 encoded stream, which is closed after it is read.
+     * @return The words from the stream.
+     * @throws IOException If the stream can't be read.
+     */
+    public static StopWords read(InputStream stream) throws IOException
+    {
+        BufferedReader reader = new BufferedReader(new InputStreamReader(stream, "UTF-8"));
+        try
+        {
+            List<String> words = new ArrayList<String>();
+            for (String word = reader.readLine(); word != null; word = reader.readLine())
+            {
+                words.add(word.trim());
+            }
+            return new StopWords(words);
+        }
+        finally
+        {
+            reader.close();
+        }
+    }
+
+
+    /**
+     * @return The standard list of English low-value words, bundled with Zeitgeist.
+     */
+    public static StopWords getDefault()
+    {
+        try
+        {
+            return read(StopWords.class.getClassLoader().getResourceAsStream(DEFAULT_WORDS));
+        }
+        catch (IOException ex)
+        {
+            throw new IllegalStateException(ex);
+        }
+    }
+
+
+    /**
+     * Assigns each bucket a displacement that puts each of its words in an empty slot, starting
+     * with the biggest buckets, since they are the hardest to place.
+     * @param hashes The hash of each word.
+     * @param slotWords Receives the index (plus one, so that zero means empty) of the word in
+     * each slot.
+     * @return The displacements, or null if the table is too full to find them all.
+     */
+    private static int[] displace(long[] hashes, int[] slotWords)
+    {
+        int bucketCount = (hashes.length + WORDS_PER_BUCKET - 1) / WORDS_PER_BUCKET + 1;
+        final List<List<Integer>> buckets = new ArrayList<List<Integer>>(bucketCount);
+        for (int i = 0; i < bucketCount; i++)
+        {
+            buckets.add(new ArrayList<Integer>());
+        }
+        for (int i = 0; i < hashes.length; i++)
+        {
+            buckets.get(bucket(hashes[i], bucketCount)).add(i);
+        }
+        List<Integer> order = new ArrayList<Integer>(bucketCount);
+        for (int i = 0; i < bucketCount; i++)
+        {
+            order.add(i);
+        }
+        Collections.sort(order, new Comparator<Integer>()
+        {
+            @Override
+            public int compare(Integer bucket1, Integer bucket2)
+            {
+                return buckets.get(bucket2).size() - buckets.get(bucket1).size();
+            }
+        });
+
+        int[] displacements = new int[bucketCount];
+        for (int bucket : order)
+        {
+            List<Integer> bucketWords = buckets.get(bucket);
+            if (bucketWords.isEmpty())
+            {
+                break;
+            }
+            int[] bucketSlots = new int[bucketWords.size()];
+            int displacement = 0;
+            while (!fits(bucketWords, hashes, displacement, slotWords, bucketSlots))
+            {
+                if (++displacement == MAX_DISPLACEMENTS)
+                {
+                    return null;
+                }
+            }
+            for (int i = 0; i < bucketSlots.length; i++)
+            {
+                slotWords[bucketSlots[i]] = bucketWords.get(i) + 1;
+            }
+            displacements[bucket] = displacement;
+        }
+        return displacements;
+    }
+
+
+    /**
+     * @return Whether the specified displacement sends each of the words to a different
+     * empty slot.  If so, the slots are stored in the bucketSlots array.
+     */
+    private static boolean fits(List<Integer> words,
+                                long[] hashes,
+                                int displacement,
+                                int[] slotWords,
+                                int[] bucketSlots)
+    {
+        for (int i = 0; i < bucketSlots.length; i++)
+        {
+            int slot = slot(hashes[words.get(i)], displacement, slotWords.length);
+            if (slotWords[slot] != 0)
+            {
+                return false;
+            }
+            for (int j = 0; j < i; j++)
+            {
+                if (bucketSlots[j] == slot)
+                {
+                    return false;
+                }
+            }
+            bucketSlots[i] = slot;
+        }
+        return true;
+    }
+
+
+    /**
+     * @param word A word, in lower case.
+     * @return Whether the word should be ignored.
+     */
+    public boolean contains(CharSequence word)
+    {
+        return contains(word.toString().toCharArray(), 0, word.length());
+    }
+
+
+    /**
+     * @param word An array containing a word, in lower case.
+     * @param offset The index of the first character of the word.
+     * @param length The number of characters in the word.
+     * @return Whether the word should be ignored.
+     */
+    public boolean contains(char[] word, int offset, int length)
+    {
+        // Most words that matter are longer than any of the words to ignore.
+        if (length == 0 || length > maxLength)
+        {
+            return false;
+        }
+        long hash = hash(word, offset, length);
+        int slot = slot(hash, displacements[bucket(hash, displacements.length)], offsets.length - 1);
+        int start = offsets[slot];
+        if (offsets[slot + 1] - start != length)
+        {
+            return false;
+        }
+        for (int i = 0; i < length; i++)
+        {
+            if (chars[start + i] != word[offset + i])
+            {
+                return false;
+            }
+        }
+        return true;
+    }
+
+
+    /**
+     * @return The number of words in the set.
+     */
+    public int size()
+    {
+        return size;
+    }
+
+
+    /**
+     * 64-bit FNV-1a hash, which is long enough that two different words are very unlikely
+     * to share a hash (which would make them impossible to separate).
+     */
+    private static long hash(char[] word, int offset, int length)
+    {
+        long hash = 0xCBF29CE484222325L;
+        for (int i = offset; i < offset + length; i++)
+        {
+            hash = (hash ^ word[i]) * 0x100000001B3L;
+        }
+        return hash;
+    }
+
+
+    private static int bucket(long hash, int bucketCount)
+    {
+        return (int) ((hash >>> 32) % bucketCount);
+    }
+
+
+    private static int slot(long hash, int displacement, int slotCount)
+    {
+        // Mix in the displacement (with the finaliser from MurmurHash3) to get an
+        // independent hash for each displacement.
+        long mixed = hash + displacement * 0x9E3779B97F4A7C15L;
+        mixed = (mixed ^ (mixed >>> 33)) * 0xFF51AFD7ED558CCDL;
+        mixed = (mixed ^ (mixed >>> 33)) * 0xC4CEB9FE1A85EC53L;
+        mixed ^= mixed >>> 33;
+        return (int) ((mixed >>> 1) % slotCount);
+    }
+}
@@ -0,0 +1,138 @@
+// ============================================================================
+//   Copyright 2009-2012 Daniel W. Dyer
+//
+//   Licensed under the Apache License, Version 2.0 (the "License");
+//   you may not use this file except in compliance with the License.
+//   You may obtain a copy of the License at
+//
+//       http://www.apache.org/licenses/LICENSE-2.0
+//
+//   Unless required by applicable law or agreed to in writing, software
+//   distributed under the License is distributed on an "AS IS" BASIS,
+//   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+//   See the License for the specific language governing permissions and
+//   limitations under the License.
+// ============================================================================
+package org.uncommons.zeitgeist;
+
+import java.io.File;
+import java.io.IOException;
+
+/**
+ * How the values of a {@link Matrix} are held in memory.
+ * @author Daniel Dyer
+ */
+public enum StorageMode
+{
+    /**
+     * Each value is a 64-bit double.  This is the default.
+     */
+    DOUBLE
+    {
+        @Override
+        MatrixStorage allocate(long size)
+        {
+            return new DoubleStorage(arraySize(size));
+        }
+    },
+
+    /**
+     * Each value is a 32-bit float, halving the memory required.  Values are rounded to
+     * single precision when stored, and products written into float matrices are also
+     * accumulated in single precision (see {@link FloatStorage}).  This is ample for the
+     * factorisation of document-term matrices, where only the relative sizes of the weights
+     * matter.  The {@link Factoriser} keeps its small Gram matrices in double precision.
+     */
+    FLOAT
+    {
+        @Override
+        MatrixStorage allocate(long size)
+        {
+            return new FloatStorage(arraySize(size));
+        }
+    },
+
+    /**
+     * Each value is a 64-bit double, held outside of the Java heap in direct buffers.
+     * This allows matrices with more than 2<sup>31</sup> elements and keeps large matrices
+     * from inflating the heap.  The amount of direct memory available is limited by the
+     * JVM's {@code -XX:MaxDirectMemorySize} option which, if it is not set, defaults to the
+     * maximum heap size ({@code -Xmx}), so to use more direct memory than heap it must be
+     * set explicitly.
+     */
+    OFF_HEAP
+    {
+        @Override
+        MatrixStorage allocate(long size)
+        {
+            try
+            {
+                return new BufferStorage(size, BufferStorage.CHUNK_SHIFT, null);
+            }
+            catch (IOException ex)
+            {
+                // Can't happen, nothing is read from or written to a file.
+                throw new IllegalStateException(ex);
+            }
+        }
+    },
+
+    /**
+     * Each value is a 64-bit double, held in a memory-mapped scratch file (in the
+     * directory given by the {@code java.io.tmpdir} system property).  The operating system
+     * pages the values in and out as required, so matrices can be much larger than the
+     * available memory, at the cost of speed once they no longer fit.  Each matrix has its
+     * own file, so the {@link Factoriser} only uses this for the factors and the products
+     * of the same size, keeping its small (features &times; features) matrices on the heap.
+     */
+    MAPPED
+    {
+        @Override
+        MatrixStorage allocate(long size)
+        {
+            try
+            {
+                File scratchFile = File.createTempFile("zeitgeist", ".matrix");
+                try
+                {
+                    return new BufferStorage(size, BufferStorage.CHUNK_SHIFT, scratchFile);
+                }
+                finally
+                {
+                    // The mapping keeps the data accessible after the file is deleted (on
+                    // platforms that do not allow this, the file is deleted on exit instead).
+                    if (!scratchFile.delete())
+                    {
+                        scratchFile.deleteOnExit();
+                    }
+                }
+            }
+            catch (IOException ex)
+            {
+                throw new IllegalStateException("Failed to map matrix storage.", ex);
+            }
+        }
+    };
+
+
+    /**
+     * @param size The number of values to be stored.
+     * @return Zero-initialised storage for the specified number of values.
+     */
+    abstract MatrixStorage allocate(long size);
+
+
+    /**
+     * @return The specified size, if it is small enough for the values to be stored in
+     * a Java array.
+     */
+    int arraySize(long size)
+    {
+        if (size > Integer.MAX_VALUE)
+        {
+            throw new IllegalArgumentException("Too many elements (" + size + ") for " + name()
+                                               + " storage, use OFF_HEAP or MAPPED instead.");
+        }
+        return (int) size;
+    }
+}
@@ -0,0 +1,84 @@
+// ============================================================================
+//   Copyright 2009-2012 Daniel W. Dyer
+//
+//   Licensed under the Apache License, Version 2.0 (the "License");
+//   you may not use this file except in compliance with the License.
+//   You may obtain a copy of the License at
+//
+//       http://www.apache.org/licenses/LICENSE-2.0
+//
+//   Unless required by applicable law or agreed to in writing, software
+//   distributed under the License is distributed on an "AS IS" BASIS,
+//   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+//   See the License for the specific language governing permissions and
+//   limitations under the License.
+// ============================================================================
+package org.uncommons.zeitgeist;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+/**
+ * Assigns each distinct term (word stem) a small integer ID, so that documents can be
+ * represented as arrays of IDs rather than maps keyed by strings.  IDs are allocated
+ * consecutively from zero in the order that terms are first seen.  A dictionary may be
+ * shared by several threads.
+ * @author Daniel Dyer
+ */
+public final class TermDictionary
+{
+    private final ConcurrentMap<String, Integer> ids = new ConcurrentHashMap<String, Integer>();
+    private final List<String> terms = new ArrayList<String>();
+
+
+    /**
+     * @param term A word stem.
+     * @return The ID of the specified term, which is allocated if the term has not been
+     * seen before.
+     */
+    public int getId(String term)
+    {
+        Integer id = ids.get(term);
+        if (id == null)
+        {
+            synchronized (terms)
+            {
+                id = ids.get(term);
+                if (id == null)
+                {
+                    id = terms.size();
+                    terms.add(term);
+                    ids.put(term, id);
+                }
+            }
+        }
+        return id;
+    }
+
+
+    /**
+     * @param id A term ID previously allocated by this dictionary.
+     * @return The term with the specified ID.
+     */
+    public String getTerm(int id)
+    {
+        synchronized (terms)
+        {
+            return terms.get(id);
+        }
+    }
+
+
+    /**
+     * @return The number of distinct terms, which is also one more than the highest ID.
+     */
+    public int size()
+    {
+        synchronized (terms)
+        {
+            return terms.size();
+        }
+    }
+}
@@ -0,0 +1,96 @@
+// ============================================================================
+//   Copyright 2009-2012 Daniel W. Dyer
+//
+//   Licensed under the Apache License, Version 2.0 (the "License");
+//   you may not use this file except in compliance with the License.
+//   You may obtain a copy of the License at
+//
+//       http://www.apache.org/licenses/LICENSE-2.0
+//
+//   Unless required by applicable law or agreed to in writing, software
+//   distributed under the License is distributed on an "AS IS" BASIS,
+//   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+//   See the License for the specific language governing permissions and
+//   limitations under the License.
+// ============================================================================
+package org.uncommons.zeitgeist;
+
+import java.util.Arrays;
+
+/**
+ * The terms of a single document and how many times each occurs, held as a pair of
+ * parallel int arrays.  Term IDs come from a {@link TermDictionary} and are stored in
+ * ascending order.
+ * @author Daniel Dyer
+ */
+public final class TermVector
+{
+    private final int[] termIds;
+    private final int[] counts;
+
+
+    /**
+     * @param termIds The IDs of the terms in a document, in any order.  If an ID occurs
+     * more than once, its counts are added together.
+     * @param counts The number of occurrences of each of the terms.
+     */
+    TermVector(int[] termIds, int[] counts)
+    {
+        // Sort the (non-negative) IDs together with their counts by packing each pair
+        // into a single long.
+        long[] pairs = new long[termIds.length];
+        for (int i = 0; i < pairs.length; i++)
+        {
+            pairs[i] = ((long) termIds[i] << 32) | counts[i];
+        }
+        Arrays.sort(pairs);
+        int distinct = 0;
+        for (int i = 0; i < pairs.length; i++)
+        {
+            if (i == 0 || pairs[i] >>> 32 != pairs[i - 1] >>> 32)
+            {
+                ++distinct;
+            }
+        }
+        this.termIds = new int[distinct];
+        this.counts = new int[distinct];
+        int index = -1;
+        for (int i = 0; i < pairs.length; i++)
+        {
+            if (i == 0 || pairs[i] >>> 32 != pairs[i - 1] >>> 32)
+            {
+                this.termIds[++index] = (int) (pairs[i] >>> 32);
+            }
+            this.counts[index] += (int) pairs[i];
+        }
+    }
+
+
+    /**
+     * @return The number of distinct terms in the document.
+     */
+    public int size()
+    {
+        return termIds.length;
+    }
+
+
+    /**
+     * @param index An index between zero (inclusive) and {@link #size()} (exclusive).
+     * @return The ID of the term at the specified index.  IDs increase with the index.
+     */
+    public int getTermId(int index)
+    {
+        return termIds[index];
+    }
+
+
+    /**
+     * @param index An index between zero (inclusive) and {@link #size()} (exclusive).
+     * @return The number of occurrences of the term at the specified index.
+     */
+    public int getCount(int index)
+    {
+        return counts[index];
+    }
+}
@@ -0,0 +1,352 @@
+// ============================================================================
+//   Copyright 2009-2012 Daniel W. Dyer
+//
+//   Licensed under the Apache License, Version 2.0 (the "License");
+//   you may not use this file except in compliance with the License.
+//   You may obtain a copy of the License at
+//
+//       http://www.apache.org/licenses/LICENSE-2.0
+//
+//   Unless required by applicable law or agreed to in writing, software
+//   distributed under the License is distributed on an "AS IS" BASIS,
+//   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+//   See the License for the specific language governing permissions and
+//   limitations under the License.
+// ============================================================================
+package org.uncommons.zeitgeist;
+
+import java.util.Locale;
+
+/**
+ * Splits feed content into lower-case words, producing exactly the same words as
+ * {@link FeedUtils#stripMarkUpAndPunctuation(String)} followed by splitting on white
+ * space, but without the regular expressions or the intermediate strings.  Each stage
+ * of the {@link FeedUtils} conversion is a single scan from one character buffer into
+ * another.  The buffers are re-used, so a tokeniser must not be shared between threads.
+ * @author Daniel Dyer
+ */
+final class Tokeniser
+{
+    private char[] buffer1 = new char[256];
+    private char[] buffer2 = new char[256];
+
+
+    /**
+     * Passes each word of the specified text to the handler, in order.  The handler must
+     * copy any characters that it needs to keep, since the array is re-used.
+     */
+    void tokenise(String text, TokenHandler handler)
+    {
+        int length = text.length();
+        if (buffer1.length < length * 2) // Expanding an eszett is the only way to grow.
+        {
+            buffer1 = new char[length * 2];
+            buffer2 = new char[length * 2];
+        }
+        text.getChars(0, length, buffer2, 0);
+        length = stripTagsAndAccents(buffer2, length, buffer1);
+        length = EntityDecoder.expandEntities(buffer1, length, buffer2);
+        length = stripPunctuation(buffer2, length, buffer1);
+        length = stripApostrophesAndHyphens(buffer1, length, buffer2);
+        length = stripPossessives(buffer2, length, buffer1);
+        emitTokens(buffer1, length, handler);
+    }
+
+
+    /**
+     * Replaces each tag with a space (a tag does not span lines) and, as
+     * {@link EntityDecoder#anglicise(char[], int, char[])} does, each accented character,
+     * or entity for an accented character, with its unaccented equivalent.
+     * @return The number of characters written to the output.
+     */
+    private static int stripTagsAndAccents(char[] in, int length, char[] out)
+    {
+        int count = 0;
+        int tagEnd = -1; // The first '>' or line break after the last '<' that was checked.
+        int i = 0;
+        while (i < length)
+        {
+            char c = in[i];
+            if (c == '<')
+            {
+                if (tagEnd <= i)
+                {
+                    tagEnd = i + 1;
+                    while (tagEnd < length && in[tagEnd] != '>' && !isLineTerminator(in[tagEnd]))
+                    {
+                        ++tagEnd;
+                    }
+                }
+                if (tagEnd < length && in[tagEnd] == '>')
+                {
+                    out[count++] = ' ';
+                    i = tagEnd + 1;
+                    continue;
+                }
+            }
+            else if (c == '&')
+            {
+                int end = EntityDecoder.findEntityEnd(in, i, length);
+                String replacement = end < 0 ? null : EntityDecoder.decodeAccent(in, i + 1, end);
+                if (replacement != null)
+                {
+                    count = append(replacement, out, count);
+                    i = end + 1;
+                    continue;
+                }
+            }
+            else if (EntityDecoder.foldAccent(c) != null)
+            {
+                count = append(EntityDecoder.foldAccent(c), out, count);
+                ++i;
+                continue;
+            }
+            out[count++] = c;
+            ++i;
+        }
+        return count;
+    }
+
+
+    /**
+     * Removes commas between digits and all full stops, and replaces each run of other
+     * punctuation and white space with a single space.
+     * @return The number of characters written to the output.
+     */
+    private static int stripPunctuation(char[] in, int length, char[] out)
+    {
+        int count = 0;
+        int numberEnd = 0; // A digit can't be both after one comma and before another.
+        boolean inRun = false;
+        for (int i = 0; i < length; i++)
+        {
+            char c = in[i];
+            if (c == ',' && i > numberEnd && i + 1 < length && isDigit(in[i - 1]) && isDigit(in[i + 1]))
+            {
+                numberEnd = i + 2;
+            }
+            else if (isPunctuation(c))
+            {
+                if (!inRun)
+                {
+                    out[count++] = ' ';
+                    inRun = true;
+                }
+            }
+            else if (c != '.')
+            {
+                out[count++] = c;
+                inRun = false;
+            }
+        }
+        return count;
+    }
+
+
+    /**
+     * Replaces apostrophes and hyphens at the start or end of the text, or next to a
+     * space, with a space.  The characters are consumed in the same order as the
+     * equivalent regular expression, so in "a' 'b" only the first apostrophe goes.
+     * @return The number of characters written to the output.
+     */
+    private static int stripApostrophesAndHyphens(char[] in, int length, char[] out)
+    {
+        int count = 0;
+        int i = 0;
+        while (i < length)
+        {
+            char c = in[i];
+            char next = i + 1 < length ? in[i + 1] : 0;
+            if ((c == '\'' || c == '-') && i == 0)
+            {
+                out[count++] = ' ';
+                ++i;
+            }
+            else if ((c == ' ' && next == '\'') || (c == '\'' && next == ' ')
+                     || (c == ' ' && next == '-') || (c == '-' && next == ' '))
+            {
+                out[count++] = ' ';
+                i += 2;
+            }
+            else if ((c == '\'' || c == '-') && isEnd(in, i + 1, length))
+            {
+                out[count++] = ' ';
+                ++i;
+            }
+            else
+            {
+                out[count++] = c;
+                ++i;
+            }
+        }
+        return count;
+    }
+
+
+    /**
+     * Replaces "'s" followed by white space with a space.
+     * @return The number of characters written to the output.
+     */
+    private static int stripPossessives(char[] in, int length, char[] out)
+    {
+        int count = 0;
+        int i = 0;
+        while (i < length)
+        {
+            char c = in[i];
+            if ((c == '\'' || c == '\u2019') && i + 2 < length && in[i + 1] == 's' && isWhitespace(in[i + 2]))
+            {
+                out[count++] = ' ';
+                i += 3;
+            }
+            else
+            {
+                out[count++] = c;
+                ++i;
+            }
+        }
+        return count;
+    }
+
+
+    /**
+     * Trims the text, splits it on white space and passes each word, in lower case,
+     * to the handler.
+     */
+    private static void emitTokens(char[] in, int length, TokenHandler handler)
+    {
+        int start = 0;
+        int end = length;
+        while (start < end && in[start] <= ' ')
+        {
+            ++start;
+        }
+        while (end > start && in[end - 1] <= ' ')
+        {
+            --end;
+        }
+        // Converting ASCII to lower case one character at a time only gives the same
+        // answer as String.toLowerCase() in locales without special rules for 'I'.
+        String language = Locale.getDefault().getLanguage();
+        boolean asciiLowerCase = !language.equals("tr") && !language.equals("az") && !language.equals("lt");
+        int i = start;
+        while (i < end)
+        {
+            while (i < end && isWhitespace(in[i]))
+            {
+                ++i;
+            }
+            int tokenStart = i;
+            boolean ascii = asciiLowerCase;
+            while (i < end && !isWhitespace(in[i]))
+            {
+                char c = in[i];
+                if (asciiLowerCase && c >= 'A' && c <= 'Z')
+                {
+                    in[i] = (char) (c + ('a' - 'A'));
+                }
+                else if (c >= 0x80)
+                {
+                    ascii = false;
+                }
+                ++i;
+            }
+            if (i > tokenStart)
+            {
+                if (ascii)
+                {
+                    handler.handleToken(in, tokenStart, i - tokenStart);
+                }
+                else
+                {
+                    // Rare enough that it's not worth avoiding the copies.
+                    char[] token = new String(in, tokenStart, i - tokenStart).toLowerCase().toCharArray();
+                    handler.handleToken(token, 0, token.length);
+                }
+            }
+        }
+    }
+
+
+    private static int append(String replacement, char[] out, int count)
+    {
+        replacement.getChars(0, replacement.length(), out, count);
+        return count + replacement.length();
+    }
+
+
+    /**
+     * @return Whether the specified index is the end of the text, or is just before
+     * a line break that ends the text (which is how a regular expression interprets '$').
+     */
+    private static boolean isEnd(char[] in, int index, int length)
+    {
+        return index == length
+               || (index == length - 1 && isLineTerminator(in[index]))
+               || (index == length - 2 && in[index] == '\r' && in[index + 1] == '\n');
+    }
+
+
+    private static boolean isDigit(char c)
+    {
+        return c >= '0' && c <= '9';
+    }
+
+
+    /**
+     * @return Whether the character is white space, as defined by '\s' in a regular expression.
+     */
+    private static boolean isWhitespace(char c)
+    {
+        return c == ' ' || c == '\t' || c == '\n' || c == '\u000B' || c == '\f' || c == '\r';
+    }
+
+
+    private static boolean isLineTerminator(char c)
+    {
+        return c == '\n' || c == '\r' || c == '\u0085' || c == '\u2028' || c == '\u2029';
+    }
+
+
+    private static boolean isPunctuation(char c)
+    {
+        switch (c)
+        {
+            case ',':
+            case ';':
+            case ':':
+            case '!':
+            case '?':
+            case '"':
+            case '(':
+            case ')':
+            case '&':
+            case '|':
+            case '[':
+            case ']':
+            case '{':
+            case '}':
+            case '<':
+            case '>':
+            case '/':
+            case '\u2013':
+            case '\u2022': return true;
+            default: return isWhitespace(c);
+        }
+    }
+
+
+    /**
+     * Receives the words found by a {@link Tokeniser}.
+     */
+    interface TokenHandler
+    {
+        /**
+         * @param chars An array containing the word.  Its contents are only valid until
+         * this method returns.
+         * @param offset The index of the first character of the word.
+         * @param length The number of characters in the word.
+         */
+        void handleToken(char[] chars, int offset, int length);
+    }
+}
@@ -0,0 +1,86 @@
+// ============================================================================
+//   Copyright 2009-2012 Daniel W. Dyer
+//
+//   Licensed under the Apache License, Version 2.0 (the "License");
+//   you may not use this file except in compliance with the License.
+//   You may obtain a copy of the License at
+//
+//       http://www.apache.org/licenses/LICENSE-2.0
+//
+//   Unless required by applicable law or agreed to in writing, software
+//   distributed under the License is distributed on an "AS IS" BASIS,
+//   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+//   See the License for the specific language governing permissions and
+//   limitations under the License.
+// ============================================================================
+package org.uncommons.zeitgeist;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.PriorityQueue;
+
+/**
+ * Keeps the highest-weighted of the items offered to it, up to a fixed maximum, along with
+ * a count of all of the items offered.  The retained items are held in a min-heap, so each
+ * item is added in O(log n) time for a maximum of n items and items that are not among the
+ * highest-weighted are discarded immediately rather than being stored and sorted.
+ * @param <T> The type of item.
+ * @author Daniel Dyer
+ */
+final class TopItems<T>
+{
+    private final int maxItems;
+    private final PriorityQueue<WeightedItem<T>> heap;
+    private int count = 0;
+
+    /**
+     * @param maxItems The maximum number of items to retain.
+     */
+    TopItems(int maxItems)
+    {
+        if (maxItems < 0)
+        {
+            throw new IllegalArgumentException("Maximum number of items must not be negative.");
+        }
+        this.maxItems = maxItems;
+        // The maximum may be much larger than the number of items actually offered (e.g.
+        // Integer.MAX_VALUE for no limit), so start small and let the heap grow.
+        this.heap = new PriorityQueue<WeightedItem<T>>(Math.min(maxItems, 16) + 1);
+    }
+
+
+    void offer(WeightedItem<T> item)
+    {
+        ++count;
+        if (heap.size() < maxItems)
+        {
+            heap.add(item);
+        }
+        else if (maxItems > 0 && item.getWeight() > heap.peek().getWeight())
+        {
+            heap.poll();
+            heap.add(item);
+        }
+    }
+
+
+    /**
+     * @return The number of items offered, whether or not they were retained.
+     */
+    int getCount()
+    {
+        return count;
+    }
+
+
+    /**
+     * @return The retained items, sorted by weight, highest first.
+     */
+    List<WeightedItem<T>> getItems()
+    {
+        List<WeightedItem<T>> items = new ArrayList<WeightedItem<T>>(heap);
+        Collections.sort(items, Collections.reverseOrder());
+        return items;
+    }
+}
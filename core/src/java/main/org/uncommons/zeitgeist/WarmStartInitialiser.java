@@ -0,0 +1,106 @@
+// ============================================================================
+//   Copyright 2009-2012 Daniel W. Dyer
+//
+//   Licensed under the Apache License, Version 2.0 (the "License");
+//   you may not use this file except in compliance with the License.
+//   You may obtain a copy of the License at
+//
+//       http://www.apache.org/licenses/LICENSE-2.0
+//
+//   Unless required by applicable law or agreed to in writing, software
+//   distributed under the License is distributed on an "AS IS" BASIS,
+//   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+//   See the License for the specific language governing permissions and
+//   limitations under the License.
+// ============================================================================
+package org.uncommons.zeitgeist;
+
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+
+/**
+ * Initialises a factorisation from the features of a previous factorisation of similar
+ * data, so that, when most of the words and topics carry over from one run to the next,
+ * far fewer iterations are needed.  Columns are matched up by word.  Words that did not
+ * appear previously, and any extra features, are initialised randomly.  The weights are
+ * then fitted to the initial features (with the features held fixed) so that both
+ * factors start out consistent with each other.
+ * @author Daniel Dyer
+ */
+public class WarmStartInitialiser implements FactorisationInitialiser
+{
+    // The number of (cheap) weights-only updates used to fit the weights to the
+    // previous features.
+    private static final int WEIGHT_ITERATIONS = 5;
+
+    private final FeatureModel model;
+    private final List<String> words;
+
+
+    /**
+     * @param model The features from a previous factorisation.
+     * @param words The word corresponding to each column of the matrix that is to be
+     * factorised.
+     */
+    public WarmStartInitialiser(FeatureModel model, List<String> words)
+    {
+        this.model = model;
+        this.words = words;
+    }
+
+
+    public void initialise(FactorisableMatrix matrix,
+                           Matrix weights,
+                           Matrix featuresTranspose,
+                           Random rng,
+                           RowPartitioner partitioner)
+    {
+        if (words.size() != matrix.getColumnCount())
+        {
+            throw new IllegalArgumentException("There must be exactly one word per column.");
+        }
+        Matrix previous = model.getFeatures();
+        Map<String, Integer> previousColumns = new HashMap<String, Integer>(model.getWords().size() * 2);
+        List<String> previousWords = model.getWords();
+        for (int column = 0; column < previousWords.size(); column++)
+        {
+            previousColumns.put(previousWords.get(column), column);
+        }
+
+        // New values are on the same scale as the old ones.  Zeros are also replaced, since
+        // the multiplicative updates could never change them.
+        int featureCount = featuresTranspose.getColumnCount();
+        int previousCount = Math.min(featureCount, previous.getRowCount());
+        double size = (double) previous.getRowCount() * previous.getColumnCount();
+        double scale = size == 0 ? 1 : previous.sum() / size;
+        for (int column = 0; column < words.size(); column++)
+        {
+            Integer previousColumn = previousColumns.get(words.get(column));
+            for (int feature = 0; feature < featureCount; feature++)
+            {
+                double value = feature < previousCount && previousColumn != null
+                               ? previous.get(feature, previousColumn)
+                               : 0;
+                featuresTranspose.set(column, feature, value > 0 ? value : rng.nextDouble() * scale + Double.MIN_VALUE);
+            }
+        }
+
+        for (int row = 0; row < weights.getRowCount(); row++)
+        {
+            for (int column = 0; column < featureCount; column++)
+            {
+                weights.set(row, column, rng.nextDouble());
+            }
+        }
+        Matrix featuresGram = featuresTranspose.multiplyTransposeLeft(featuresTranspose, partitioner);
+        Matrix numerator = new Matrix(weights.getRowCount(), featureCount);
+        matrix.multiply(featuresTranspose, numerator, partitioner);
+        FactorisationSolver solver = new HALSSolver();
+        for (int i = 0; i < WEIGHT_ITERATIONS; i++)
+        {
+            solver.update(weights, numerator, featuresGram, partitioner);
+        }
+    }
+}
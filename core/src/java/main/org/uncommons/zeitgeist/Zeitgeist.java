@@ -15,11 +15,16 @@
 // ============================================================================
 package org.uncommons.zeitgeist;
 
+import java.io.File;
+import java.io.IOException;
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Collections;
 import java.util.HashMap;
+import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.SortedMap;
 import java.util.TreeMap;
 import org.grlea.log.SimpleLogger;
 
@@ -32,12 +37,22 @@ import org.grlea.log.SimpleLogger;
 public class Zeitgeist
 {
     private static final SimpleLogger LOG = new SimpleLogger(FeedDownloadTask.class);
+    private static final int SKETCH_DEPTH = 4;
 
     private final List<Article> articles;
     private final int minArticlesPerTopic;
     private final int maxArticlesPerTopic;
     private final int minSourcesPerTopic;
     private final double minArticleRelevance;
+    private Factoriser factoriser = new Factoriser();
+    private File featureModelFile = null;
+    private int threadCount = 1;
+    private int frequencySketchWidth = 0;
+    private int maxArticlesPerWord = Integer.MAX_VALUE;
+    private double maxArticleFractionPerWord = 1;
+    private File commonWordsFile = null;
+    private int hashedColumnCount = 0;
+    private volatile FactorisationResult factorisationResult = null;
 
     /**
      * Create a Zeitgeist from the specified list of articles.  Typically the
@@ -66,75 +81,305 @@ public class Zeitgeist
     }
 
 
+    /**
+     * Specifies how the document-term matrix is factorised.  If this method is not
+     * called, a default {@link Factoriser} is used.
+     * @param factoriser The factoriser to use for topic identification.
+     */
+    public void setFactoriser(Factoriser factoriser)
+    {
+        this.factoriser = factoriser;
+    }
+
+
+    /**
+     * Specifies a file in which the features found by each factorisation are saved, so
+     * that the next factorisation can start from them rather than from scratch.  When
+     * topics are identified repeatedly from overlapping sets of articles (e.g. by a
+     * scheduled job), most words and topics carry over from one run to the next and
+     * starting from the previous features greatly reduces the number of iterations
+     * required.  If the file does not exist (or cannot be read), the factoriser's normal
+     * initialisation is used.
+     * @param featureModelFile The file from which to load, and to which to save, the
+     * {@link FeatureModel}.
+     */
+    public void setFeatureModelFile(File featureModelFile)
+    {
+        this.featureModelFile = featureModelFile;
+    }
+
+
+    /**
+     * Sets the number of threads used to split the articles into words and to assign articles
+     * to topics once the factorisation is complete.  The factorisation itself uses the threads
+     * of the {@link Factoriser}.
+     * @param threadCount The number of threads to use (defaults to 1).
+     */
+    public void setThreadCount(int threadCount)
+    {
+        if (threadCount < 1)
+        {
+            throw new IllegalArgumentException("Thread count must be at least 1.");
+        }
+        this.threadCount = threadCount;
+    }
+
+
+    /**
+     * Makes the document-term matrix in two passes over the articles, which bounds the
+     * memory required to build it by the number of words that are used rather than the
+     * number of distinct words in the articles.  The first pass counts the articles that
+     * each word appears in, approximately, in a {@link CountMinSketch}.  The second pass
+     * only keeps the words that might appear in enough articles to be used, and then
+     * counts them exactly.  The resulting matrix is the same as with a single pass.  The
+     * articles' words are not retained unless they have already been counted (see
+     * {@link Article#prepareWordCounts()}), so the articles are split into words twice.
+     * @param width The number of counters in each row of the sketch, or zero (the default)
+     * for a single pass.  Too few counters will keep too many rare words in the second pass.
+     * A few times the number of distinct words expected is more than enough.
+     */
+    public void setFrequencySketchWidth(int width)
+    {
+        if (width < 0)
+        {
+            throw new IllegalArgumentException("Sketch width must not be negative.");
+        }
+        this.frequencySketchWidth = width;
+    }
+
+
+    /**
+     * Sets an upper limit on the number of articles that a word can appear in and still be
+     * used to identify topics.  Words that appear in almost every article, such as the name
+     * of a news agency or "said", say nothing about the topic of an article but add a column
+     * to the document-term matrix that is densely populated, which slows down every step of
+     * the factorisation.  If both this and {@link #setMaxArticleFractionPerWord(double)} are
+     * specified, the lower of the two limits applies.
+     * @param maxArticlesPerWord The maximum number of articles (defaults to no limit).
+     */
+    public void setMaxArticlesPerWord(int maxArticlesPerWord)
+    {
+        if (maxArticlesPerWord < 1)
+        {
+            throw new IllegalArgumentException("Maximum articles per word must be at least 1.");
+        }
+        this.maxArticlesPerWord = maxArticlesPerWord;
+    }
+
+
+    /**
+     * Sets an upper limit on the fraction of articles that a word can appear in and still be
+     * used to identify topics (see {@link #setMaxArticlesPerWord(int)}).
+     * @param maxArticleFractionPerWord The maximum fraction of articles, greater than zero
+     * and no more than one (the default, which means no limit).
+     */
+    public void setMaxArticleFractionPerWord(double maxArticleFractionPerWord)
+    {
+        if (maxArticleFractionPerWord <= 0 || maxArticleFractionPerWord > 1)
+        {
+            throw new IllegalArgumentException("Maximum fraction of articles per word must be in the range (0, 1].");
+        }
+        this.maxArticleFractionPerWord = maxArticleFractionPerWord;
+    }
+
+
+    /**
+     * Specifies a file in which the words that exceed the limit on the number of articles
+     * per word are remembered between runs.  A word that is usually too common continues to
+     * be ignored when it is briefly less common, so the key words (and the topics that
+     * depend on them) don't change with small differences in the articles from one run to
+     * the next.  This has no effect unless there is a limit on the articles per word.
+     * @param commonWordsFile The file from which to load, and to which to save, the common
+     * words.  If the file does not exist (or cannot be read), only the current articles'
+     * words are considered.
+     */
+    public void setCommonWordsFile(File commonWordsFile)
+    {
+        this.commonWordsFile = commonWordsFile;
+    }
+
+
+    /**
+     * Assigns words to a fixed number of columns of the document-term matrix by hashing
+     * them, rather than giving each distinct word its own column.  Each article's row is
+     * then built independently, without a dictionary of every word in every article, so
+     * the memory required doesn't grow with the number of distinct words (the articles'
+     * words are not retained unless they have already been counted, see
+     * {@link Article#prepareWordCounts()}).  Columns that are used by too few (or too many)
+     * articles are removed, as with words, and each remaining column is labelled with one
+     * of its words, usually the most frequent.  Words that share a column are
+     * indistinguishable, so there should be several times more columns than the number of
+     * key words expected.  Rare words are not removed before they are hashed, so with many
+     * distinct words every column may be used by enough articles to be kept, unless the
+     * words are also filtered by a {@link #setFrequencySketchWidth(int) frequency sketch}.
+     * The {@link #setCommonWordsFile(File) common words file} is not used when words are
+     * hashed.
+     * @param columnCount The number of columns, or zero (the default) for one column per
+     * key word.
+     */
+    public void setHashedColumnCount(int columnCount)
+    {
+        if (columnCount < 0)
+        {
+            throw new IllegalArgumentException("Hashed column count must not be negative.");
+        }
+        this.hashedColumnCount = columnCount;
+    }
+
+
+    /**
+     * @return Details of the factorisation performed by the most recent call to
+     * {@link #getTopics()}, such as its cost, how many iterations it took and which
+     * termination conditions stopped it, or null if no topics have been identified yet.
+     */
+    public FactorisationResult getFactorisationResult()
+    {
+        return factorisationResult;
+    }
+
+
     public List<Topic> getTopics()
     {
-        Matrix matrix = makeMatrix(articles);
-        int topicCount = (int) Math.ceil(Math.log(articles.size()) * Math.log(matrix.getColumnCount()));
-        if (topicCount == 0 && !articles.isEmpty())
+        RowPartitioner partitioner = threadCount == 1 ? RowPartitioner.SERIAL : new RowPartitioner(threadCount);
+        try
         {
-            topicCount = 1;
+            List<String> words = new ArrayList<String>();
+            SparseMatrix matrix = makeMatrix(articles, words, partitioner);
+            StemCache stemCache = Article.getStemCache();
+            LOG.debug("Stem cache: " + stemCache.getHitCount() + " hits, " + stemCache.getMissCount() + " misses.");
+            int topicCount = estimateTopicCount(articles.size(), matrix.getColumnCount());
+            LOG.debug("Estimating number of topics is " + topicCount);
+            FeatureModel previousModel = loadFeatureModel();
+            FactorisationResult result = previousModel == null
+                                         ? factoriser.factoriseWithResult(matrix, topicCount)
+                                         : factoriser.factoriseWithResult(matrix,
+                                                                          topicCount,
+                                                                          new WarmStartInitialiser(previousModel, words));
+            LOG.info("Factorisation stopped after " + result.getIterations() + " iterations: "
+                     + result.getSatisfiedTerminationConditions());
+            factorisationResult = result;
+            saveFeatureModel(new FeatureModel(result.getFeatures(), words));
+            return extractTopics(articles, result.getWeights(), result.getFeatures(), partitioner);
+        }
+        finally
+        {
+            partitioner.shutdown();
         }
-        LOG.debug("Estimating number of topics is " + topicCount);
-        List<Matrix> factors = matrix.factorise(topicCount);
-        return extractTopics(articles, factors.get(0), factors.get(1));
     }
 
 
-    private List<Topic> extractTopics(List<Article> articles,
-                                      Matrix weights,
-                                      Matrix features)
+    private static int estimateTopicCount(int articleCount, int wordCount)
     {
-        int featureCount = features.getRowCount();
+        int topicCount = (int) Math.ceil(Math.log(articleCount) * Math.log(wordCount));
+        return topicCount == 0 && articleCount > 0 ? 1 : topicCount;
+    }
 
-        List<List<WeightedItem<Article>>> articlesByTopic = new ArrayList<List<WeightedItem<Article>>>(featureCount);
-        for (int i = 0; i < featureCount; i++)
+
+    /**
+     * @return The features from the previous run, or null if there are none.
+     */
+    private FeatureModel loadFeatureModel()
+    {
+        if (featureModelFile != null && featureModelFile.exists())
         {
-            articlesByTopic.add(new ArrayList<WeightedItem<Article>>());
+            try
+            {
+                FeatureModel model = FeatureModel.load(featureModelFile);
+                LOG.debug("Loaded " + model.getFeatures().getRowCount() + " previous features.");
+                return model;
+            }
+            catch (IOException ex)
+            {
+                LOG.warn("Failed to load previous features, starting from scratch: " + ex.getMessage());
+            }
         }
+        return null;
+    }
+
 
-        for (int i = 0; i < articles.size(); i++)
+    private void saveFeatureModel(FeatureModel model)
+    {
+        if (featureModelFile != null)
         {
-            // Identify strongest feature of article.
-            double maxWeight = -1;
-            int topicIndex = -1;
-            for (int j = 0; j < featureCount; j++)
+            try
             {
-                double featureWeight = weights.get(i, j);
-                if (featureWeight > maxWeight)
-                {
-                    maxWeight = featureWeight;
-                    topicIndex = j;
-                }
+                model.save(featureModelFile);
             }
-            if (maxWeight >= minArticleRelevance) // Don't include articles with only tenuous links to the main topic.
+            catch (IOException ex)
+            {
+                LOG.warn("Failed to save features: " + ex.getMessage());
+            }
+        }
+    }
+
+
+    private List<Topic> extractTopics(List<Article> articles,
+                                      final Matrix weights,
+                                      Matrix features,
+                                      RowPartitioner partitioner)
+    {
+        int featureCount = features.getRowCount();
+
+        // Identify the strongest feature of each article.  Each article's row of the
+        // weights is independent of the others, so they are split between threads.
+        final int[] topicIndices = new int[weights.getRowCount()];
+        final double[] maxWeights = new double[weights.getRowCount()];
+        partitioner.execute(weights.getRowCount(),
+                            (long) weights.getRowCount() * featureCount,
+                            new RowPartitioner.RowTask()
+        {
+            public void processRows(int fromRow, int toRow)
             {
-                WeightedItem<Article> weightedArticle = new WeightedItem<Article>(maxWeight, articles.get(i));
-                int index = Collections.binarySearch(articlesByTopic.get(topicIndex),
-                                                     weightedArticle,
-                                                     Collections.reverseOrder());
-                if (index < 0)
+                for (int i = fromRow; i < toRow; i++)
                 {
-                    index = -(index + 1);
+                    double maxWeight = -1;
+                    int topicIndex = -1;
+                    for (int j = 0; j < weights.getColumnCount(); j++)
+                    {
+                        double featureWeight = weights.get(i, j);
+                        if (featureWeight > maxWeight)
+                        {
+                            maxWeight = featureWeight;
+                            topicIndex = j;
+                        }
+                    }
+                    topicIndices[i] = topicIndex;
+                    maxWeights[i] = maxWeight;
                 }
-                articlesByTopic.get(topicIndex).add(index, weightedArticle);
             }
+        });
+
+        // Only the strongest articles of each topic are kept, but all are counted.
+        List<TopItems<Article>> articlesByTopic = new ArrayList<TopItems<Article>>(featureCount);
+        for (int i = 0; i < featureCount; i++)
+        {
+            articlesByTopic.add(new TopItems<Article>(maxArticlesPerTopic));
+        }
+        int i = 0;
+        for (Article article : articles) // Iterate rather than index, the list may be linked.
+        {
+            if (maxWeights[i] >= minArticleRelevance) // Don't include articles with only tenuous links to the main topic.
+            {
+                articlesByTopic.get(topicIndices[i]).offer(new WeightedItem<Article>(maxWeights[i], article));
+            }
+            ++i;
         }
 
         List<Topic> topics = new ArrayList<Topic>();
-        for (List<WeightedItem<Article>> topicArticles : articlesByTopic)
+        for (TopItems<Article> topicArticles : articlesByTopic)
         {
-            Topic topic = new Topic(topicArticles.subList(0, Math.min(topicArticles.size(), maxArticlesPerTopic)));
+            Topic topic = new Topic(topicArticles.getItems());
             int sources = topic.countDistinctSources();
-            if (sources >= minSourcesPerTopic && topicArticles.size() >= minArticlesPerTopic)
+            if (sources >= minSourcesPerTopic && topicArticles.getCount() >= minArticlesPerTopic)
             {
                 topics.add(topic);
             }
             else
             {
-                String detail = topicArticles.isEmpty() ? "???" : topicArticles.get(0).getItem().getHeadline();
+                String detail = topicArticles.getCount() == 0 ? "???" : topic.getArticles().get(0).getItem().getHeadline();
                 LOG.verbose(String.format("Discarding topic \"%s\" (%d), too few sources (%d)",
                                           detail,
-                                          topicArticles.size(),
+                                          topicArticles.getCount(),
                                           sources));
             }
         }
@@ -144,60 +389,378 @@ public class Zeitgeist
     }
 
 
-
-    private Matrix makeMatrix(List<Article> articles)
+    /**
+     * Build a sparse document-term matrix, with one row per article and one column
+     * per key word.  Each distinct word is given an integer ID, so after the articles have
+     * been split into words everything is done with int arrays.  Articles are split into
+     * words by several threads, so IDs are not allocated in any particular order, but
+     * columns are in alphabetical order and each row is filled in independently, so the
+     * matrix is the same however many threads are used.  If words are hashed (see
+     * {@link #setHashedColumnCount(int)}), the hashed columns take the place of the IDs.
+     * @param words Populated with the key words, in column order.
+     */
+    SparseMatrix makeMatrix(List<Article> articles, List<String> words, RowPartitioner partitioner)
     {
-        // Which words appear in which articles and how many times.
-        Map<Article, Map<String, Integer>> articleWordCounts = new HashMap<Article, Map<String, Integer>>();
-        // How many articles does each word appear in.
-        Map<String, Integer> globalWordCounts = new TreeMap<String, Integer>();
+        final Article[] articleArray = articles.toArray(new Article[articles.size()]);
+        long textLength = 0;
+        for (Article article : articleArray)
+        {
+            textLength += article.getHeadline().length() + article.getText().length();
+        }
 
-        for (Article article : articles)
+        final FeatureHasher hasher = hashedColumnCount == 0 ? null : new FeatureHasher(hashedColumnCount);
+        final CountMinSketch sketch = frequencySketchWidth == 0 ? null : sketchFrequencies(articleArray,
+                                                                                            textLength,
+                                                                                            partitioner);
+
+        // Each block of articles counts the articles each word appears in separately,
+        // since IDs are still being allocated, and the counts are added up at the end.
+        // Term IDs are columns if words are hashed, in which case each block also keeps
+        // its own sample of the words in each column.
+        final TermDictionary dictionary = new TermDictionary();
+        final TermVector[] termVectors = new TermVector[articleArray.length];
+        final List<int[]> partialFrequencies = Collections.synchronizedList(new ArrayList<int[]>());
+        final List<FeatureHasher.Sample> samples = Collections.synchronizedList(new ArrayList<FeatureHasher.Sample>());
+        partitioner.execute(articleArray.length, textLength, new RowPartitioner.RowTask()
+        {
+            public void processRows(int fromRow, int toRow)
+            {
+                int[] frequencies = new int[0];
+                FeatureHasher.Sample sample = hasher == null ? null : new FeatureHasher.Sample(hashedColumnCount);
+                for (int row = fromRow; row < toRow; row++)
+                {
+                    TermVector termVector;
+                    if (hasher != null)
+                    {
+                        termVector = articleArray[row].getTermVector(hasher, sample, sketch, minArticlesPerTopic);
+                    }
+                    else if (sketch != null)
+                    {
+                        termVector = articleArray[row].getTermVector(dictionary, sketch, minArticlesPerTopic);
+                    }
+                    else
+                    {
+                        termVector = articleArray[row].getTermVector(dictionary);
+                    }
+                    termVectors[row] = termVector;
+                    for (int i = 0; i < termVector.size(); i++)
+                    {
+                        int id = termVector.getTermId(i);
+                        if (id >= frequencies.length)
+                        {
+                            frequencies = Arrays.copyOf(frequencies, Math.max(id + 1, frequencies.length * 2));
+                        }
+                        ++frequencies[id];
+                    }
+                }
+                partialFrequencies.add(frequencies);
+                if (sample != null)
+                {
+                    samples.add(sample);
+                }
+            }
+        });
+        int[] documentFrequencies = new int[hasher == null ? dictionary.size() : hashedColumnCount];
+        for (int[] frequencies : partialFrequencies)
         {
-            Map<String, Integer> wordCounts = article.getWordCounts();
-            articleWordCounts.put(article, wordCounts);
-            for (String word : wordCounts.keySet())
+            // The partial tables have spare capacity, but no IDs beyond those allocated.
+            for (int id = 0; id < Math.min(frequencies.length, documentFrequencies.length); id++)
             {
-                Integer count = globalWordCounts.get(word);
-                globalWordCounts.put(word, 1 + (count == null ? 0 : count));
+                documentFrequencies[id] += frequencies[id];
             }
         }
 
-        List<String> words = listWords(globalWordCounts);
-
-        LOG.info("Total articles: " + articles.size());
-        LOG.info("Total words: " + globalWordCounts.size());
+        LOG.info("Total articles: " + articleArray.length);
+        final int[] columns;
+        if (hasher == null)
+        {
+            LOG.info((sketch == null ? "Total words: " : "Candidate words: ") + dictionary.size());
+            columns = listWords(dictionary, documentFrequencies, articleArray.length, words);
+        }
+        else
+        {
+            LOG.info("Hashed columns: " + hashedColumnCount);
+            columns = listColumns(samples, documentFrequencies, articleArray.length, words);
+        }
         LOG.info("Key words: " + words.size());
         LOG.debug(words.toString());
 
-        Matrix matrix = new Matrix(articles.size(), words.size());
-        int row = 0;
-        for (Article article : articles)
+        // First pass counts how many key words each article contains, so that the
+        // storage for the non-zero values can be allocated in one go.
+        final int[] rowOffsets = new int[articleArray.length + 1];
+        long termCount = 0;
+        for (TermVector termVector : termVectors)
         {
-            int column = 0;
-            for (String word : words)
+            termCount += termVector.size();
+        }
+        partitioner.execute(articleArray.length, termCount, new RowPartitioner.RowTask()
+        {
+            public void processRows(int fromRow, int toRow)
             {
-                Integer count = articleWordCounts.get(article).get(word);
-                matrix.set(row, column, count == null ? 0 : count);
-                ++column;
+                for (int row = fromRow; row < toRow; row++)
+                {
+                    TermVector termVector = termVectors[row];
+                    int keyWordCount = 0;
+                    for (int i = 0; i < termVector.size(); i++)
+                    {
+                        if (columns[termVector.getTermId(i)] >= 0)
+                        {
+                            ++keyWordCount;
+                        }
+                    }
+                    rowOffsets[row + 1] = keyWordCount;
+                }
             }
-            ++row;
+        });
+        for (int row = 0; row < articleArray.length; row++)
+        {
+            rowOffsets[row + 1] += rowOffsets[row];
         }
-        return matrix;
+
+        // Second pass fills in the column indices (in ascending order) and word counts.
+        final int[] columnIndices = new int[rowOffsets[articleArray.length]];
+        final double[] values = new double[columnIndices.length];
+        final int columnCount = words.size();
+        partitioner.execute(articleArray.length, termCount, new RowPartitioner.RowTask()
+        {
+            public void processRows(int fromRow, int toRow)
+            {
+                int[] countsByColumn = new int[columnCount];
+                for (int row = fromRow; row < toRow; row++)
+                {
+                    TermVector termVector = termVectors[row];
+                    int index = rowOffsets[row];
+                    for (int i = 0; i < termVector.size(); i++)
+                    {
+                        int column = columns[termVector.getTermId(i)];
+                        if (column >= 0)
+                        {
+                            columnIndices[index++] = column;
+                            countsByColumn[column] = termVector.getCount(i);
+                        }
+                    }
+                    Arrays.sort(columnIndices, rowOffsets[row], index);
+                    for (int i = rowOffsets[row]; i < index; i++)
+                    {
+                        values[i] = countsByColumn[columnIndices[i]];
+                    }
+                }
+            }
+        });
+        LOG.info("Non-zero elements: " + values.length);
+        return new SparseMatrix(articleArray.length, columnCount, rowOffsets, columnIndices, values);
     }
 
 
-    private List<String> listWords(Map<String, Integer> globalWordCounts)
+    /**
+     * The first of two passes over the articles estimates the number of articles in which
+     * each word appears.
+     */
+    private CountMinSketch sketchFrequencies(final Article[] articleArray,
+                                             long textLength,
+                                             RowPartitioner partitioner)
     {
-        List<String> words = new ArrayList<String>();
-        for (Map.Entry<String, Integer> entry : globalWordCounts.entrySet())
+        final CountMinSketch sketch = new CountMinSketch(frequencySketchWidth, SKETCH_DEPTH);
+        partitioner.execute(articleArray.length, textLength, new RowPartitioner.RowTask()
+        {
+            public void processRows(int fromRow, int toRow)
+            {
+                for (int row = fromRow; row < toRow; row++)
+                {
+                    articleArray[row].addTerms(sketch);
+                }
+            }
+        });
+        return sketch;
+    }
+
+
+    /**
+     * Select the key words, i.e. those that occur in enough different articles but not in
+     * too many, and assign them to columns in alphabetical order.
+     * @param words Populated with the key words, in column order.
+     * @return The column of each term ID, or -1 for terms that are not key words.
+     */
+    private int[] listWords(TermDictionary dictionary,
+                            int[] documentFrequencies,
+                            int articleCount,
+                            List<String> words)
+    {
+        int maxArticles = getMaxArticlesPerWord(articleCount);
+        CommonWords commonWords = maxArticles < articleCount ? loadCommonWords() : null;
+        Map<String, Double> fractions = new HashMap<String, Double>();
+        SortedMap<String, Integer> keyWords = new TreeMap<String, Integer>();
+        SortedMap<String, Integer> removedWords = new TreeMap<String, Integer>();
+        for (int id = 0; id < documentFrequencies.length; id++)
         {
             // If a word doesn't occur in enough different articles, discard it.
-            if (entry.getValue() >= minArticlesPerTopic)
+            if (documentFrequencies[id] >= minArticlesPerTopic)
+            {
+                String word = dictionary.getTerm(id);
+                if (commonWords != null)
+                {
+                    fractions.put(word, (double) documentFrequencies[id] / articleCount);
+                }
+                // If it occurs in too many, it's not specific to any one topic.
+                if (documentFrequencies[id] > maxArticles)
+                {
+                    removedWords.put(word, id);
+                }
+                else
+                {
+                    keyWords.put(word, id);
+                }
+            }
+        }
+        if (commonWords != null)
+        {
+            double maxFraction = (double) maxArticles / articleCount;
+            commonWords.update(fractions, maxFraction);
+            for (String word : keyWords.keySet().toArray(new String[keyWords.size()]))
+            {
+                if (commonWords.isCommon(word, maxFraction))
+                {
+                    removedWords.put(word, keyWords.remove(word));
+                }
+            }
+            saveCommonWords(commonWords);
+        }
+        if (!removedWords.isEmpty())
+        {
+            logRemovedWords(removedWords, keyWords, documentFrequencies, articleCount);
+        }
+
+        int[] columns = new int[documentFrequencies.length];
+        Arrays.fill(columns, -1);
+        for (Map.Entry<String, Integer> entry : keyWords.entrySet())
+        {
+            columns[entry.getValue()] = words.size();
+            words.add(entry.getKey());
+        }
+        return columns;
+    }
+
+
+    /**
+     * Select the hashed columns that are used by enough different articles but not by
+     * too many, and label each with a word from the columns' samples.
+     * @param words Populated with a word for each selected column, in column order.
+     * @return The new column of each hashed column, or -1 for columns that are not used.
+     */
+    private int[] listColumns(List<FeatureHasher.Sample> samples,
+                              int[] documentFrequencies,
+                              int articleCount,
+                              List<String> words)
+    {
+        // The samples are merged in an arbitrary order, so a column that has no majority
+        // word may be labelled differently with more than one thread.
+        FeatureHasher.Sample sample = new FeatureHasher.Sample(documentFrequencies.length);
+        for (FeatureHasher.Sample partialSample : samples)
+        {
+            sample.merge(partialSample);
+        }
+        int maxArticles = getMaxArticlesPerWord(articleCount);
+        Map<String, Integer> keyWords = new LinkedHashMap<String, Integer>();
+        Map<String, Integer> removedWords = new LinkedHashMap<String, Integer>();
+        int[] columns = new int[documentFrequencies.length];
+        Arrays.fill(columns, -1);
+        for (int column = 0; column < documentFrequencies.length; column++)
+        {
+            if (documentFrequencies[column] > maxArticles)
             {
-                words.add(entry.getKey());
+                removedWords.put(sample.getWord(column), column);
             }
+            else if (documentFrequencies[column] >= minArticlesPerTopic && documentFrequencies[column] > 0)
+            {
+                keyWords.put(sample.getWord(column), column);
+                columns[column] = words.size();
+                words.add(sample.getWord(column));
+            }
+        }
+        if (!removedWords.isEmpty())
+        {
+            logRemovedWords(removedWords, keyWords, documentFrequencies, articleCount);
+        }
+        return columns;
+    }
+
+
+    /**
+     * @return The lower of the two limits on the number of articles that a word can appear in.
+     */
+    private int getMaxArticlesPerWord(int articleCount)
+    {
+        return (int) Math.min(maxArticlesPerWord, Math.floor(maxArticleFractionPerWord * articleCount));
+    }
+
+
+    /**
+     * Each iteration of the factorisation multiplies the document-term matrix by both
+     * factors, which takes time proportional to the number of non-zero elements (one for
+     * each article that a column's word appears in) times the number of topics, and
+     * also multiplies the factors by their (topics x topics) Gram matrices, which takes
+     * time proportional to the number of rows and columns times the square of the
+     * number of topics.
+     */
+    private void logRemovedWords(Map<String, Integer> removedWords,
+                                 Map<String, Integer> keyWords,
+                                 int[] documentFrequencies,
+                                 int articleCount)
+    {
+        long removedCount = 0;
+        for (int id : removedWords.values())
+        {
+            removedCount += documentFrequencies[id];
+        }
+        long keptCount = 0;
+        for (int id : keyWords.values())
+        {
+            keptCount += documentFrequencies[id];
+        }
+        double topics = estimateTopicCount(articleCount, keyWords.size() + removedWords.size());
+        double cost = (removedCount + keptCount) * topics
+                      + (articleCount + keyWords.size() + removedWords.size()) * topics * topics;
+        double reducedCost = keptCount * topics + (articleCount + keyWords.size()) * topics * topics;
+        LOG.info(String.format("Removed %d common words (%.1f%% of non-zero elements, estimated speed-up %.2fx)",
+                               removedWords.size(),
+                               100.0 * removedCount / (removedCount + keptCount),
+                               cost / reducedCost));
+        LOG.debug(removedWords.keySet().toString());
+    }
+
+
+    /**
+     * @return The common words remembered from previous runs (possibly none), or null if
+     * they are not to be remembered.
+     */
+    private CommonWords loadCommonWords()
+    {
+        if (commonWordsFile != null && commonWordsFile.exists())
+        {
+            try
+            {
+                CommonWords commonWords = CommonWords.load(commonWordsFile);
+                LOG.debug("Loaded " + commonWords.size() + " previous common words.");
+                return commonWords;
+            }
+            catch (IOException ex)
+            {
+                LOG.warn("Failed to load previous common words, starting from scratch: " + ex.getMessage());
+            }
+        }
+        return commonWordsFile == null ? null : new CommonWords();
+    }
+
+
+    private void saveCommonWords(CommonWords commonWords)
+    {
+        try
+        {
+            commonWords.save(commonWordsFile);
+        }
+        catch (IOException ex)
+        {
+            LOG.warn("Failed to save common words: " + ex.getMessage());
         }
-        return words;
     }
 }
@@ -0,0 +1,56 @@
+// ============================================================================
+//   Copyright 2009-2012 Daniel W. Dyer
+//
+//   Licensed under the Apache License, Version 2.0 (the "License");
+//   you may not use this file except in compliance with the License.
+//   You may obtain a copy of the License at
+//
+//       http://www.apache.org/licenses/LICENSE-2.0
+//
+//   Unless required by applicable law or agreed to in writing, software
+//   distributed under the License is distributed on an "AS IS" BASIS,
+//   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+//   See the License for the specific language governing permissions and
+//   limitations under the License.
+// ============================================================================
+package org.uncommons.zeitgeist.termination;
+
+import org.uncommons.zeitgeist.IterationData;
+
+/**
+ * Terminates a factorisation once it has been running for a given amount of time.
+ * The limit is checked between iterations, so it may be exceeded by up to the
+ * duration of one iteration.
+ * @author Daniel Dyer
+ */
+public class ElapsedTime implements TerminationCondition
+{
+    private final long maxDuration;
+
+    /**
+     * @param maxDuration The time (in milliseconds) after which the factorisation
+     * should stop.
+     */
+    public ElapsedTime(long maxDuration)
+    {
+        if (maxDuration <= 0)
+        {
+            throw new IllegalArgumentException("Duration must be positive.");
+        }
+        this.maxDuration = maxDuration;
+    }
+
+
+    @Override
+    public boolean shouldTerminate(IterationData data)
+    {
+        return data.getElapsedNanos() >= maxDuration * 1000000;
+    }
+
+
+    @Override
+    public String toString()
+    {
+        return "Time limit of " + maxDuration + "ms reached";
+    }
+}
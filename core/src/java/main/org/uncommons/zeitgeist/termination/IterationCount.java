@@ -0,0 +1,53 @@
+// ============================================================================
+//   Copyright 2009-2012 Daniel W. Dyer
+//
+//   Licensed under the Apache License, Version 2.0 (the "License");
+//   you may not use this file except in compliance with the License.
+//   You may obtain a copy of the License at
+//
+//       http://www.apache.org/licenses/LICENSE-2.0
+//
+//   Unless required by applicable law or agreed to in writing, software
+//   distributed under the License is distributed on an "AS IS" BASIS,
+//   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+//   See the License for the specific language governing permissions and
+//   limitations under the License.
+// ============================================================================
+package org.uncommons.zeitgeist.termination;
+
+import org.uncommons.zeitgeist.IterationData;
+
+/**
+ * Terminates a factorisation after a fixed number of iterations.
+ * @author Daniel Dyer
+ */
+public class IterationCount implements TerminationCondition
+{
+    private final int iterationCount;
+
+    /**
+     * @param iterationCount The maximum number of iterations.
+     */
+    public IterationCount(int iterationCount)
+    {
+        if (iterationCount < 0)
+        {
+            throw new IllegalArgumentException("Iteration count must not be negative.");
+        }
+        this.iterationCount = iterationCount;
+    }
+
+
+    @Override
+    public boolean shouldTerminate(IterationData data)
+    {
+        return data.getIteration() >= iterationCount;
+    }
+
+
+    @Override
+    public String toString()
+    {
+        return "Reached " + iterationCount + " iterations";
+    }
+}
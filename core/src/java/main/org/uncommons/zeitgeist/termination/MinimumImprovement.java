@@ -0,0 +1,52 @@
+// ============================================================================
+//   Copyright 2009-2012 Daniel W. Dyer
+//
+//   Licensed under the Apache License, Version 2.0 (the "License");
+//   you may not use this file except in compliance with the License.
+//   You may obtain a copy of the License at
+//
+//       http://www.apache.org/licenses/LICENSE-2.0
+//
+//   Unless required by applicable law or agreed to in writing, software
+//   distributed under the License is distributed on an "AS IS" BASIS,
+//   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+//   See the License for the specific language governing permissions and
+//   limitations under the License.
+// ============================================================================
+package org.uncommons.zeitgeist.termination;
+
+import org.uncommons.zeitgeist.IterationData;
+
+/**
+ * Terminates a factorisation once an iteration fails to reduce the cost by at least
+ * the specified fraction.
+ * @author Daniel Dyer
+ */
+public class MinimumImprovement implements TerminationCondition
+{
+    private final double minimumImprovement;
+
+    /**
+     * @param minimumImprovement The smallest fractional reduction in cost (e.g. 0.01 for 1%)
+     * that justifies another iteration.
+     */
+    public MinimumImprovement(double minimumImprovement)
+    {
+        this.minimumImprovement = minimumImprovement;
+    }
+
+
+    @Override
+    public boolean shouldTerminate(IterationData data)
+    {
+        // Written so that an undefined improvement (a cost of zero) also terminates.
+        return !(data.getImprovement() > minimumImprovement);
+    }
+
+
+    @Override
+    public String toString()
+    {
+        return "Improvement below " + minimumImprovement * 100 + "%";
+    }
+}
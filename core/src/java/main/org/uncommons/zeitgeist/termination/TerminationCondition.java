@@ -0,0 +1,33 @@
+// ============================================================================
+//   Copyright 2009-2012 Daniel W. Dyer
+//
+//   Licensed under the Apache License, Version 2.0 (the "License");
+//   you may not use this file except in compliance with the License.
+//   You may obtain a copy of the License at
+//
+//       http://www.apache.org/licenses/LICENSE-2.0
+//
+//   Unless required by applicable law or agreed to in writing, software
+//   distributed under the License is distributed on an "AS IS" BASIS,
+//   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+//   See the License for the specific language governing permissions and
+//   limitations under the License.
+// ============================================================================
+package org.uncommons.zeitgeist.termination;
+
+import org.uncommons.zeitgeist.IterationData;
+
+/**
+ * Decides when a factorisation should stop iterating.  The conditions are checked
+ * between iterations, so the factors are always in a consistent state when one is
+ * satisfied.
+ * @author Daniel Dyer
+ */
+public interface TerminationCondition
+{
+    /**
+     * @param data The progress of the factorisation so far.
+     * @return True if the factorisation should stop, false otherwise.
+     */
+    boolean shouldTerminate(IterationData data);
+}
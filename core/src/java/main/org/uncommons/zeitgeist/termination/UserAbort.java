@@ -0,0 +1,71 @@
+// ============================================================================
+//   Copyright 2009-2012 Daniel W. Dyer
+//
+//   Licensed under the Apache License, Version 2.0 (the "License");
+//   you may not use this file except in compliance with the License.
+//   You may obtain a copy of the License at
+//
+//       http://www.apache.org/licenses/LICENSE-2.0
+//
+//   Unless required by applicable law or agreed to in writing, software
+//   distributed under the License is distributed on an "AS IS" BASIS,
+//   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+//   See the License for the specific language governing permissions and
+//   limitations under the License.
+// ============================================================================
+package org.uncommons.zeitgeist.termination;
+
+import org.uncommons.zeitgeist.IterationData;
+
+/**
+ * Allows a factorisation to be cancelled from another thread.  Once {@link #abort()}
+ * has been called, the factorisation stops at the end of its current iteration and
+ * returns the factors found so far.
+ * @author Daniel Dyer
+ */
+public class UserAbort implements TerminationCondition
+{
+    private volatile boolean aborted = false;
+
+
+    @Override
+    public boolean shouldTerminate(IterationData data)
+    {
+        return isAborted();
+    }
+
+
+    /**
+     * Aborts any factorisation that this condition applies to.
+     */
+    public void abort()
+    {
+        aborted = true;
+    }
+
+
+    /**
+     * @return True if {@link #abort()} has been called (and the condition has not
+     * been {@link #reset()} since), false otherwise.
+     */
+    public boolean isAborted()
+    {
+        return aborted;
+    }
+
+
+    /**
+     * Clears the aborted flag so that this condition can be re-used.
+     */
+    public void reset()
+    {
+        aborted = false;
+    }
+
+
+    @Override
+    public String toString()
+    {
+        return "Aborted";
+    }
+}
@@ -40,4 +40,20 @@ public class ArticleFetcherTest
                                                      Collections.<ArticleFilter>emptyList());
         assert articles.size() == 10 : "Should be 10 articles, is " + articles.size();
     }
+
+
+    @Test
+    public void testPrepareWordCounts()
+    {
+        URL rssURL = FeedDownloadTaskTest.class.getResource("newadventuresinsoftware.rss");
+        ArticleFetcher fetcher = new ArticleFetcher(new FileURLFeedFetcher());
+        fetcher.setPrepareWordCounts(true);
+        List<Article> articles = fetcher.getArticles(Arrays.asList(rssURL),
+                                                     Collections.<ArticleFilter>emptyList());
+        assert articles.size() == 10 : "Should be 10 articles, is " + articles.size();
+        for (Article article : articles)
+        {
+            assert !article.getWordCounts().isEmpty() : "Article should have words: " + article.getHeadline();
+        }
+    }
 }
@@ -15,6 +15,7 @@
 // ============================================================================
 package org.uncommons.zeitgeist;
 
+import java.util.Arrays;
 import java.util.Collections;
 import java.util.Date;
 import java.util.GregorianCalendar;
@@ -79,6 +80,24 @@ public class ArticleTest
     }
 
 
+    @Test(dependsOnMethods = "testOmitLowValueWords")
+    public void testCustomLowValueWords()
+    {
+        Article.setLowValueWords(new StopWords(Arrays.asList("title")));
+        try
+        {
+            Article article = new Article("the title is a headline", "", null, new Date(), Collections.<Image>emptyList(), "", null, null);
+            Map<String, Integer> wordCounts = article.getWordCounts();
+            assert !wordCounts.containsKey("titl") : "Custom low value word should be omitted.";
+            assert wordCounts.containsKey("the") : "Standard low value words should no longer be omitted.";
+        }
+        finally
+        {
+            Article.setLowValueWords(StopWords.getDefault());
+        }
+    }
+
+
     @Test
     public void testWordsWithApostrophes()
     {
@@ -102,6 +121,60 @@ public class ArticleTest
     }
 
 
+    /**
+     * The term vector must contain the same words and counts as the word counts map.
+     */
+    @Test
+    public void testTermVector()
+    {
+        Article article = new Article("dog magic", "fish magic rabbit magic", null, new Date(), Collections.<Image>emptyList(), "", null, null);
+        TermDictionary dictionary = new TermDictionary();
+        dictionary.getId("rabbit");
+        TermVector termVector = article.getTermVector(dictionary);
+        Map<String, Integer> wordCounts = article.getWordCounts();
+        assert termVector.size() == wordCounts.size() : "Should be 4 words, is " + termVector.size();
+        for (int i = 0; i < termVector.size(); i++)
+        {
+            String word = dictionary.getTerm(termVector.getTermId(i));
+            assert termVector.getCount(i) == wordCounts.get(word) : "Wrong count for " + word;
+            assert i == 0 || termVector.getTermId(i) > termVector.getTermId(i - 1) : "IDs should be in ascending order.";
+        }
+        assert termVector.getTermId(0) == 0 : "Existing ID should be reused for 'rabbit'.";
+    }
+
+
+    /**
+     * Words that are hashed to the same column must have their counts added together.
+     */
+    @Test
+    public void testHashedTermVector()
+    {
+        Article article = new Article("dog magic", "fish magic rabbit magic", null, new Date(), Collections.<Image>emptyList(), "", null, null);
+        FeatureHasher.Sample sample = new FeatureHasher.Sample(1);
+        TermVector termVector = article.getTermVector(new FeatureHasher(1), sample, null, 0);
+        assert termVector.size() == 1 : "All words should be in one column.";
+        assert termVector.getCount(0) == 6 : "Wrong count: " + termVector.getCount(0);
+        assert sample.getWord(0).equals("magic") : "Most frequent word should be sampled: " + sample.getWord(0);
+    }
+
+
+    /**
+     * The words are only extracted once, but callers must not be able to change them.
+     */
+    @Test
+    public void testWordCountsAreCopies()
+    {
+        Article article = new Article("dog magic", "fish magic", null, new Date(), Collections.<Image>emptyList(), "", null, null);
+        article.prepareWordCounts();
+        Map<String, Integer> wordCounts = article.getWordCounts();
+        wordCounts.put("magic", 99);
+        wordCounts.remove("dog");
+        Map<String, Integer> again = article.getWordCounts();
+        assert again.size() == 3 : "Should be 3 words, is " + again.size();
+        assert again.get("magic") == 2 : "Count should be 2 is " + again.get("magic");
+    }
+
+
     @Test
     public void testIsNew()
     {
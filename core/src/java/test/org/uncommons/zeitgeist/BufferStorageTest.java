@@ -0,0 +1,80 @@
+// ============================================================================
+//   Copyright 2009-2012 Daniel W. Dyer
+//
+//   Licensed under the Apache License, Version 2.0 (the "License");
+//   you may not use this file except in compliance with the License.
+//   You may obtain a copy of the License at
+//
+//       http://www.apache.org/licenses/LICENSE-2.0
+//
+//   Unless required by applicable law or agreed to in writing, software
+//   distributed under the License is distributed on an "AS IS" BASIS,
+//   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+//   See the License for the specific language governing permissions and
+//   limitations under the License.
+// ============================================================================
+package org.uncommons.zeitgeist;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.Random;
+import org.testng.annotations.Test;
+
+/**
+ * Unit test for the {@link BufferStorage} class.  Small chunks are used so that values
+ * and rows span several chunks.
+ * @author Daniel Dyer
+ */
+public class BufferStorageTest
+{
+    @Test
+    public void testDirectStorage() throws IOException
+    {
+        BufferStorage storage = new BufferStorage(100, 3, null);
+        assert storage.getMode() == StorageMode.OFF_HEAP : "Wrong mode: " + storage.getMode();
+        checkStorage(storage);
+    }
+
+
+    @Test
+    public void testMappedStorage() throws IOException
+    {
+        File file = File.createTempFile("zeitgeist", ".matrix");
+        try
+        {
+            BufferStorage storage = new BufferStorage(100, 3, file);
+            assert storage.getMode() == StorageMode.MAPPED : "Wrong mode: " + storage.getMode();
+            assert file.length() == 800 : "Wrong file size: " + file.length();
+            checkStorage(storage);
+        }
+        finally
+        {
+            file.delete();
+        }
+    }
+
+
+    private void checkStorage(BufferStorage storage)
+    {
+        assert storage.size() == 100 : "Wrong size: " + storage.size();
+        DoubleStorage expected = new DoubleStorage(100);
+        Random rng = new Random(8);
+        for (int i = 0; i < 100; i++)
+        {
+            assert storage.get(i) == 0 : "Storage should be initialised to zero.";
+            double value = rng.nextDouble();
+            storage.set(i, value);
+            expected.set(i, value);
+        }
+        assert storage.dot(5, expected, 30, 40) == expected.dot(5, expected, 30, 40) : "Wrong dot product.";
+        assert storage.squaredDistance(expected) == 0 : "Wrong squared distance.";
+        storage.addScaled(7, 2, expected, 50, 20);
+        expected.addScaled(7, 2, expected, 50, 20);
+        storage.clear(60, 75);
+        expected.clear(60, 75);
+        for (int i = 0; i < 100; i++)
+        {
+            assert storage.get(i) == expected.get(i) : "Wrong value at " + i + ": " + storage.get(i);
+        }
+    }
+}
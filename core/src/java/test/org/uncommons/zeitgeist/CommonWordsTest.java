@@ -0,0 +1,85 @@
+// ============================================================================
+//   Copyright 2009-2012 Daniel W. Dyer
+//
+//   Licensed under the Apache License, Version 2.0 (the "License");
+//   you may not use this file except in compliance with the License.
+//   You may obtain a copy of the License at
+//
+//       http://www.apache.org/licenses/LICENSE-2.0
+//
+//   Unless required by applicable law or agreed to in writing, software
+//   distributed under the License is distributed on an "AS IS" BASIS,
+//   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+//   See the License for the specific language governing permissions and
+//   limitations under the License.
+// ============================================================================
+package org.uncommons.zeitgeist;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.HashMap;
+import java.util.Map;
+import org.testng.annotations.Test;
+
+/**
+ * Unit test for the {@link CommonWords} class.
+ * @author Daniel Dyer
+ */
+public class CommonWordsTest
+{
+    /**
+     * Words are remembered once they are common, and stay common until their average
+     * falls to the limit.
+     */
+    @Test
+    public void testUpdate()
+    {
+        CommonWords words = new CommonWords();
+        Map<String, Double> fractions = new HashMap<String, Double>();
+        fractions.put("said", 0.9);
+        fractions.put("storm", 0.2);
+        words.update(fractions, 0.5);
+        assert words.isCommon("said", 0.5) : "Word that is common now should be common.";
+        assert !words.isCommon("storm", 0.5) : "Uncommon word should not be common.";
+        assert words.size() == 1 : "Uncommon words should not be remembered.";
+
+        // Average of 0.9 and 0.3 is still over the limit, even though 0.3 is not.
+        fractions.put("said", 0.3);
+        words.update(fractions, 0.5);
+        assert words.isCommon("said", 0.5) : "Word that is usually common should be common.";
+
+        // Average of 0.6 and 0 is under the limit, but not by enough to be forgotten.
+        fractions.clear();
+        words.update(fractions, 0.5);
+        assert !words.isCommon("said", 0.5) : "Word that is no longer common should not be common.";
+        assert words.size() == 1 : "Word should not have been forgotten yet.";
+        words.update(fractions, 0.5);
+        words.update(fractions, 0.5);
+        assert words.size() == 0 : "Word should have been forgotten.";
+    }
+
+
+    @Test
+    public void testSaveAndLoad() throws IOException
+    {
+        CommonWords words = new CommonWords();
+        Map<String, Double> fractions = new HashMap<String, Double>();
+        fractions.put("said", 0.9);
+        fractions.put("reuter", 1.0 / 3);
+        words.update(fractions, 0.25);
+        File file = File.createTempFile("common", ".txt");
+        try
+        {
+            words.save(file);
+            CommonWords loaded = CommonWords.load(file);
+            assert loaded.size() == 2 : "Wrong number of words: " + loaded.size();
+            assert loaded.isCommon("said", 0.89) : "Word should be common.";
+            assert !loaded.isCommon("said", 0.9) : "Word should not be common.";
+            assert loaded.isCommon("reuter", 0.333) : "Word should be common.";
+        }
+        finally
+        {
+            file.delete();
+        }
+    }
+}
@@ -0,0 +1,90 @@
+// ============================================================================
+//   Copyright 2009-2012 Daniel W. Dyer
+//
+//   Licensed under the Apache License, Version 2.0 (the "License");
+//   you may not use this file except in compliance with the License.
+//   You may obtain a copy of the License at
+//
+//       http://www.apache.org/licenses/LICENSE-2.0
+//
+//   Unless required by applicable law or agreed to in writing, software
+//   distributed under the License is distributed on an "AS IS" BASIS,
+//   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+//   See the License for the specific language governing permissions and
+//   limitations under the License.
+// ============================================================================
+package org.uncommons.zeitgeist;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Random;
+import org.testng.annotations.Test;
+
+/**
+ * Unit test for the {@link CountMinSketch} class.
+ * @author Daniel Dyer
+ */
+public class CountMinSketchTest
+{
+    /**
+     * With far more counters than words, collisions in every row are unlikely, so the
+     * counts should be exact.
+     */
+    @Test
+    public void testExactCounts()
+    {
+        CountMinSketch sketch = new CountMinSketch(1 << 16, 4);
+        sketch.add("dog");
+        sketch.add("cat");
+        sketch.add("dog");
+        assert sketch.estimate("dog") == 2 : "Wrong estimate: " + sketch.estimate("dog");
+        assert sketch.estimate("cat") == 1 : "Wrong estimate: " + sketch.estimate("cat");
+        assert sketch.estimate("rabbit") == 0 : "Wrong estimate: " + sketch.estimate("rabbit");
+    }
+
+
+    /**
+     * With more words than counters, estimates are too high, but never too low.
+     */
+    @Test
+    public void testNeverUnderestimates()
+    {
+        CountMinSketch sketch = new CountMinSketch(64, 3);
+        Map<String, Integer> counts = new HashMap<String, Integer>();
+        Random rng = new Random(23);
+        for (int i = 0; i < 5000; i++)
+        {
+            String word = "word" + rng.nextInt(500);
+            sketch.add(word);
+            Integer count = counts.get(word);
+            counts.put(word, count == null ? 1 : count + 1);
+        }
+        for (Map.Entry<String, Integer> entry : counts.entrySet())
+        {
+            assert sketch.estimate(entry.getKey()) >= entry.getValue() : "Underestimated " + entry.getKey();
+        }
+    }
+
+
+    @Test
+    public void testWidthRounding()
+    {
+        assert new CountMinSketch(1, 1).getWidth() == 1 : "Width should be 1.";
+        assert new CountMinSketch(1000, 1).getWidth() == 1024 : "Width should be rounded up to 1024.";
+        assert new CountMinSketch(1024, 1).getWidth() == 1024 : "Width should be 1024.";
+    }
+
+
+    @Test(expectedExceptions = IllegalArgumentException.class)
+    public void testInvalidWidth()
+    {
+        new CountMinSketch(0, 4);
+    }
+
+
+    @Test(expectedExceptions = IllegalArgumentException.class)
+    public void testInvalidDepth()
+    {
+        new CountMinSketch(1024, 0);
+    }
+}
@@ -0,0 +1,262 @@
+// ============================================================================
+//   Copyright 2009-2012 Daniel W. Dyer
+//
+//   Licensed under the Apache License, Version 2.0 (the "License");
+//   you may not use this file except in compliance with the License.
+//   You may obtain a copy of the License at
+//
+//       http://www.apache.org/licenses/LICENSE-2.0
+//
+//   Unless required by applicable law or agreed to in writing, software
+//   distributed under the License is distributed on an "AS IS" BASIS,
+//   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+//   See the License for the specific language governing permissions and
+//   limitations under the License.
+// ============================================================================
+package org.uncommons.zeitgeist;
+
+import java.util.List;
+import java.util.Random;
+import org.testng.annotations.Test;
+import org.uncommons.zeitgeist.termination.IterationCount;
+import org.uncommons.zeitgeist.termination.MinimumImprovement;
+import org.uncommons.zeitgeist.termination.UserAbort;
+
+/**
+ * Unit test for the {@link Factoriser} class.
+ * @author Daniel Dyer
+ */
+public class FactoriserTest
+{
+    /**
+     * The cost calculated from the small Gram matrices must match the cost calculated
+     * directly from the full product of the factors.
+     */
+    @Test
+    public void testCost()
+    {
+        Random rng = new Random(5);
+        double[][] values = new double[40][60];
+        for (double[] row : values)
+        {
+            for (int i = 0; i < 8; i++)
+            {
+                row[rng.nextInt(row.length)] = 1 + rng.nextInt(3);
+            }
+        }
+        SparseMatrix matrix = new SparseMatrix(values);
+        Matrix weights = new Matrix(40, 5, rng);
+        Matrix features = new Matrix(5, 60, rng);
+
+        double expected = matrix.diffCost(weights.multiply(features));
+        double cost = Factoriser.cost(matrix.squaredNorm(),
+                                      weights,
+                                      matrix.multiplyTransposeRight(features),
+                                      weights.multiplyTransposeLeft(weights),
+                                      features.multiplyTransposeRight(features));
+        assert Math.abs(cost - expected) < expected * 1e-9 : "Wrong cost: " + cost + ", expected " + expected;
+    }
+
+
+    @Test
+    public void testMultiplicativeUpdateSolver()
+    {
+        checkSolver(new MultiplicativeUpdateSolver());
+    }
+
+
+    @Test
+    public void testHALSSolver()
+    {
+        checkSolver(new HALSSolver());
+    }
+
+
+    @Test
+    public void testRandomAcolInitialiser()
+    {
+        Factoriser factoriser = new Factoriser();
+        factoriser.setInitialiser(new RandomAcolInitialiser());
+        factoriser.setSolver(new HALSSolver());
+        checkFactorisation(factoriser);
+    }
+
+
+    @Test
+    public void testNNDSVDInitialiser()
+    {
+        Factoriser factoriser = new Factoriser();
+        factoriser.setInitialiser(new NNDSVDInitialiser());
+        factoriser.setSolver(new HALSSolver());
+        checkFactorisation(factoriser);
+    }
+
+
+    @Test
+    public void testRestarts()
+    {
+        Factoriser factoriser = new Factoriser();
+        factoriser.setRestarts(4);
+        factoriser.setThreadCount(2);
+        checkFactorisation(factoriser);
+    }
+
+
+    @Test
+    public void testFloatStorage()
+    {
+        Factoriser factoriser = new Factoriser();
+        factoriser.setStorageMode(StorageMode.FLOAT);
+        factoriser.setSolver(new HALSSolver());
+        checkFactorisation(factoriser);
+        List<Matrix> factors = factoriser.factorise(new Matrix(new double[][]{{1, 2}, {3, 4}}), 1);
+        assert factors.get(0).getStorageMode() == StorageMode.FLOAT : "Weights should be stored as floats.";
+        assert factors.get(1).getStorageMode() == StorageMode.FLOAT : "Features should be stored as floats.";
+    }
+
+
+    @Test
+    public void testMappedStorage()
+    {
+        Factoriser factoriser = new Factoriser();
+        factoriser.setStorageMode(StorageMode.MAPPED);
+        factoriser.setSolver(new HALSSolver());
+        checkFactorisation(factoriser);
+        FactorisationResult result = factoriser.factoriseWithResult(new Matrix(20, 30, new Random(16)), 4);
+        assert result.getWeights().getStorageMode() == StorageMode.MAPPED : "Weights should be mapped.";
+        assert result.getFeatures().getStorageMode() == StorageMode.MAPPED : "Features should be mapped.";
+    }
+
+
+    @Test(expectedExceptions = IllegalArgumentException.class)
+    public void testInvalidRestarts()
+    {
+        new Factoriser().setRestarts(0);
+    }
+
+
+    @Test
+    public void testIterationCount()
+    {
+        Factoriser factoriser = new Factoriser();
+        IterationCount condition = new IterationCount(3);
+        factoriser.setTerminationConditions(new MinimumImprovement(0), condition);
+        FactorisationResult result = factoriser.factoriseWithResult(new Matrix(20, 30, new Random(15)), 4);
+        assert result.getIterations() == 3 : "Wrong number of iterations: " + result.getIterations();
+        assert result.getSatisfiedTerminationConditions().contains(condition) : "Wrong stop reason.";
+        assert result.getFeatures().getRowCount() == 4 : "Wrong number of features.";
+    }
+
+
+    /**
+     * An aborted factorisation should still return the (initial) factors.
+     */
+    @Test
+    public void testUserAbort()
+    {
+        Factoriser factoriser = new Factoriser();
+        UserAbort abort = new UserAbort();
+        abort.abort();
+        factoriser.setTerminationConditions(abort);
+        factoriser.setRestarts(2);
+        FactorisationResult result = factoriser.factoriseWithResult(new Matrix(20, 30, new Random(16)), 4);
+        assert result.getIterations() == 0 : "Wrong number of iterations: " + result.getIterations();
+        assert result.getSatisfiedTerminationConditions().contains(abort) : "Wrong stop reason.";
+    }
+
+
+    /**
+     * If an iteration makes the factorisation worse, the best factors found (rather than
+     * the last) must be returned.
+     */
+    @Test
+    public void testBestFactorsReturned()
+    {
+        // A solver that makes a few normal updates, then ruins the factors.
+        FactorisationSolver solver = new FactorisationSolver()
+        {
+            private final FactorisationSolver delegate = new MultiplicativeUpdateSolver();
+            private int updates = 0;
+
+            public void update(Matrix factor, Matrix numerator, Matrix gram, RowPartitioner partitioner)
+            {
+                if (++updates <= 6)
+                {
+                    delegate.update(factor, numerator, gram, partitioner);
+                }
+                else
+                {
+                    for (int row = 0; row < factor.getRowCount(); row++)
+                    {
+                        for (int column = 0; column < factor.getColumnCount(); column++)
+                        {
+                            factor.set(row, column, factor.get(row, column) * 3);
+                        }
+                    }
+                }
+            }
+        };
+        Factoriser factoriser = new Factoriser();
+        factoriser.setSolver(solver);
+        factoriser.setSeed(11);
+        factoriser.setTerminationConditions(new IterationCount(6));
+        IterationRecorder recorder = new IterationRecorder();
+        factoriser.addObserver(recorder);
+        Matrix matrix = new Matrix(20, 30, new Random(12));
+        FactorisationResult result = factoriser.factoriseWithResult(matrix, 4);
+
+        double lowestCost = Double.MAX_VALUE;
+        for (IterationData data : recorder.getIterations())
+        {
+            lowestCost = Math.min(lowestCost, data.getCost());
+        }
+        List<IterationData> iterations = recorder.getIterations();
+        double lastCost = iterations.get(iterations.size() - 1).getCost();
+        assert lastCost > lowestCost : "Last iteration should be worse than the best.";
+        assert result.getCost() == lowestCost : "Wrong cost: " + result.getCost() + ", expected " + lowestCost;
+        double cost = matrix.diffCost(result.getWeights().multiply(result.getFeatures()));
+        assert Math.abs(cost - lowestCost) < lowestCost * 1e-9 : "Factors don't match cost: " + cost;
+    }
+
+
+    /**
+     * Two factorisations with the same seed must give identical results.
+     */
+    @Test
+    public void testSeed()
+    {
+        Matrix matrix = new Matrix(20, 30, new Random(7));
+        Factoriser factoriser = new Factoriser();
+        factoriser.setSeed(42);
+        List<Matrix> factors1 = factoriser.factorise(matrix, 4);
+        List<Matrix> factors2 = factoriser.factorise(matrix, 4);
+        MatrixTest.assertEquals(factors1.get(0), factors2.get(0));
+        MatrixTest.assertEquals(factors1.get(1), factors2.get(1));
+    }
+
+
+    private void checkSolver(FactorisationSolver solver)
+    {
+        Factoriser factoriser = new Factoriser();
+        factoriser.setSolver(solver);
+        checkFactorisation(factoriser);
+    }
+
+
+    /**
+     * Factorise a matrix that is known to be the product of two small non-negative
+     * matrices and make sure that a close approximation is found.
+     */
+    private void checkFactorisation(Factoriser factoriser)
+    {
+        factoriser.setSeed(10);
+        Random rng = new Random(6);
+        Matrix matrix = new Matrix(30, 3, rng).multiply(new Matrix(3, 40, rng));
+        List<Matrix> factors = factoriser.factorise(matrix, 3);
+        double cost = matrix.diffCost(factors.get(0).multiply(factors.get(1)));
+        double norm = matrix.squaredNorm();
+        // The 1% stopping rule means that the multiplicative updates stop some way short
+        // of an exact fit, so allow a few percent.
+        assert cost < norm * 0.05 : "Poor approximation, error is " + cost + " (squared norm is " + norm + ")";
+    }
+}
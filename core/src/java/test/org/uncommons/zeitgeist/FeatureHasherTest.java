@@ -0,0 +1,72 @@
+// ============================================================================
+//   Copyright 2009-2012 Daniel W. Dyer
+//
+//   Licensed under the Apache License, Version 2.0 (the "License");
+//   you may not use this file except in compliance with the License.
+//   You may obtain a copy of the License at
+//
+//       http://www.apache.org/licenses/LICENSE-2.0
+//
+//   Unless required by applicable law or agreed to in writing, software
+//   distributed under the License is distributed on an "AS IS" BASIS,
+//   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+//   See the License for the specific language governing permissions and
+//   limitations under the License.
+// ============================================================================
+package org.uncommons.zeitgeist;
+
+import org.testng.annotations.Test;
+
+/**
+ * Unit test for the {@link FeatureHasher} class.
+ * @author Daniel Dyer
+ */
+public class FeatureHasherTest
+{
+    @Test
+    public void testColumns()
+    {
+        FeatureHasher hasher = new FeatureHasher(100);
+        int[] counts = new int[hasher.getColumnCount()];
+        for (int i = 0; i < 10000; i++)
+        {
+            int column = hasher.getColumn("word" + i);
+            assert column >= 0 && column < 100 : "Column out of range: " + column;
+            assert hasher.getColumn("word" + i) == column : "Same word should have the same column.";
+            ++counts[column];
+        }
+        // Columns should be used roughly evenly.
+        for (int count : counts)
+        {
+            assert count > 50 && count < 150 : "Uneven column use: " + count;
+        }
+    }
+
+
+    /**
+     * A word that accounts for most of a column's occurrences must be the word sampled,
+     * whether or not the column's samples are merged.
+     */
+    @Test
+    public void testSample()
+    {
+        FeatureHasher.Sample sample1 = new FeatureHasher.Sample(2);
+        sample1.add(0, "cat", 1);
+        sample1.add(0, "dog", 2);
+        sample1.add(0, "cat", 1);
+        sample1.add(0, "cow", 1);
+        FeatureHasher.Sample sample2 = new FeatureHasher.Sample(2);
+        sample2.add(0, "cat", 3);
+        sample2.add(1, "pig", 1);
+        sample1.merge(sample2);
+        assert sample1.getWord(0).equals("cat") : "Wrong word: " + sample1.getWord(0);
+        assert sample1.getWord(1).equals("pig") : "Wrong word: " + sample1.getWord(1);
+    }
+
+
+    @Test(expectedExceptions = IllegalArgumentException.class)
+    public void testInvalidColumnCount()
+    {
+        new FeatureHasher(0);
+    }
+}
@@ -0,0 +1,54 @@
+// ============================================================================
+//   Copyright 2009-2012 Daniel W. Dyer
+//
+//   Licensed under the Apache License, Version 2.0 (the "License");
+//   you may not use this file except in compliance with the License.
+//   You may obtain a copy of the License at
+//
+//       http://www.apache.org/licenses/LICENSE-2.0
+//
+//   Unless required by applicable law or agreed to in writing, software
+//   distributed under the License is distributed on an "AS IS" BASIS,
+//   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+//   See the License for the specific language governing permissions and
+//   limitations under the License.
+// ============================================================================
+package org.uncommons.zeitgeist;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.Arrays;
+import org.testng.annotations.Test;
+
+/**
+ * Unit test for the {@link FeatureModel} class.
+ * @author Daniel Dyer
+ */
+public class FeatureModelTest
+{
+    @Test
+    public void testSaveAndLoad() throws IOException
+    {
+        Matrix features = new Matrix(new double[][]{{0.1, 2, 0}, {1.0 / 3, 0, 7.5e-9}});
+        FeatureModel model = new FeatureModel(features, Arrays.asList("alpha", "beta", "gamma"));
+        File file = File.createTempFile("features", ".txt");
+        try
+        {
+            model.save(file);
+            FeatureModel loaded = FeatureModel.load(file);
+            assert loaded.getWords().equals(model.getWords()) : "Wrong words: " + loaded.getWords();
+            MatrixTest.assertEquals(loaded.getFeatures(), features);
+        }
+        finally
+        {
+            file.delete();
+        }
+    }
+
+
+    @Test(expectedExceptions = IllegalArgumentException.class)
+    public void testWrongNumberOfWords()
+    {
+        new FeatureModel(new Matrix(2, 3), Arrays.asList("alpha", "beta"));
+    }
+}
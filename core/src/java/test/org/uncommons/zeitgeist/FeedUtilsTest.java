@@ -43,6 +43,27 @@ public class FeedUtilsTest
     }
 
 
+    @Test
+    public void testAnglicise()
+    {
+        String text = "Caf\u00E9, caf&eacute;, caf&#233;, Stra\u00DFe, &Ntilde;and&uacute; &AElig;&#0233;";
+        String anglicised = FeedUtils.anglicise(text);
+        // Entities that aren't for accented letters (or aren't the exact forms) are left alone.
+        assert anglicised.equals("Cafe, cafe, cafe, Strasse, nandu &AElig;&#0233;")
+               : "Anglicised text is wrong: " + anglicised;
+    }
+
+
+    @Test
+    public void testExpandApostrophes()
+    {
+        String text = "rock&apos;n&#39;roll &amp c&eacute;; x&#;y&;z";
+        String expanded = FeedUtils.expandEntities(text);
+        // Incomplete entities are not replaced, anything that looks like an entity is.
+        assert expanded.equals("rock'n'roll &amp c ; x y z") : "Expanded text is wrong: " + expanded;
+    }
+
+
     @Test
     public void testStripPunctuation()
     {
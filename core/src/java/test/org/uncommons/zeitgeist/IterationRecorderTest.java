@@ -0,0 +1,117 @@
+// ============================================================================
+//   Copyright 2009-2012 Daniel W. Dyer
+//
+//   Licensed under the Apache License, Version 2.0 (the "License");
+//   you may not use this file except in compliance with the License.
+//   You may obtain a copy of the License at
+//
+//       http://www.apache.org/licenses/LICENSE-2.0
+//
+//   Unless required by applicable law or agreed to in writing, software
+//   distributed under the License is distributed on an "AS IS" BASIS,
+//   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+//   See the License for the specific language governing permissions and
+//   limitations under the License.
+// ============================================================================
+package org.uncommons.zeitgeist;
+
+import java.io.IOException;
+import java.io.StringWriter;
+import java.util.List;
+import java.util.Random;
+import org.testng.annotations.Test;
+import org.uncommons.zeitgeist.termination.IterationCount;
+import org.uncommons.zeitgeist.termination.MinimumImprovement;
+
+/**
+ * Unit test for the {@link IterationRecorder} class.
+ * @author Daniel Dyer
+ */
+public class IterationRecorderTest
+{
+    private static final int ITERATIONS = 5;
+
+    private IterationRecorder record()
+    {
+        Factoriser factoriser = new Factoriser();
+        factoriser.setTerminationConditions(new MinimumImprovement(0), new IterationCount(ITERATIONS));
+        IterationRecorder recorder = new IterationRecorder();
+        factoriser.addObserver(recorder);
+        factoriser.factorise(new Matrix(60, 80, new Random(17)), 4);
+        return recorder;
+    }
+
+
+    @Test
+    public void testRecording()
+    {
+        List<IterationData> iterations = record().getIterations();
+        // One entry for the initial state plus one per iteration.
+        assert iterations.size() == ITERATIONS + 1 : "Wrong number of entries: " + iterations.size();
+        for (int i = 0; i < iterations.size(); i++)
+        {
+            IterationData data = iterations.get(i);
+            assert data.getIteration() == i : "Wrong iteration number: " + data.getIteration();
+            if (i > 0)
+            {
+                assert data.getElapsedNanos() >= iterations.get(i - 1).getElapsedNanos() : "Time went backwards.";
+                // The amount depends on the JVM (and on coverage instrumentation), so all that
+                // can be checked is that it is either unknown or a plausible number.
+                assert data.getAllocatedBytes() >= -1 : "Invalid allocation: " + data.getAllocatedBytes();
+            }
+        }
+    }
+
+
+    /**
+     * Concurrent restarts are recorded together, so each iteration must identify its
+     * restart, and the iterations of each restart must be in order.
+     */
+    @Test
+    public void testRestarts() throws IOException
+    {
+        Factoriser factoriser = new Factoriser();
+        factoriser.setTerminationConditions(new MinimumImprovement(0), new IterationCount(ITERATIONS));
+        factoriser.setRestarts(3);
+        factoriser.setThreadCount(3);
+        IterationRecorder recorder = new IterationRecorder();
+        factoriser.addObserver(recorder);
+        factoriser.factorise(new Matrix(60, 80, new Random(18)), 4);
+        int[] nextIterations = new int[3];
+        for (IterationData data : recorder.getIterations())
+        {
+            assert data.getRestart() >= 0 && data.getRestart() < 3 : "Invalid restart: " + data.getRestart();
+            assert data.getIteration() == nextIterations[data.getRestart()] : "Iterations out of order.";
+            ++nextIterations[data.getRestart()];
+        }
+        assert nextIterations[0] > 0 && nextIterations[1] > 0 && nextIterations[2] > 0 : "Restart not recorded.";
+
+        StringWriter writer = new StringWriter();
+        recorder.writeCSV(writer);
+        assert writer.toString().startsWith("iteration,cost,improvement,elapsedNanos,allocatedBytes,restart\n")
+            : "Wrong header.";
+    }
+
+
+    @Test
+    public void testCSV() throws IOException
+    {
+        StringWriter writer = new StringWriter();
+        record().writeCSV(writer);
+        String[] lines = writer.toString().split("\n");
+        assert lines.length == ITERATIONS + 2 : "Wrong number of lines: " + lines.length;
+        assert lines[0].startsWith("iteration,cost") : "Missing header.";
+        assert lines[1].startsWith("0,") : "Wrong first iteration: " + lines[1];
+    }
+
+
+    @Test
+    public void testJSON() throws IOException
+    {
+        StringWriter writer = new StringWriter();
+        record().writeJSON(writer);
+        String json = writer.toString().trim();
+        assert json.startsWith("[") && json.endsWith("]") : "Not a JSON array.";
+        assert json.split("\"iteration\"").length == ITERATIONS + 2 : "Wrong number of objects.";
+    }
+}
@@ -0,0 +1,93 @@
+// ============================================================================
+//   Copyright 2009-2012 Daniel W. Dyer
+//
+//   Licensed under the Apache License, Version 2.0 (the "License");
+//   you may not use this file except in compliance with the License.
+//   You may obtain a copy of the License at
+//
+//       http://www.apache.org/licenses/LICENSE-2.0
+//
+//   Unless required by applicable law or agreed to in writing, software
+//   distributed under the License is distributed on an "AS IS" BASIS,
+//   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+//   See the License for the specific language governing permissions and
+//   limitations under the License.
+// ============================================================================
+package org.uncommons.zeitgeist;
+
+import java.util.Random;
+import org.testng.annotations.Test;
+
+/**
+ * Unit test for the {@link Kernels} class.  The unrolled kernels must agree with the
+ * scalar kernels to within the documented tolerance.
+ * @author Daniel Dyer
+ */
+public class KernelsTest
+{
+    @Test
+    public void testDot()
+    {
+        Random rng = new Random(1);
+        // Include lengths that are not multiples of the unrolling factor.
+        for (int length = 0; length < 1000; length += 37)
+        {
+            double[] a = randomValues(length + 3, rng);
+            double[] b = randomValues(length + 5, rng);
+            double scalar = Kernels.scalarDot(a, 3, b, 5, length);
+            double unrolled = Kernels.unrolledDot(a, 3, b, 5, length);
+            double magnitude = 0;
+            for (int i = 0; i < length; i++)
+            {
+                magnitude += Math.abs(a[i + 3] * b[i + 5]);
+            }
+            assertWithinTolerance(unrolled, scalar, length, magnitude);
+        }
+    }
+
+
+    @Test
+    public void testSquaredDistance()
+    {
+        Random rng = new Random(2);
+        for (int length = 0; length < 1000; length += 37)
+        {
+            double[] a = randomValues(length, rng);
+            double[] b = randomValues(length, rng);
+            double scalar = Kernels.scalarSquaredDistance(a, b, length);
+            double unrolled = Kernels.unrolledSquaredDistance(a, b, length);
+            assertWithinTolerance(unrolled, scalar, length, scalar);
+        }
+    }
+
+
+    @Test
+    public void testExactForSmallIntegers()
+    {
+        double[] a = {1, 2, 3, 4, 5, 6, 7};
+        double[] b = {7, 6, 5, 4, 3, 2, 1};
+        assert Kernels.scalarDot(a, 0, b, 0, a.length) == 84 : "Wrong scalar dot product.";
+        assert Kernels.unrolledDot(a, 0, b, 0, a.length) == 84 : "Wrong unrolled dot product.";
+        assert Kernels.scalarSquaredDistance(a, b, a.length) == 112 : "Wrong scalar distance.";
+        assert Kernels.unrolledSquaredDistance(a, b, a.length) == 112 : "Wrong unrolled distance.";
+    }
+
+
+    private static double[] randomValues(int length, Random rng)
+    {
+        double[] values = new double[length];
+        for (int i = 0; i < length; i++)
+        {
+            values[i] = rng.nextGaussian();
+        }
+        return values;
+    }
+
+
+    private static void assertWithinTolerance(double actual, double expected, int length, double magnitude)
+    {
+        double difference = Math.abs(actual - expected);
+        assert difference <= Kernels.TOLERANCE * length * magnitude
+            : "Difference " + difference + " exceeds tolerance for length " + length;
+    }
+}
@@ -16,6 +16,7 @@
 package org.uncommons.zeitgeist;
 
 import java.util.List;
+import java.util.Random;
 import org.testng.annotations.Test;
 
 /**
@@ -72,6 +73,154 @@ public class MatrixTest
     }
 
 
+    /**
+     * Splitting a multiplication between threads should not change the result at all.
+     */
+    @Test
+    public void testParallelMultiply()
+    {
+        Random rng = new Random(1);
+        Matrix a = new Matrix(120, 80, rng);
+        Matrix b = new Matrix(80, 60, rng);
+        Matrix c = new Matrix(50, 80, rng);
+        RowPartitioner partitioner = new RowPartitioner(4);
+        try
+        {
+            assertEquals(a.multiply(b, partitioner), a.multiply(b));
+            assertEquals(a.multiplyTransposeRight(c, partitioner), a.multiplyTransposeRight(c));
+            assertEquals(a.multiplyTransposeLeft(a, partitioner), a.multiplyTransposeLeft(a));
+        }
+        finally
+        {
+            partitioner.shutdown();
+        }
+    }
+
+
+    /**
+     * The tiled kernels must give exactly the same results as the naive algorithm, even
+     * when the matrices are large enough to be split into several tiles.
+     */
+    @Test
+    public void testTiledMultiply()
+    {
+        Random rng = new Random(3);
+        Matrix a = new Matrix(30, 300, rng);
+        Matrix b = new Matrix(300, 500, rng);
+        Matrix c = new Matrix(40, 300, rng);
+        Matrix d = new Matrix(30, 200, rng);
+
+        Matrix expected = new Matrix(30, 500);
+        for (int row = 0; row < 30; row++)
+        {
+            for (int column = 0; column < 500; column++)
+            {
+                double value = 0;
+                for (int i = 0; i < 300; i++)
+                {
+                    value += a.get(row, i) * b.get(i, column);
+                }
+                expected.set(row, column, value);
+            }
+        }
+        assertEquals(a.multiply(b), expected);
+        assertEquals(a.multiplyTransposeRight(c), a.multiply(c.transpose()));
+        assertEquals(a.multiplyTransposeLeft(d), a.transpose().multiply(d));
+    }
+
+
+    /**
+     * Products written into an existing matrix must overwrite, rather than accumulate
+     * onto, its previous contents.
+     */
+    @Test
+    public void testMultiplyIntoExistingMatrix()
+    {
+        Random rng = new Random(4);
+        Matrix a = new Matrix(20, 30, rng);
+        Matrix b = new Matrix(30, 10, rng);
+        Matrix c = new Matrix(10, 30, rng);
+        Matrix d = new Matrix(20, 10, rng);
+
+        Matrix result = new Matrix(20, 10, rng);
+        a.multiply(b, result, RowPartitioner.SERIAL);
+        assertEquals(result, a.multiply(b));
+        a.multiplyTransposeRight(c, result, RowPartitioner.SERIAL);
+        assertEquals(result, a.multiplyTransposeRight(c));
+
+        Matrix transposeResult = new Matrix(30, 10, rng);
+        a.multiplyTransposeLeft(d, transposeResult, RowPartitioner.SERIAL);
+        assertEquals(transposeResult, a.multiplyTransposeLeft(d));
+        Matrix transpose = new Matrix(30, 20, rng);
+        a.transpose(transpose);
+        assertEquals(transpose, a.transpose());
+    }
+
+
+    /**
+     * Float storage rounds each value to single precision, but otherwise the products must
+     * be the same as with double storage, whether or not the operands are stored the same way.
+     */
+    @Test
+    public void testFloatStorage()
+    {
+        Random rng = new Random(5);
+        Matrix a = new Matrix(20, 30, rng);
+        Matrix b = new Matrix(30, 10, rng);
+        Matrix floatA = copy(a, StorageMode.FLOAT);
+        Matrix floatB = copy(b, StorageMode.FLOAT);
+        assert floatA.getStorageMode() == StorageMode.FLOAT : "Wrong storage mode.";
+        assert floatA.multiply(floatB).getStorageMode() == StorageMode.FLOAT : "Product should be floats.";
+        assert floatA.transpose().getStorageMode() == StorageMode.FLOAT : "Transpose should be floats.";
+
+        // With values that are exactly representable as floats, reductions (which are
+        // accumulated in double precision) give identical results.
+        Matrix roundedA = copy(floatA, StorageMode.DOUBLE);
+        Matrix roundedB = copy(floatB, StorageMode.DOUBLE);
+        assertEquals(roundedA.multiply(floatB), roundedA.multiply(roundedB));
+        assert floatA.multiplyTransposeRight(floatA).get(3, 4)
+               == (float) roundedA.multiplyTransposeRight(roundedA).get(3, 4) : "Wrong transpose-right product.";
+        assert floatA.squaredNorm() == roundedA.squaredNorm() : "Wrong squared norm.";
+        assert floatA.diffCost(roundedA) == 0 : "Wrong cost.";
+        // Products written into float storage are accumulated in single precision.
+        Matrix expected = roundedA.multiply(roundedB);
+        assertClose(floatA.multiply(floatB), expected, 1e-6);
+        assertClose(floatA.multiply(roundedB), expected, 1e-6);
+        assertClose(floatA.multiplyTransposeLeft(floatA), roundedA.multiplyTransposeLeft(roundedA), 1e-6);
+
+        // Rounding to single precision loses only a little accuracy.
+        double error = a.diffCost(roundedA) / a.squaredNorm();
+        assert error > 0 && error < 1e-14 : "Wrong relative error: " + error;
+    }
+
+
+    @Test
+    public void testOffHeapStorage()
+    {
+        checkStorageMode(StorageMode.OFF_HEAP);
+        checkStorageMode(StorageMode.MAPPED);
+    }
+
+
+    /**
+     * On-heap storage is limited to the maximum size of a Java array.
+     */
+    @Test(expectedExceptions = IllegalArgumentException.class)
+    public void testTooLargeForHeap()
+    {
+        new Matrix(50000, 50000, StorageMode.DOUBLE);
+    }
+
+
+    @Test(expectedExceptions = IllegalArgumentException.class)
+    public void testMultiplyIntoWrongSizedMatrix()
+    {
+        Matrix a = new Matrix(2, 3);
+        Matrix b = new Matrix(3, 4);
+        a.multiply(b, new Matrix(2, 3), RowPartitioner.SERIAL);
+    }
+
+
     @Test
     public void testElementMultiplyAndDivide()
     {
@@ -113,4 +262,73 @@ public class MatrixTest
         assert features.getRowCount() == 2 : "Wrong number of features: " + features.getRowCount();
         assert weights.getColumnCount() == 2 : "Wrong number of weights: " + weights.getColumnCount();
     }
+
+
+    /**
+     * Products of matrices with the specified storage must be exactly the same as
+     * with double storage.
+     */
+    private static void checkStorageMode(StorageMode storageMode)
+    {
+        Random rng = new Random(9);
+        Matrix a = new Matrix(20, 30, rng);
+        Matrix b = new Matrix(30, 10, rng);
+        Matrix c = new Matrix(20, 10, rng);
+        Matrix storedA = copy(a, storageMode);
+        Matrix storedB = copy(b, storageMode);
+        assert storedA.getStorageMode() == storageMode : "Wrong storage mode: " + storedA.getStorageMode();
+        assert storedA.multiply(storedB).getStorageMode() == storageMode : "Wrong storage mode for product.";
+        assertEquals(storedA.multiply(storedB), a.multiply(b));
+        assertEquals(storedA.multiply(b), a.multiply(b));
+        assertEquals(storedA.multiplyTransposeRight(storedA), a.multiplyTransposeRight(a));
+        assertEquals(storedA.multiplyTransposeLeft(copy(c, storageMode)), a.multiplyTransposeLeft(c));
+        assertEquals(storedA.transpose(), a.transpose());
+        assert storedA.squaredNorm() == a.squaredNorm() : "Wrong squared norm.";
+        assert storedA.diffCost(a) == 0 : "Wrong cost.";
+    }
+
+
+    private static void assertClose(Matrix actual, Matrix expected, double relativeTolerance)
+    {
+        assert actual.getRowCount() == expected.getRowCount() : "Wrong number of rows: " + actual.getRowCount();
+        assert actual.getColumnCount() == expected.getColumnCount() : "Wrong number of columns: " + actual.getColumnCount();
+        for (int row = 0; row < expected.getRowCount(); row++)
+        {
+            for (int column = 0; column < expected.getColumnCount(); column++)
+            {
+                double difference = Math.abs(actual.get(row, column) - expected.get(row, column));
+                assert difference <= Math.abs(expected.get(row, column)) * relativeTolerance
+                       : "Wrong value at (" + row + ", " + column + "): " + actual.get(row, column);
+            }
+        }
+    }
+
+
+    private static Matrix copy(Matrix matrix, StorageMode storageMode)
+    {
+        Matrix copy = new Matrix(matrix.getRowCount(), matrix.getColumnCount(), storageMode);
+        for (int row = 0; row < matrix.getRowCount(); row++)
+        {
+            for (int column = 0; column < matrix.getColumnCount(); column++)
+            {
+                copy.set(row, column, matrix.get(row, column));
+            }
+        }
+        return copy;
+    }
+
+
+    static void assertEquals(Matrix actual, Matrix expected)
+    {
+        assert actual.getRowCount() == expected.getRowCount() : "Wrong number of rows: " + actual.getRowCount();
+        assert actual.getColumnCount() == expected.getColumnCount() : "Wrong number of columns: " + actual.getColumnCount();
+        for (int row = 0; row < expected.getRowCount(); row++)
+        {
+            for (int column = 0; column < expected.getColumnCount(); column++)
+            {
+                assert actual.get(row, column) == expected.get(row, column)
+                       : "Wrong value at (" + row + ", " + column + "): " + actual.get(row, column);
+            }
+        }
+    }
 }
@@ -0,0 +1,110 @@
+// ============================================================================
+//   Copyright 2009-2012 Daniel W. Dyer
+//
+//   Licensed under the Apache License, Version 2.0 (the "License");
+//   you may not use this file except in compliance with the License.
+//   You may obtain a copy of the License at
+//
+//       http://www.apache.org/licenses/LICENSE-2.0
+//
+//   Unless required by applicable law or agreed to in writing, software
+//   distributed under the License is distributed on an "AS IS" BASIS,
+//   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+//   See the License for the specific language governing permissions and
+//   limitations under the License.
+// ============================================================================
+package org.uncommons.zeitgeist;
+
+import java.util.Random;
+import org.testng.annotations.Test;
+
+/**
+ * Unit test for the {@link NNDSVDInitialiser} class.
+ * @author Daniel Dyer
+ */
+public class NNDSVDInitialiserTest
+{
+    @Test
+    public void testEigenDecomposition()
+    {
+        Matrix matrix = new Matrix(new double[][]{{4, 1, 0}, {1, 3, 1}, {0, 1, 2}});
+        double[][] eigenvectors = new double[3][3];
+        double[] eigenvalues = NNDSVDInitialiser.eigenDecomposition(matrix, eigenvectors);
+        // Check that Av = lambda.v for each eigenpair.
+        for (int i = 0; i < 3; i++)
+        {
+            for (int row = 0; row < 3; row++)
+            {
+                double av = 0;
+                for (int column = 0; column < 3; column++)
+                {
+                    av += matrix.get(row, column) * eigenvectors[column][i];
+                }
+                double expected = eigenvalues[i] * eigenvectors[row][i];
+                assert Math.abs(av - expected) < 1e-9 : "Not an eigenpair: " + eigenvalues[i];
+            }
+        }
+    }
+
+
+    /**
+     * A rank-one non-negative matrix is reproduced exactly by its leading singular
+     * triplet, so a single NNDSVD feature should fit it without any iterations.
+     */
+    @Test
+    public void testRankOneMatrix()
+    {
+        Random rng = new Random(8);
+        Matrix matrix = new Matrix(25, 1, rng).multiply(new Matrix(1, 15, rng));
+        Matrix weights = new Matrix(25, 1);
+        Matrix featuresTranspose = new Matrix(15, 1);
+        new NNDSVDInitialiser().initialise(matrix, weights, featuresTranspose, rng, RowPartitioner.SERIAL);
+        double cost = matrix.diffCost(weights.multiply(featuresTranspose.transpose()));
+        assert cost < matrix.squaredNorm() * 1e-12 : "Poor approximation, error is " + cost;
+    }
+
+
+    /**
+     * A matrix with no columns (e.g. if every word was discarded) has no mean value,
+     * so the factors must be left as zeros rather than filled with NaN.
+     */
+    @Test
+    public void testEmptyMatrix()
+    {
+        checkEmptyMatrix(new NNDSVDInitialiser());
+        checkEmptyMatrix(new RandomAcolInitialiser());
+    }
+
+
+    private void checkEmptyMatrix(FactorisationInitialiser initialiser)
+    {
+        SparseMatrix matrix = new SparseMatrix(3, 0, new int[4], new int[0], new double[0]);
+        Matrix weights = new Matrix(3, 2);
+        Matrix featuresTranspose = new Matrix(0, 2);
+        initialiser.initialise(matrix, weights, featuresTranspose, new Random(10), RowPartitioner.SERIAL);
+        for (int row = 0; row < weights.getRowCount(); row++)
+        {
+            for (int column = 0; column < weights.getColumnCount(); column++)
+            {
+                assert weights.get(row, column) == 0 : "Weights should be zero: " + weights.get(row, column);
+            }
+        }
+    }
+
+
+    @Test
+    public void testOrthonormalise()
+    {
+        Matrix matrix = new Matrix(10, 4, new Random(9));
+        NNDSVDInitialiser.orthonormalise(matrix);
+        Matrix gram = matrix.multiplyTransposeLeft(matrix);
+        for (int row = 0; row < 4; row++)
+        {
+            for (int column = 0; column < 4; column++)
+            {
+                double expected = row == column ? 1 : 0;
+                assert Math.abs(gram.get(row, column) - expected) < 1e-12 : "Columns are not orthonormal.";
+            }
+        }
+    }
+}
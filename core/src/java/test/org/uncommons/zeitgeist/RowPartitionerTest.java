@@ -0,0 +1,85 @@
+// ============================================================================
+//   Copyright 2009-2012 Daniel W. Dyer
+//
+//   Licensed under the Apache License, Version 2.0 (the "License");
+//   you may not use this file except in compliance with the License.
+//   You may obtain a copy of the License at
+//
+//       http://www.apache.org/licenses/LICENSE-2.0
+//
+//   Unless required by applicable law or agreed to in writing, software
+//   distributed under the License is distributed on an "AS IS" BASIS,
+//   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+//   See the License for the specific language governing permissions and
+//   limitations under the License.
+// ============================================================================
+package org.uncommons.zeitgeist;
+
+import java.util.concurrent.atomic.AtomicIntegerArray;
+import org.testng.annotations.Test;
+
+/**
+ * Unit test for the {@link RowPartitioner} class.
+ * @author Daniel Dyer
+ */
+public class RowPartitionerTest
+{
+    /**
+     * Every row should be processed exactly once, regardless of how the rows are split.
+     */
+    @Test
+    public void testAllRowsProcessedOnce()
+    {
+        final AtomicIntegerArray counts = new AtomicIntegerArray(101);
+        RowPartitioner partitioner = new RowPartitioner(4);
+        try
+        {
+            partitioner.execute(counts.length(), Long.MAX_VALUE, new RowPartitioner.RowTask()
+            {
+                public void processRows(int fromRow, int toRow)
+                {
+                    for (int row = fromRow; row < toRow; row++)
+                    {
+                        counts.incrementAndGet(row);
+                    }
+                }
+            });
+        }
+        finally
+        {
+            partitioner.shutdown();
+        }
+        for (int row = 0; row < counts.length(); row++)
+        {
+            assert counts.get(row) == 1 : "Row " + row + " processed " + counts.get(row) + " times.";
+        }
+    }
+
+
+    @Test(expectedExceptions = IllegalStateException.class)
+    public void testTaskFailure()
+    {
+        RowPartitioner partitioner = new RowPartitioner(2);
+        try
+        {
+            partitioner.execute(10, Long.MAX_VALUE, new RowPartitioner.RowTask()
+            {
+                public void processRows(int fromRow, int toRow)
+                {
+                    throw new UnsupportedOperationException("Failed deliberately.");
+                }
+            });
+        }
+        finally
+        {
+            partitioner.shutdown();
+        }
+    }
+
+
+    @Test(expectedExceptions = IllegalArgumentException.class)
+    public void testInvalidThreadCount()
+    {
+        new RowPartitioner(0);
+    }
+}
@@ -0,0 +1,140 @@
+// ============================================================================
+//   Copyright 2009-2012 Daniel W. Dyer
+//
+//   Licensed under the Apache License, Version 2.0 (the "License");
+//   you may not use this file except in compliance with the License.
+//   You may obtain a copy of the License at
+//
+//       http://www.apache.org/licenses/LICENSE-2.0
+//
+//   Unless required by applicable law or agreed to in writing, software
+//   distributed under the License is distributed on an "AS IS" BASIS,
+//   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+//   See the License for the specific language governing permissions and
+//   limitations under the License.
+// ============================================================================
+package org.uncommons.zeitgeist;
+
+import java.util.List;
+import java.util.Random;
+import org.testng.annotations.Test;
+
+/**
+ * Unit test for the {@link SparseMatrix} type.  Results are checked against the
+ * equivalent dense {@link Matrix} operations.
+ * @author Daniel Dyer
+ */
+public class SparseMatrixTest
+{
+    private static final double[][] VALUES = {{0, 2, 0, 1}, {0, 0, 0, 0}, {3, 0, 0, 4}};
+
+
+    @Test
+    public void testGet()
+    {
+        SparseMatrix matrix = new SparseMatrix(VALUES);
+        assert matrix.getRowCount() == 3 : "Wrong number of rows: " + matrix.getRowCount();
+        assert matrix.getColumnCount() == 4 : "Wrong number of columns: " + matrix.getColumnCount();
+        assert matrix.getNonZeroCount() == 4 : "Wrong number of non-zero values: " + matrix.getNonZeroCount();
+        for (int row = 0; row < VALUES.length; row++)
+        {
+            for (int column = 0; column < VALUES[row].length; column++)
+            {
+                assert matrix.get(row, column) == VALUES[row][column] : "Wrong value at (" + row + ", " + column + ")";
+            }
+        }
+    }
+
+
+    @Test
+    public void testMultiplyTransposeRight()
+    {
+        Matrix m = new Matrix(new double[][]{{1, 1, 0, 2}, {5, 1, -1, 0}});
+        Matrix expected = new Matrix(VALUES).multiplyTransposeRight(m);
+        Matrix product = new SparseMatrix(VALUES).multiplyTransposeRight(m);
+        MatrixTest.assertEquals(product, expected);
+    }
+
+
+    @Test
+    public void testPremultiplyTranspose()
+    {
+        Matrix m = new Matrix(new double[][]{{2, 1}, {0, 7}, {-1, 3}});
+        Matrix expected = new Matrix(VALUES).premultiplyTranspose(m);
+        Matrix product = new SparseMatrix(VALUES).premultiplyTranspose(m);
+        MatrixTest.assertEquals(product, expected);
+    }
+
+
+    @Test
+    public void testMultiply()
+    {
+        Matrix m = new Matrix(new double[][]{{1, 5}, {1, 1}, {0, -1}, {2, 0}});
+        Matrix expected = new Matrix(VALUES).multiply(m);
+        Matrix product = new Matrix(3, 2, new Random(1));
+        new SparseMatrix(VALUES).multiply(m, product, RowPartitioner.SERIAL);
+        MatrixTest.assertEquals(product, expected);
+    }
+
+
+    @Test
+    public void testParallelProducts()
+    {
+        Random rng = new Random(2);
+        double[][] values = new double[300][200];
+        for (double[] row : values)
+        {
+            for (int i = 0; i < 20; i++)
+            {
+                row[rng.nextInt(row.length)] = 1 + rng.nextInt(3);
+            }
+        }
+        SparseMatrix matrix = new SparseMatrix(values);
+        Matrix features = new Matrix(40, 200, rng);
+        Matrix weights = new Matrix(300, 40, rng);
+        RowPartitioner partitioner = new RowPartitioner(3);
+        try
+        {
+            MatrixTest.assertEquals(matrix.multiplyTransposeRight(features, partitioner),
+                                    matrix.multiplyTransposeRight(features));
+            MatrixTest.assertEquals(matrix.premultiplyTranspose(weights, partitioner),
+                                    matrix.premultiplyTranspose(weights));
+        }
+        finally
+        {
+            partitioner.shutdown();
+        }
+    }
+
+
+    @Test
+    public void testDiffCost()
+    {
+        Matrix other = new Matrix(new double[][]{{1, 1, 1, 1}, {2, 2, 2, 2}, {3, 3, 3, 3}});
+        double expected = new Matrix(VALUES).diffCost(other);
+        double cost = new SparseMatrix(VALUES).diffCost(other);
+        assert cost == expected : "Wrong cost: " + cost + ", expected " + expected;
+    }
+
+
+    @Test
+    public void testSquaredNorm()
+    {
+        double norm = new SparseMatrix(VALUES).squaredNorm();
+        assert norm == 30 : "Wrong squared norm: " + norm;
+    }
+
+
+    @Test
+    public void testFactorise()
+    {
+        SparseMatrix a = new SparseMatrix(VALUES);
+        List<Matrix> factors = new Factoriser().factorise(a, 2);
+        Matrix weights = factors.get(0);
+        Matrix features = factors.get(1);
+        assert weights.getRowCount() == 3 : "Wrong number of rows: " + weights.getRowCount();
+        assert weights.getColumnCount() == 2 : "Wrong number of weights: " + weights.getColumnCount();
+        assert features.getRowCount() == 2 : "Wrong number of features: " + features.getRowCount();
+        assert features.getColumnCount() == 4 : "Wrong number of columns: " + features.getColumnCount();
+    }
+}
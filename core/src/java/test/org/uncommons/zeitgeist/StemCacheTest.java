@@ -0,0 +1,110 @@
+// ============================================================================
+//   Copyright 2009-2012 Daniel W. Dyer
+//
+//   Licensed under the Apache License, Version 2.0 (the "License");
+//   you may not use this file except in compliance with the License.
+//   You may obtain a copy of the License at
+//
+//       http://www.apache.org/licenses/LICENSE-2.0
+//
+//   Unless required by applicable law or agreed to in writing, software
+//   distributed under the License is distributed on an "AS IS" BASIS,
+//   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+//   See the License for the specific language governing permissions and
+//   limitations under the License.
+// ============================================================================
+package org.uncommons.zeitgeist;
+
+import org.testng.annotations.Test;
+
+/**
+ * Unit test for the {@link StemCache} class.
+ * @author Daniel Dyer
+ */
+public class StemCacheTest
+{
+    @Test
+    public void testHitsAndMisses()
+    {
+        StemCache cache = new StemCache(10);
+        assert cache.getStem("meetings").equals("meet") : "Wrong stem.";
+        assert cache.getStem("meetings").equals("meet") : "Wrong stem.";
+        assert cache.getStem("cats").equals("cat") : "Wrong stem.";
+        assert cache.getHitCount() == 1 : "Wrong number of hits: " + cache.getHitCount();
+        assert cache.getMissCount() == 2 : "Wrong number of misses: " + cache.getMissCount();
+        assert cache.size() == 2 : "Wrong size: " + cache.size();
+    }
+
+
+    /**
+     * Words may be looked up from a buffer that is later overwritten, so the cache must
+     * not keep a reference to it.
+     */
+    @Test
+    public void testCharArrayLookUp()
+    {
+        StemCache cache = new StemCache(10);
+        char[] buffer = "the meetings".toCharArray();
+        assert cache.getStem(buffer, 4, 8).equals("meet") : "Wrong stem.";
+        "the cats ran".getChars(0, 12, buffer, 0);
+        assert cache.getStem(buffer, 4, 4).equals("cat") : "Wrong stem.";
+        assert cache.getStem("meetings").equals("meet") : "Wrong stem.";
+        assert cache.getHitCount() == 1 : "Wrong number of hits: " + cache.getHitCount();
+        assert cache.getMissCount() == 2 : "Wrong number of misses: " + cache.getMissCount();
+    }
+
+
+    @Test
+    public void testMaxSize()
+    {
+        StemCache cache = new StemCache(3);
+        for (String word : new String[]{"cats", "dogs", "birds", "fish", "cats"})
+        {
+            cache.getStem(word);
+            assert cache.size() <= 3 : "Cache is too big: " + cache.size();
+        }
+        // "cats" was forgotten when the cache filled up.
+        assert cache.getMissCount() == 5 : "Wrong number of misses: " + cache.getMissCount();
+    }
+
+
+    /**
+     * Threads adding words at the same time can only overshoot the limit by the few
+     * words being added at that moment, rather than by a drifting count.
+     */
+    @Test
+    public void testConcurrentMaxSize() throws InterruptedException
+    {
+        final StemCache cache = new StemCache(50);
+        Thread[] threads = new Thread[4];
+        for (int i = 0; i < threads.length; i++)
+        {
+            final int thread = i;
+            threads[i] = new Thread()
+            {
+                @Override
+                public void run()
+                {
+                    for (int j = 0; j < 2000; j++)
+                    {
+                        cache.getStem("word" + thread + "x" + j);
+                    }
+                }
+            };
+            threads[i].start();
+        }
+        for (Thread thread : threads)
+        {
+            thread.join();
+        }
+        assert cache.size() <= 50 + threads.length : "Cache is too big: " + cache.size();
+        assert cache.getMissCount() == 8000 : "Wrong number of misses: " + cache.getMissCount();
+    }
+
+
+    @Test(expectedExceptions = IllegalArgumentException.class)
+    public void testInvalidMaxSize()
+    {
+        new StemCache(0);
+    }
+}
@@ -0,0 +1,79 @@
+// ============================================================================
+//   Copyright 2009-2012 Daniel W. Dyer
+//
+//   Licensed under the Apache License, Version 2.0 (the "License");
+//   you may not use this file except in compliance with the License.
+//   You may obtain a copy of the License at
+//
+//       http://www.apache.org/licenses/LICENSE-2.0
+//
+//   Unless required by applicable law or agreed to in writing, software
+//   distributed under the License is distributed on an "AS IS" BASIS,
+//   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+//   See the License for the specific language governing permissions and
+//   limitations under the License.
+// ============================================================================
+package org.uncommons.zeitgeist;
+
+import org.testng.annotations.Test;
+
+/**
+ * Unit test for the {@link Stemmer} class.
+ * @author Daniel Dyer
+ */
+public class StemmerTest
+{
+    private static final String[] WORDS = {"caresses", "ponies", "cats", "meetings", "running", "hopeful"};
+    private static final String[] STEMS = {"caress", "poni", "cat", "meet", "run", "hope"};
+
+
+    /**
+     * The same stemmer is used for each word, so this also checks that no state is
+     * carried over from one word to the next.
+     */
+    @Test
+    public void testStems()
+    {
+        Stemmer stemmer = new Stemmer();
+        for (int i = 0; i < WORDS.length; i++)
+        {
+            String stem = stemmer.stem(WORDS[i]);
+            assert stem.equals(STEMS[i]) : "Wrong stem for " + WORDS[i] + ": " + stem;
+        }
+    }
+
+
+    @Test
+    public void testArrayRange()
+    {
+        Stemmer stemmer = new Stemmer();
+        char[] chars = "the meetings were running late".toCharArray();
+        String stem = stemmer.stem(chars, 4, 8);
+        assert stem.equals("meet") : "Wrong stem: " + stem;
+        stem = stemmer.stem(chars, 18, 7);
+        assert stem.equals("run") : "Wrong stem: " + stem;
+        assert new String(chars).equals("the meetings were running late") : "Input should not be modified.";
+    }
+
+
+    /**
+     * Words longer than the initial buffer must be handled, and the stemmer must still
+     * work after being reset.
+     */
+    @Test
+    public void testLongWord()
+    {
+        Stemmer stemmer = new Stemmer();
+        StringBuilder word = new StringBuilder();
+        for (int i = 0; i < 20; i++)
+        {
+            word.append("cat");
+        }
+        word.append('s');
+        String stem = stemmer.stem(word);
+        assert stem.equals(word.substring(0, 60)) : "Wrong stem: " + stem;
+        stemmer.reset();
+        stem = stemmer.stem("cats");
+        assert stem.equals("cat") : "Wrong stem: " + stem;
+    }
+}
@@ -0,0 +1,127 @@
+// ============================================================================
+//   Copyright 2009-2012 Daniel W. Dyer
+//
+//   Licensed under the Apache License, Version 2.0 (the "License");
+//   you may not use this file except in compliance with the License.
+//   You may obtain a copy of the License at
+//
+//       http://www.apache.org/licenses/LICENSE-2.0
+//
+//   Unless required by applicable law or agreed to in writing, software
+//   distributed under the License is distributed on an "AS IS" BASIS,
+//   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+//   See the License for the specific language governing permissions and
+//   limitations under the License.
+// ============================================================================
+package org.uncommons.zeitgeist;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Random;
+import java.util.Set;
+import org.testng.annotations.Test;
+
+/**
+ * Unit test for the {@link StopWords} class.
+ * @author Daniel Dyer
+ */
+public class StopWordsTest
+{
+    @Test
+    public void testDefaultWords()
+    {
+        StopWords words = StopWords.getDefault();
+        assert words.size() > 200 : "Default list is too short: " + words.size();
+        for (String word : new String[]{"the", "it", "aren't", "you're"})
+        {
+            assert words.contains(word) : "Should contain " + word;
+        }
+        for (String word : new String[]{"football", "th", "thee", "", "The"})
+        {
+            assert !words.contains(word) : "Should not contain " + word;
+        }
+    }
+
+
+    @Test
+    public void testArrayRange()
+    {
+        StopWords words = new StopWords(Arrays.asList("the", "cat"));
+        char[] chars = "the cat sat".toCharArray();
+        assert words.contains(chars, 0, 3) : "Should contain \"the\".";
+        assert words.contains(chars, 4, 3) : "Should contain \"cat\".";
+        assert !words.contains(chars, 8, 3) : "Should not contain \"sat\".";
+        assert !words.contains(chars, 4, 2) : "Should not contain \"ca\".";
+        assert !words.contains(chars, 3, 0) : "Should not contain empty word.";
+    }
+
+
+    /**
+     * Every one of a large number of words must get a slot of its own.
+     */
+    @Test
+    public void testManyWords()
+    {
+        Random rng = new Random(21);
+        Set<String> included = new HashSet<String>();
+        List<String> excluded = new ArrayList<String>();
+        while (included.size() < 20000)
+        {
+            included.add(randomWord(rng));
+        }
+        for (int i = 0; i < 20000; i++)
+        {
+            String word = randomWord(rng);
+            if (!included.contains(word))
+            {
+                excluded.add(word);
+            }
+        }
+        StopWords words = new StopWords(included);
+        assert words.size() == included.size() : "Wrong size: " + words.size();
+        for (String word : included)
+        {
+            assert words.contains(word) : "Should contain " + word;
+        }
+        for (String word : excluded)
+        {
+            assert !words.contains(word) : "Should not contain " + word;
+        }
+    }
+
+
+    @Test
+    public void testRead() throws IOException
+    {
+        byte[] bytes = "  fish\n\ncaf\u00E9\nfish \n".getBytes("UTF-8");
+        StopWords words = StopWords.read(new ByteArrayInputStream(bytes));
+        assert words.size() == 2 : "Wrong size: " + words.size();
+        assert words.contains("fish") : "Should contain \"fish\".";
+        assert words.contains("caf\u00E9") : "Should contain \"caf\u00E9\".";
+    }
+
+
+    @Test
+    public void testEmpty()
+    {
+        StopWords words = new StopWords(Collections.<String>emptyList());
+        assert words.size() == 0 : "Should be empty.";
+        assert !words.contains("the") : "Should not contain anything.";
+    }
+
+
+    private String randomWord(Random rng)
+    {
+        char[] word = new char[1 + rng.nextInt(8)];
+        for (int i = 0; i < word.length; i++)
+        {
+            word[i] = (char) ('a' + rng.nextInt(26));
+        }
+        return new String(word);
+    }
+}
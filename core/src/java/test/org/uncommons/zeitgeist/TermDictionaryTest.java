@@ -0,0 +1,68 @@
+// ============================================================================
+//   Copyright 2009-2012 Daniel W. Dyer
+//
+//   Licensed under the Apache License, Version 2.0 (the "License");
+//   you may not use this file except in compliance with the License.
+//   You may obtain a copy of the License at
+//
+//       http://www.apache.org/licenses/LICENSE-2.0
+//
+//   Unless required by applicable law or agreed to in writing, software
+//   distributed under the License is distributed on an "AS IS" BASIS,
+//   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+//   See the License for the specific language governing permissions and
+//   limitations under the License.
+// ============================================================================
+package org.uncommons.zeitgeist;
+
+import org.testng.annotations.Test;
+
+/**
+ * Unit test for the {@link TermDictionary} class.
+ * @author Daniel Dyer
+ */
+public class TermDictionaryTest
+{
+    @Test
+    public void testIds()
+    {
+        TermDictionary dictionary = new TermDictionary();
+        assert dictionary.getId("dog") == 0 : "First term should have ID 0.";
+        assert dictionary.getId("cat") == 1 : "Second term should have ID 1.";
+        assert dictionary.getId("dog") == 0 : "Repeated term should have the same ID.";
+        assert dictionary.size() == 2 : "Wrong size: " + dictionary.size();
+        assert dictionary.getTerm(1).equals("cat") : "Wrong term: " + dictionary.getTerm(1);
+    }
+
+
+    @Test
+    public void testConcurrentIds() throws InterruptedException
+    {
+        final TermDictionary dictionary = new TermDictionary();
+        Thread[] threads = new Thread[4];
+        for (int t = 0; t < threads.length; t++)
+        {
+            threads[t] = new Thread()
+            {
+                @Override
+                public void run()
+                {
+                    for (int i = 0; i < 1000; i++)
+                    {
+                        dictionary.getId("term" + i);
+                    }
+                }
+            };
+            threads[t].start();
+        }
+        for (Thread thread : threads)
+        {
+            thread.join();
+        }
+        assert dictionary.size() == 1000 : "Wrong size: " + dictionary.size();
+        for (int id = 0; id < dictionary.size(); id++)
+        {
+            assert dictionary.getId(dictionary.getTerm(id)) == id : "Inconsistent ID for " + dictionary.getTerm(id);
+        }
+    }
+}
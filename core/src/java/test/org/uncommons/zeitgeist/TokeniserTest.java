@@ -0,0 +1,142 @@
+// ============================================================================
+//   Copyright 2009-2012 Daniel W. Dyer
+//
+//   Licensed under the Apache License, Version 2.0 (the "License");
+//   you may not use this file except in compliance with the License.
+//   You may obtain a copy of the License at
+//
+//       http://www.apache.org/licenses/LICENSE-2.0
+//
+//   Unless required by applicable law or agreed to in writing, software
+//   distributed under the License is distributed on an "AS IS" BASIS,
+//   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+//   See the License for the specific language governing permissions and
+//   limitations under the License.
+// ============================================================================
+package org.uncommons.zeitgeist;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.URL;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.Scanner;
+import org.testng.annotations.Test;
+
+/**
+ * Unit test for the {@link Tokeniser} class.  The tokeniser must find exactly the same
+ * words as {@link FeedUtils#stripMarkUpAndPunctuation(String)}, so each test compares
+ * the two.
+ * @author Daniel Dyer
+ */
+public class TokeniserTest
+{
+    private static final String[] FEEDS = {"express.rss", "guardian.rss", "newadventuresinsoftware.rss", "telegraph.rss"};
+
+    private final Tokeniser tokeniser = new Tokeniser();
+
+
+    @Test
+    public void testFeedArticles() throws Exception
+    {
+        for (String feed : FEEDS)
+        {
+            URL url = TokeniserTest.class.getResource(feed);
+            for (Article article : new FeedDownloadTask(new FileURLFeedFetcher(), url, false).call())
+            {
+                checkTokens(article.getHeadline());
+                checkTokens(article.getText());
+            }
+        }
+    }
+
+
+    /**
+     * The raw XML has far more mark-up and entities than the article text.
+     */
+    @Test
+    public void testFeedMarkUp() throws IOException
+    {
+        for (String feed : FEEDS)
+        {
+            InputStream stream = TokeniserTest.class.getResourceAsStream(feed);
+            try
+            {
+                checkTokens(new Scanner(stream, "UTF-8").useDelimiter("\\A").next());
+            }
+            finally
+            {
+                stream.close();
+            }
+        }
+    }
+
+
+    /**
+     * Cases where the order in which the regular expressions consume characters matters.
+     */
+    @Test
+    public void testEdgeCases()
+    {
+        checkTokens("");
+        checkTokens("   ");
+        checkTokens("1,000,000 and 1,2,3 and 1,.5 and 3.14");
+        checkTokens("a' 'b 'quoted' - dash- -dash x--y");
+        checkTokens("'start and end'");
+        checkTokens("-start and end-");
+        checkTokens("end'\u2028");
+        checkTokens("Gerrard's goal, GERRARD'S GOAL and Gerrard\u2019s goal's");
+        checkTokens("<b>bold</b> 1 < 2 and 3 > 2 <unclosed\n>");
+        checkTokens("caf&eacute; caf&#233; caf\u00E9 stra&szlig;e &amp; rock&apos;n&#39;roll &pound;5 &#;");
+        checkTokens("&caf\u00E9; &\u00E9; &&eacute;;");
+        checkTokens("A \u0130stanbul \u039F\u0394\u03A5\u03A3\u03A3\u0395\u03A5\u03A3 \u00C6sop");
+        checkTokens("\u0001control\u0001 inside\u0001word \u00A0nbsp");
+    }
+
+
+    /**
+     * Random combinations of the characters and sequences that each stage treats specially.
+     */
+    @Test
+    public void testRandomText()
+    {
+        String[] fragments = {"a", "B", "s", "S", "1", "2", " ", "  ", "\n", "\t", ",", ".", "'", "-", "\u2019",
+                              ";", "&", "#", "<", ">", "<p>", "&amp;", "&apos;", "&#39;", "&eacute;", "&#233;",
+                              "\u00E9", "\u00DF", "&euro;", "\u2013", "\u2028", "\u0085", "\r", "_", "?", "\u0130"};
+        Random rng = new Random(18);
+        for (int i = 0; i < 20000; i++)
+        {
+            StringBuilder text = new StringBuilder();
+            int length = rng.nextInt(20);
+            for (int j = 0; j < length; j++)
+            {
+                text.append(fragments[rng.nextInt(fragments.length)]);
+            }
+            checkTokens(text.toString());
+        }
+    }
+
+
+    private void checkTokens(String text)
+    {
+        List<String> expected = new ArrayList<String>();
+        for (String word : FeedUtils.stripMarkUpAndPunctuation(text).split("\\s+"))
+        {
+            if (word.length() > 0)
+            {
+                expected.add(word);
+            }
+        }
+        final List<String> actual = new ArrayList<String>();
+        tokeniser.tokenise(text, new Tokeniser.TokenHandler()
+        {
+            @Override
+            public void handleToken(char[] chars, int offset, int length)
+            {
+                actual.add(new String(chars, offset, length));
+            }
+        });
+        assert actual.equals(expected) : "Wrong tokens for \"" + text + "\": " + actual + ", expected " + expected;
+    }
+}
@@ -0,0 +1,65 @@
+// ============================================================================
+//   Copyright 2009-2012 Daniel W. Dyer
+//
+//   Licensed under the Apache License, Version 2.0 (the "License");
+//   you may not use this file except in compliance with the License.
+//   You may obtain a copy of the License at
+//
+//       http://www.apache.org/licenses/LICENSE-2.0
+//
+//   Unless required by applicable law or agreed to in writing, software
+//   distributed under the License is distributed on an "AS IS" BASIS,
+//   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+//   See the License for the specific language governing permissions and
+//   limitations under the License.
+// ============================================================================
+package org.uncommons.zeitgeist;
+
+import java.util.List;
+import org.testng.annotations.Test;
+
+/**
+ * Unit test for the {@link TopItems} class.
+ * @author Daniel Dyer
+ */
+public class TopItemsTest
+{
+    @Test
+    public void testKeepsHighestWeights()
+    {
+        TopItems<String> top = new TopItems<String>(3);
+        double[] weights = {5, 1, 9, 3, 7, 2, 8};
+        for (double weight : weights)
+        {
+            top.offer(new WeightedItem<String>(weight, "Item " + weight));
+        }
+        assert top.getCount() == weights.length : "Wrong count: " + top.getCount();
+        List<WeightedItem<String>> items = top.getItems();
+        assert items.size() == 3 : "Wrong number of items: " + items.size();
+        assert items.get(0).getWeight() == 9 : "Wrong first item: " + items.get(0);
+        assert items.get(1).getWeight() == 8 : "Wrong second item: " + items.get(1);
+        assert items.get(2).getWeight() == 7 : "Wrong third item: " + items.get(2);
+    }
+
+
+    @Test
+    public void testFewerItemsThanMaximum()
+    {
+        TopItems<String> top = new TopItems<String>(5);
+        top.offer(new WeightedItem<String>(1, "A"));
+        top.offer(new WeightedItem<String>(2, "B"));
+        List<WeightedItem<String>> items = top.getItems();
+        assert items.size() == 2 : "Wrong number of items: " + items.size();
+        assert items.get(0).getItem().equals("B") : "Wrong first item: " + items.get(0);
+    }
+
+
+    @Test
+    public void testZeroMaximum()
+    {
+        TopItems<String> top = new TopItems<String>(0);
+        top.offer(new WeightedItem<String>(1, "A"));
+        assert top.getCount() == 1 : "Wrong count: " + top.getCount();
+        assert top.getItems().isEmpty() : "No items should be retained.";
+    }
+}
@@ -0,0 +1,108 @@
+// ============================================================================
+//   Copyright 2009-2012 Daniel W. Dyer
+//
+//   Licensed under the Apache License, Version 2.0 (the "License");
+//   you may not use this file except in compliance with the License.
+//   You may obtain a copy of the License at
+//
+//       http://www.apache.org/licenses/LICENSE-2.0
+//
+//   Unless required by applicable law or agreed to in writing, software
+//   distributed under the License is distributed on an "AS IS" BASIS,
+//   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+//   See the License for the specific language governing permissions and
+//   limitations under the License.
+// ============================================================================
+package org.uncommons.zeitgeist;
+
+import java.util.Arrays;
+import java.util.Random;
+import org.testng.annotations.Test;
+
+/**
+ * Unit test for the {@link WarmStartInitialiser} class.
+ * @author Daniel Dyer
+ */
+public class WarmStartInitialiserTest
+{
+    /**
+     * Features for words that appeared previously must be carried over, even though the
+     * columns are in a different order.  New words and extra features get positive values.
+     */
+    @Test
+    public void testVocabularyRemapping()
+    {
+        Matrix previous = new Matrix(new double[][]{{1, 2, 3}, {4, 5, 6}});
+        FeatureModel model = new FeatureModel(previous, Arrays.asList("alpha", "beta", "gamma"));
+        WarmStartInitialiser initialiser = new WarmStartInitialiser(model, Arrays.asList("gamma", "delta", "alpha"));
+
+        Matrix matrix = new Matrix(4, 3, new Random(11));
+        Matrix weights = new Matrix(4, 3);
+        Matrix featuresTranspose = new Matrix(3, 3);
+        initialiser.initialise(matrix, weights, featuresTranspose, new Random(12), RowPartitioner.SERIAL);
+
+        assert featuresTranspose.get(0, 0) == 3 && featuresTranspose.get(0, 1) == 6 : "Column not carried over.";
+        assert featuresTranspose.get(2, 0) == 1 && featuresTranspose.get(2, 1) == 4 : "Column not carried over.";
+        for (int feature = 0; feature < 3; feature++)
+        {
+            assert featuresTranspose.get(1, feature) > 0 : "New word not initialised.";
+            for (int row = 0; row < 4; row++)
+            {
+                assert weights.get(row, feature) > 0 : "Weights not initialised.";
+            }
+        }
+        assert featuresTranspose.get(0, 2) > 0 && featuresTranspose.get(2, 2) > 0 : "New feature not initialised.";
+    }
+
+
+    /**
+     * A word that appears more than once in a saved model must not shift the columns of
+     * the words that follow it.
+     */
+    @Test
+    public void testDuplicateWords()
+    {
+        Matrix previous = new Matrix(new double[][]{{1, 2, 3}, {4, 5, 6}});
+        FeatureModel model = new FeatureModel(previous, Arrays.asList("alpha", "alpha", "beta"));
+        WarmStartInitialiser initialiser = new WarmStartInitialiser(model, Arrays.asList("beta"));
+
+        Matrix featuresTranspose = new Matrix(1, 2);
+        initialiser.initialise(new Matrix(4, 1, new Random(15)),
+                               new Matrix(4, 2),
+                               featuresTranspose,
+                               new Random(16),
+                               RowPartitioner.SERIAL);
+        assert featuresTranspose.get(0, 0) == 3 && featuresTranspose.get(0, 1) == 6 : "Wrong column carried over.";
+    }
+
+
+    /**
+     * Starting from the result of a previous factorisation of the same data should be
+     * (almost) as good as that result.
+     */
+    @Test
+    public void testWarmStart()
+    {
+        Random rng = new Random(13);
+        Matrix matrix = new Matrix(30, 3, rng).multiply(new Matrix(3, 40, rng));
+        Factoriser factoriser = new Factoriser();
+        factoriser.setSeed(14);
+        Matrix features = factoriser.factorise(matrix, 3).get(1);
+        String[] words = new String[40];
+        for (int i = 0; i < words.length; i++)
+        {
+            words[i] = "word" + i;
+        }
+        FeatureModel model = new FeatureModel(features, Arrays.asList(words));
+
+        Matrix weights = new Matrix(30, 3);
+        Matrix featuresTranspose = new Matrix(40, 3);
+        new WarmStartInitialiser(model, Arrays.asList(words)).initialise(matrix,
+                                                                         weights,
+                                                                         featuresTranspose,
+                                                                         rng,
+                                                                         RowPartitioner.SERIAL);
+        double cost = matrix.diffCost(weights.multiply(featuresTranspose.transpose()));
+        assert cost < matrix.squaredNorm() * 0.05 : "Poor starting point, error is " + cost;
+    }
+}
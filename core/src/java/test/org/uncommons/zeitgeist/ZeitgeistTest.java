@@ -1,11 +1,17 @@
 package org.uncommons.zeitgeist;
 
+import java.io.File;
+import java.io.IOException;
 import java.net.MalformedURLException;
 import java.net.URL;
+import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Collections;
 import java.util.Date;
+import java.util.HashSet;
+import java.util.LinkedList;
 import java.util.List;
+import java.util.Random;
 import org.testng.annotations.Test;
 
 /**
@@ -54,8 +60,12 @@ public class ZeitgeistTest
         // With no other constraints (e.g. minimum relevance > 0 or minimum number of articles or sources > 1),
         // a single article should result in a single topic.
         Zeitgeist zeitgeist = new Zeitgeist(Arrays.asList(createTestArticle()), 1, 1, 1, 0);
+        assert zeitgeist.getFactorisationResult() == null : "Should be no result before factorisation.";
         List<Topic> topics = zeitgeist.getTopics();
         assert topics.size() == 1 : "Wrong number of topics: " + topics.size();
+        FactorisationResult result = zeitgeist.getFactorisationResult();
+        assert result != null : "Factorisation result should be available.";
+        assert !result.getSatisfiedTerminationConditions().isEmpty() : "Should be a reason for stopping.";
     }
 
 
@@ -90,4 +100,363 @@ public class ZeitgeistTest
         List<Topic> topics = zeitgeist.getTopics();
         assert topics.isEmpty() : "Wrong number of topics: " + topics.size();
     }
+
+
+    /**
+     * The second analysis should start from the features saved by the first.
+     */
+    @Test(dependsOnMethods = "testSingleArticleAnalysis")
+    public void testFeatureModelFile() throws IOException
+    {
+        File file = File.createTempFile("features", ".txt");
+        file.delete();
+        try
+        {
+            Zeitgeist zeitgeist = new Zeitgeist(Arrays.asList(createTestArticle()), 1, 1, 1, 0);
+            zeitgeist.setFeatureModelFile(file);
+            zeitgeist.getTopics();
+            assert file.exists() : "Features were not saved.";
+            List<Topic> topics = zeitgeist.getTopics();
+            assert topics.size() == 1 : "Wrong number of topics: " + topics.size();
+        }
+        finally
+        {
+            file.delete();
+        }
+    }
+
+
+    /**
+     * However many articles match a topic, only the most relevant are kept, in order of
+     * relevance.
+     */
+    @Test(dependsOnMethods = "testSingleArticleAnalysis")
+    public void testMaxArticlesPerTopic() throws MalformedURLException
+    {
+        String[] subjects = {"election candidate votes", "football match goals", "storm weather flooding"};
+        List<Article> articles = new LinkedList<Article>();
+        for (int i = 0; i < 12; i++)
+        {
+            articles.add(new Article("Headline " + subjects[i % 3] + " " + i,
+                                     "Report about " + subjects[i % 3] + " number " + i,
+                                     new URL("http://source" + i + ".example.com/article"),
+                                     new Date(),
+                                     Collections.<Image>emptyList(),
+                                     "Feed Title",
+                                     null,
+                                     null));
+        }
+        Zeitgeist zeitgeist = new Zeitgeist(articles, 1, 3, 1, 0);
+        zeitgeist.setThreadCount(2);
+        List<Topic> topics = zeitgeist.getTopics();
+        assert !topics.isEmpty() : "Should be at least one topic.";
+        for (Topic topic : topics)
+        {
+            List<WeightedItem<Article>> topicArticles = topic.getArticles();
+            assert topicArticles.size() <= 3 : "Too many articles: " + topicArticles.size();
+            for (int i = 1; i < topicArticles.size(); i++)
+            {
+                assert topicArticles.get(i).getWeight() <= topicArticles.get(i - 1).getWeight()
+                    : "Articles should be sorted by weight.";
+            }
+        }
+    }
+
+
+    /**
+     * A maximum of Integer.MAX_VALUE means that there is no limit on the articles per topic.
+     */
+    @Test(dependsOnMethods = "testSingleArticleAnalysis")
+    public void testUnlimitedArticlesPerTopic() throws MalformedURLException
+    {
+        Zeitgeist zeitgeist = new Zeitgeist(Arrays.asList(createTestArticle()), 1, Integer.MAX_VALUE, 1, 0);
+        List<Topic> topics = zeitgeist.getTopics();
+        assert topics.size() == 1 : "Wrong number of topics: " + topics.size();
+        assert topics.get(0).getArticles().size() == 1 : "Wrong number of articles.";
+    }
+
+
+    /**
+     * The document-term matrix must not depend on how many threads build it, even though
+     * the threads allocate word IDs in an unpredictable order.
+     */
+    @Test
+    public void testParallelMatrix() throws MalformedURLException
+    {
+        List<Article> articles = createRandomArticles(400);
+        Zeitgeist zeitgeist = new Zeitgeist(articles, 3, 3, 1, 0);
+        List<String> serialWords = new ArrayList<String>();
+        SparseMatrix serial = zeitgeist.makeMatrix(articles, serialWords, RowPartitioner.SERIAL);
+        List<String> parallelWords = new ArrayList<String>();
+        RowPartitioner partitioner = new RowPartitioner(4);
+        SparseMatrix parallel = zeitgeist.makeMatrix(articles, parallelWords, partitioner);
+        partitioner.shutdown();
+
+        assert parallelWords.equals(serialWords) : "Key words should be the same.";
+        checkSameMatrix(parallel, serial);
+    }
+
+
+    /**
+     * Two passes must give the same matrix as one, even if the sketch is too small to
+     * reject many of the rare words.
+     */
+    @Test
+    public void testFrequencySketch() throws MalformedURLException
+    {
+        List<Article> articles = createRandomArticles(100);
+        Zeitgeist zeitgeist = new Zeitgeist(articles, 3, 3, 1, 0);
+        List<String> words = new ArrayList<String>();
+        SparseMatrix matrix = zeitgeist.makeMatrix(articles, words, RowPartitioner.SERIAL);
+        for (int width : new int[]{64, 1 << 16})
+        {
+            zeitgeist.setFrequencySketchWidth(width);
+            List<String> sketchedWords = new ArrayList<String>();
+            // Fresh articles, so that they haven't already counted their words.
+            SparseMatrix sketched = zeitgeist.makeMatrix(createRandomArticles(100),
+                                                         sketchedWords,
+                                                         RowPartitioner.SERIAL);
+            assert sketchedWords.equals(words) : "Key words should be the same.";
+            checkSameMatrix(sketched, matrix);
+        }
+    }
+
+
+    /**
+     * With many more hashed columns than words, words should not share columns, so the
+     * matrix should be the same as with one column per word, apart from the order of the
+     * columns.  With fewer columns, words must share them.
+     */
+    @Test
+    public void testHashedMatrix() throws MalformedURLException
+    {
+        List<Article> articles = createRandomArticles(100);
+        Zeitgeist zeitgeist = new Zeitgeist(articles, 3, 3, 1, 0);
+        List<String> words = new ArrayList<String>();
+        SparseMatrix matrix = zeitgeist.makeMatrix(articles, words, RowPartitioner.SERIAL);
+
+        zeitgeist.setHashedColumnCount(1 << 20);
+        List<String> hashedWords = new ArrayList<String>();
+        SparseMatrix hashed = zeitgeist.makeMatrix(articles, hashedWords, RowPartitioner.SERIAL);
+        checkSameColumns(hashed, hashedWords, matrix, words);
+
+        // Rare words can be filtered before they are hashed.
+        zeitgeist.setFrequencySketchWidth(1 << 16);
+        hashedWords.clear();
+        hashed = zeitgeist.makeMatrix(createRandomArticles(100), hashedWords, RowPartitioner.SERIAL);
+        checkSameColumns(hashed, hashedWords, matrix, words);
+        zeitgeist.setFrequencySketchWidth(0);
+
+        zeitgeist.setHashedColumnCount(16);
+        List<String> fewerWords = new ArrayList<String>();
+        SparseMatrix fewer = zeitgeist.makeMatrix(articles, fewerWords, RowPartitioner.SERIAL);
+        assert fewer.getColumnCount() <= 16 : "Too many columns: " + fewer.getColumnCount();
+        assert fewerWords.size() == fewer.getColumnCount() : "Should be one word per column.";
+        int wordCount = 0;
+        for (Article article : articles)
+        {
+            for (int count : article.getWordCounts().values())
+            {
+                wordCount += count;
+            }
+        }
+        assert fewer.sum() == wordCount : "Words should share columns, not be discarded.";
+    }
+
+
+    @Test(expectedExceptions = IllegalArgumentException.class)
+    public void testInvalidSketchWidth()
+    {
+        new Zeitgeist(Collections.<Article>emptyList(), 1, 1, 1, 1).setFrequencySketchWidth(-1);
+    }
+
+
+    /**
+     * Words that appear in more than the maximum number of articles should not be key words,
+     * and the others should be unaffected.
+     */
+    @Test
+    public void testMaxArticlesPerWord() throws MalformedURLException
+    {
+        List<Article> articles = createRandomArticles(100);
+        Zeitgeist zeitgeist = new Zeitgeist(articles, 3, 3, 1, 0);
+        List<String> words = new ArrayList<String>();
+        int[] frequencies = getColumnFrequencies(zeitgeist.makeMatrix(articles, words, RowPartitioner.SERIAL));
+        List<String> expectedWords = new ArrayList<String>();
+        for (int i = 0; i < words.size(); i++)
+        {
+            if (frequencies[i] <= 40)
+            {
+                expectedWords.add(words.get(i));
+            }
+        }
+        assert expectedWords.size() < words.size() : "Test articles should have some common words.";
+
+        zeitgeist.setMaxArticlesPerWord(40);
+        List<String> limitedWords = new ArrayList<String>();
+        zeitgeist.makeMatrix(articles, limitedWords, RowPartitioner.SERIAL);
+        assert limitedWords.equals(expectedWords) : "Wrong key words: " + limitedWords;
+
+        // The lower of the two limits applies.
+        zeitgeist.setMaxArticleFractionPerWord(0.5);
+        List<String> fractionWords = new ArrayList<String>();
+        zeitgeist.makeMatrix(articles, fractionWords, RowPartitioner.SERIAL);
+        assert fractionWords.equals(expectedWords) : "Wrong key words: " + fractionWords;
+        zeitgeist.setMaxArticleFractionPerWord(0.4);
+        fractionWords.clear();
+        zeitgeist.makeMatrix(articles, fractionWords, RowPartitioner.SERIAL);
+        assert fractionWords.equals(expectedWords) : "Wrong key words: " + fractionWords;
+    }
+
+
+    /**
+     * A word that was common in previous runs should not be a key word, even if it is
+     * not common in the current articles.
+     */
+    @Test
+    public void testCommonWordsFile() throws IOException
+    {
+        List<Article> articles = createRandomArticles(100);
+        Zeitgeist zeitgeist = new Zeitgeist(articles, 3, 3, 1, 0);
+        List<String> words = new ArrayList<String>();
+        int[] frequencies = getColumnFrequencies(zeitgeist.makeMatrix(articles, words, RowPartitioner.SERIAL));
+        String word = null;
+        for (int i = 0; word == null; i++)
+        {
+            if (frequencies[i] < 10)
+            {
+                word = words.get(i);
+            }
+        }
+
+        File file = File.createTempFile("common", ".txt");
+        try
+        {
+            CommonWords commonWords = new CommonWords();
+            commonWords.update(Collections.singletonMap(word, 1.0), 0.5);
+            commonWords.save(file);
+
+            zeitgeist.setMaxArticleFractionPerWord(0.5);
+            zeitgeist.setCommonWordsFile(file);
+            List<String> limitedWords = new ArrayList<String>();
+            zeitgeist.makeMatrix(articles, limitedWords, RowPartitioner.SERIAL);
+            assert !limitedWords.contains(word) : "Previously common word should not be a key word.";
+            assert CommonWords.load(file).isCommon(word, 0.5) : "Word should still be common.";
+        }
+        finally
+        {
+            file.delete();
+        }
+    }
+
+
+    @Test(expectedExceptions = IllegalArgumentException.class)
+    public void testInvalidMaxArticleFraction()
+    {
+        new Zeitgeist(Collections.<Article>emptyList(), 1, 1, 1, 1).setMaxArticleFractionPerWord(1.5);
+    }
+
+
+    @Test(expectedExceptions = IllegalArgumentException.class)
+    public void testInvalidHashedColumnCount()
+    {
+        new Zeitgeist(Collections.<Article>emptyList(), 1, 1, 1, 1).setHashedColumnCount(-1);
+    }
+
+
+    @Test(expectedExceptions = IllegalArgumentException.class)
+    public void testInvalidThreadCount()
+    {
+        new Zeitgeist(Collections.<Article>emptyList(), 1, 1, 1, 1).setThreadCount(0);
+    }
+
+
+    private List<Article> createRandomArticles(int count) throws MalformedURLException
+    {
+        String[] vocabulary = new String[300];
+        Random rng = new Random(22);
+        for (int i = 0; i < vocabulary.length; i++)
+        {
+            char[] word = new char[4 + rng.nextInt(6)];
+            for (int j = 0; j < word.length; j++)
+            {
+                word[j] = (char) ('a' + rng.nextInt(26));
+            }
+            vocabulary[i] = new String(word);
+        }
+        List<Article> articles = new LinkedList<Article>();
+        for (int i = 0; i < count; i++)
+        {
+            StringBuilder text = new StringBuilder();
+            for (int j = 0; j < 60; j++)
+            {
+                text.append(vocabulary[(int) Math.abs(rng.nextGaussian() * 50) % vocabulary.length]).append(' ');
+            }
+            articles.add(new Article("Headline " + i,
+                                     text.toString(),
+                                     new URL("http://localhost/article" + i),
+                                     new Date(),
+                                     Collections.<Image>emptyList(),
+                                     "Feed Title",
+                                     null,
+                                     null));
+        }
+        return articles;
+    }
+
+
+    /**
+     * @return The number of articles that each column's word appears in.
+     */
+    private int[] getColumnFrequencies(SparseMatrix matrix)
+    {
+        int[] frequencies = new int[matrix.getColumnCount()];
+        for (int row = 0; row < matrix.getRowCount(); row++)
+        {
+            for (int column = 0; column < matrix.getColumnCount(); column++)
+            {
+                if (matrix.get(row, column) != 0)
+                {
+                    ++frequencies[column];
+                }
+            }
+        }
+        return frequencies;
+    }
+
+
+    /**
+     * Checks that two matrices have the same columns, possibly in a different order.
+     */
+    private void checkSameColumns(SparseMatrix actual,
+                                  List<String> actualWords,
+                                  SparseMatrix expected,
+                                  List<String> expectedWords)
+    {
+        assert new HashSet<String>(actualWords).equals(new HashSet<String>(expectedWords)) : "Wrong key words.";
+        assert actual.getNonZeroCount() == expected.getNonZeroCount() : "Wrong number of non-zero elements.";
+        for (int column = 0; column < expectedWords.size(); column++)
+        {
+            int actualColumn = actualWords.indexOf(expectedWords.get(column));
+            for (int row = 0; row < expected.getRowCount(); row++)
+            {
+                assert actual.get(row, actualColumn) == expected.get(row, column) : "Wrong value at " + row + ", " + column;
+            }
+        }
+    }
+
+
+    private void checkSameMatrix(SparseMatrix actual, SparseMatrix expected)
+    {
+        assert actual.getRowCount() == expected.getRowCount() : "Wrong number of rows.";
+        assert actual.getColumnCount() == expected.getColumnCount() : "Wrong number of columns.";
+        assert actual.getNonZeroCount() == expected.getNonZeroCount() : "Wrong number of non-zero elements.";
+        for (int row = 0; row < expected.getRowCount(); row++)
+        {
+            for (int column = 0; column < expected.getColumnCount(); column++)
+            {
+                assert actual.get(row, column) == expected.get(row, column) : "Wrong value at " + row + ", " + column;
+            }
+        }
+    }
 }
@@ -0,0 +1,41 @@
+// ============================================================================
+//   Copyright 2009-2012 Daniel W. Dyer
+//
+//   Licensed under the Apache License, Version 2.0 (the "License");
+//   you may not use this file except in compliance with the License.
+//   You may obtain a copy of the License at
+//
+//       http://www.apache.org/licenses/LICENSE-2.0
+//
+//   Unless required by applicable law or agreed to in writing, software
+//   distributed under the License is distributed on an "AS IS" BASIS,
+//   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+//   See the License for the specific language governing permissions and
+//   limitations under the License.
+// ============================================================================
+package org.uncommons.zeitgeist.termination;
+
+import org.testng.annotations.Test;
+import org.uncommons.zeitgeist.IterationData;
+
+/**
+ * Unit test for the {@link IterationCount} termination condition.
+ * @author Daniel Dyer
+ */
+public class IterationCountTest
+{
+    @Test
+    public void testShouldTerminate()
+    {
+        TerminationCondition condition = new IterationCount(5);
+        assert !condition.shouldTerminate(new IterationData(4, 10, 20, 0)) : "Should not terminate before the iteration count is reached.";
+        assert condition.shouldTerminate(new IterationData(5, 10, 20, 0)) : "Should terminate once the iteration count is reached.";
+    }
+
+
+    @Test(expectedExceptions = IllegalArgumentException.class)
+    public void testNegativeIterationCount()
+    {
+        new IterationCount(-1);
+    }
+}
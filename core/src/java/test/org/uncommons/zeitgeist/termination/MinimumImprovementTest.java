@@ -0,0 +1,46 @@
+// ============================================================================
+//   Copyright 2009-2012 Daniel W. Dyer
+//
+//   Licensed under the Apache License, Version 2.0 (the "License");
+//   you may not use this file except in compliance with the License.
+//   You may obtain a copy of the License at
+//
+//       http://www.apache.org/licenses/LICENSE-2.0
+//
+//   Unless required by applicable law or agreed to in writing, software
+//   distributed under the License is distributed on an "AS IS" BASIS,
+//   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+//   See the License for the specific language governing permissions and
+//   limitations under the License.
+// ============================================================================
+package org.uncommons.zeitgeist.termination;
+
+import org.testng.annotations.Test;
+import org.uncommons.zeitgeist.IterationData;
+
+/**
+ * Unit test for the {@link MinimumImprovement} termination condition.
+ * @author Daniel Dyer
+ */
+public class MinimumImprovementTest
+{
+    @Test
+    public void testShouldTerminate()
+    {
+        TerminationCondition condition = new MinimumImprovement(0.01);
+        assert !condition.shouldTerminate(new IterationData(1, 98, 100, 0)) : "Should not terminate while improving by more than 1%.";
+        assert condition.shouldTerminate(new IterationData(1, 99.5, 100, 0)) : "Should terminate once improvement drops below 1%.";
+    }
+
+
+    /**
+     * If the cost reaches zero, the improvement is undefined (0/0) but there is no point
+     * continuing.
+     */
+    @Test
+    public void testZeroCost()
+    {
+        TerminationCondition condition = new MinimumImprovement(0.01);
+        assert condition.shouldTerminate(new IterationData(1, 0, 0, 0)) : "Should terminate with zero cost.";
+    }
+}
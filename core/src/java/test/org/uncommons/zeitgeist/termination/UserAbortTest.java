@@ -0,0 +1,39 @@
+// ============================================================================
+//   Copyright 2009-2012 Daniel W. Dyer
+//
+//   Licensed under the Apache License, Version 2.0 (the "License");
+//   you may not use this file except in compliance with the License.
+//   You may obtain a copy of the License at
+//
+//       http://www.apache.org/licenses/LICENSE-2.0
+//
+//   Unless required by applicable law or agreed to in writing, software
+//   distributed under the License is distributed on an "AS IS" BASIS,
+//   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+//   See the License for the specific language governing permissions and
+//   limitations under the License.
+// ============================================================================
+package org.uncommons.zeitgeist.termination;
+
+import org.testng.annotations.Test;
+import org.uncommons.zeitgeist.IterationData;
+
+/**
+ * Unit test for the {@link UserAbort} termination condition.
+ * @author Daniel Dyer
+ */
+public class UserAbortTest
+{
+    @Test
+    public void testAbort()
+    {
+        UserAbort condition = new UserAbort();
+        IterationData data = new IterationData(1, 10, 20, 0);
+        assert !condition.shouldTerminate(data) : "Should not terminate before abort.";
+        condition.abort();
+        assert condition.isAborted() : "Should be aborted.";
+        assert condition.shouldTerminate(data) : "Should terminate after abort.";
+        condition.reset();
+        assert !condition.shouldTerminate(data) : "Should not terminate after reset.";
+    }
+}
@@ -35,6 +35,7 @@ import java.util.Date;
 import java.util.HashSet;
 import java.util.LinkedList;
 import java.util.List;
+import java.util.Locale;
 import java.util.Properties;
 import java.util.Set;
 import java.util.regex.Matcher;
@@ -46,13 +47,26 @@ import org.stringtemplate.v4.STGroup;
 import org.stringtemplate.v4.STGroupFile;
 import org.uncommons.zeitgeist.Article;
 import org.uncommons.zeitgeist.ArticleFetcher;
+import org.uncommons.zeitgeist.Factoriser;
+import org.uncommons.zeitgeist.HALSSolver;
 import org.uncommons.zeitgeist.Image;
+import org.uncommons.zeitgeist.IterationRecorder;
+import org.uncommons.zeitgeist.MultiplicativeUpdateSolver;
+import org.uncommons.zeitgeist.NNDSVDInitialiser;
+import org.uncommons.zeitgeist.RandomAcolInitialiser;
+import org.uncommons.zeitgeist.RandomInitialiser;
+import org.uncommons.zeitgeist.StopWords;
+import org.uncommons.zeitgeist.StorageMode;
 import org.uncommons.zeitgeist.Topic;
 import org.uncommons.zeitgeist.WeightedItem;
 import org.uncommons.zeitgeist.Zeitgeist;
 import org.uncommons.zeitgeist.filters.ArticleFilter;
 import org.uncommons.zeitgeist.filters.DateFilter;
 import org.uncommons.zeitgeist.filters.HeadlineRegexFilter;
+import org.uncommons.zeitgeist.termination.ElapsedTime;
+import org.uncommons.zeitgeist.termination.IterationCount;
+import org.uncommons.zeitgeist.termination.MinimumImprovement;
+import org.uncommons.zeitgeist.termination.TerminationCondition;
 
 /**
  * Simple HTML publisher for a set of topics.
@@ -339,20 +353,184 @@ public class Publisher
         {
             filters.add(new HeadlineRegexFilter(regex));
         }
-        List<Article> articles = new ArticleFetcher().getArticles(feeds, filters);
-        List<Topic> topics = new Zeitgeist(articles,
-                                           Integer.parseInt(properties.getProperty("zeitgeist.minArticlesPerTopic")),
-                                           Integer.parseInt(properties.getProperty("zeitgeist.maxArticlesPerTopic")),
-                                           Integer.parseInt(properties.getProperty("zeitgeist.minSourcesPerTopic")),
-                                           Integer.parseInt(properties.getProperty("zeitgeist.minArticleRelevance"))).getTopics();
-        LOG.info(topics.size() + " topics identified.");
+        String lowValueWords = properties.getProperty("zeitgeist.lowValueWords");
+        if (lowValueWords != null)
+        {
+            Article.setLowValueWords(StopWords.read(new FileInputStream(lowValueWords)));
+        }
+        String sketchWidth = properties.getProperty("zeitgeist.frequencySketchWidth");
+        String hashedColumns = properties.getProperty("zeitgeist.hashedColumns");
+        ArticleFetcher fetcher = new ArticleFetcher();
+        // Extract the words while other feeds are still downloading, unless the words are
+        // to be extracted in two passes so that rare words are never kept, or hashed so
+        // that no words are kept.
+        fetcher.setPrepareWordCounts(sketchWidth == null && hashedColumns == null);
+        List<Article> articles = fetcher.getArticles(feeds, filters);
+        Zeitgeist zeitgeist = new Zeitgeist(articles,
+                                            Integer.parseInt(properties.getProperty("zeitgeist.minArticlesPerTopic")),
+                                            Integer.parseInt(properties.getProperty("zeitgeist.maxArticlesPerTopic")),
+                                            Integer.parseInt(properties.getProperty("zeitgeist.minSourcesPerTopic")),
+                                            Integer.parseInt(properties.getProperty("zeitgeist.minArticleRelevance")));
+        Factoriser factoriser = createFactoriser(properties);
+        String telemetryFormat = properties.getProperty("zeitgeist.telemetry");
+        IterationRecorder recorder = new IterationRecorder();
+        if (telemetryFormat != null)
+        {
+            factoriser.addObserver(recorder);
+        }
+        zeitgeist.setFactoriser(factoriser);
+        zeitgeist.setThreadCount(getThreadCount(properties));
+        if (sketchWidth != null)
+        {
+            zeitgeist.setFrequencySketchWidth(Integer.parseInt(sketchWidth));
+        }
+        if (hashedColumns != null)
+        {
+            zeitgeist.setHashedColumnCount(Integer.parseInt(hashedColumns));
+        }
+        String featureModel = properties.getProperty("zeitgeist.featureModel");
+        if (featureModel != null)
+        {
+            zeitgeist.setFeatureModelFile(new File(featureModel));
+        }
+        String maxArticlesPerWord = properties.getProperty("zeitgeist.maxArticlesPerWord");
+        if (maxArticlesPerWord != null)
+        {
+            zeitgeist.setMaxArticlesPerWord(Integer.parseInt(maxArticlesPerWord));
+        }
+        String maxArticleFractionPerWord = properties.getProperty("zeitgeist.maxArticleFractionPerWord");
+        if (maxArticleFractionPerWord != null)
+        {
+            zeitgeist.setMaxArticleFractionPerWord(Double.parseDouble(maxArticleFractionPerWord));
+        }
+        String commonWords = properties.getProperty("zeitgeist.commonWordsFile");
+        if (commonWords != null)
+        {
+            zeitgeist.setCommonWordsFile(new File(commonWords));
+        }
+        List<Topic> topics = zeitgeist.getTopics();
+        LOG.info(topics.size() + " topics identified, factorisation stopped by "
+                 + zeitgeist.getFactorisationResult().getSatisfiedTerminationConditions());
         String templatesFile = properties.getProperty("zeitgeist.templatesFile");
         Publisher publisher = templatesFile != null ? new Publisher(new File(templatesFile)) : new Publisher();
+        File outputDir = new File(".");
         publisher.publish(topics,
                           properties.getProperty("zeitgeist.title"),
                           feeds.size(),
                           articles.size(),
-                          new File("."));
+                          outputDir);
+        if (telemetryFormat != null)
+        {
+            writeTelemetry(recorder, telemetryFormat, outputDir);
+        }
+    }
+
+
+    /**
+     * Write the progress of the factorisation to a file in the output directory.
+     * @param format Either "csv" or "json".
+     */
+    private static void writeTelemetry(IterationRecorder recorder,
+                                       String format,
+                                       File outputDir) throws IOException
+    {
+        boolean json = format.equalsIgnoreCase("json");
+        if (!json && !format.equalsIgnoreCase("csv"))
+        {
+            throw new IllegalArgumentException("Unknown telemetry format: " + format);
+        }
+        File file = new File(outputDir, json ? "factorisation.json" : "factorisation.csv");
+        Writer writer = new OutputStreamWriter(new FileOutputStream(file), ENCODING);
+        try
+        {
+            if (json)
+            {
+                recorder.writeJSON(writer);
+            }
+            else
+            {
+                recorder.writeCSV(writer);
+            }
+        }
+        finally
+        {
+            writer.close();
+        }
+    }
+
+
+    /**
+     * Configure the matrix factorisation according to the specified properties.
+     */
+    private static Factoriser createFactoriser(Properties properties)
+    {
+        Factoriser factoriser = new Factoriser();
+        factoriser.setThreadCount(getThreadCount(properties));
+        String solver = properties.getProperty("zeitgeist.solver", "multiplicative");
+        if (solver.equalsIgnoreCase("hals"))
+        {
+            factoriser.setSolver(new HALSSolver());
+        }
+        else if (solver.equalsIgnoreCase("multiplicative"))
+        {
+            factoriser.setSolver(new MultiplicativeUpdateSolver());
+        }
+        else
+        {
+            throw new IllegalArgumentException("Unknown solver: " + solver);
+        }
+        String initialisation = properties.getProperty("zeitgeist.initialisation", "random");
+        if (initialisation.equalsIgnoreCase("nndsvd"))
+        {
+            factoriser.setInitialiser(new NNDSVDInitialiser());
+        }
+        else if (initialisation.equalsIgnoreCase("acol"))
+        {
+            factoriser.setInitialiser(new RandomAcolInitialiser());
+        }
+        else if (initialisation.equalsIgnoreCase("random"))
+        {
+            factoriser.setInitialiser(new RandomInitialiser());
+        }
+        else
+        {
+            throw new IllegalArgumentException("Unknown initialisation: " + initialisation);
+        }
+        String seed = properties.getProperty("zeitgeist.seed");
+        if (seed != null)
+        {
+            factoriser.setSeed(Long.parseLong(seed));
+        }
+        String restarts = properties.getProperty("zeitgeist.restarts");
+        if (restarts != null)
+        {
+            factoriser.setRestarts(Integer.parseInt(restarts));
+        }
+        String storage = properties.getProperty("zeitgeist.storage", "double");
+        factoriser.setStorageMode(StorageMode.valueOf(storage.toUpperCase(Locale.ENGLISH)));
+        // Always stop once the improvement drops below 1%, possibly sooner if there are limits on time or iterations.
+        List<TerminationCondition> conditions = new ArrayList<TerminationCondition>();
+        conditions.add(new MinimumImprovement(0.01));
+        String maxIterations = properties.getProperty("zeitgeist.maxIterations");
+        if (maxIterations != null)
+        {
+            conditions.add(new IterationCount(Integer.parseInt(maxIterations)));
+        }
+        String maxSeconds = properties.getProperty("zeitgeist.maxFactorisationSeconds");
+        if (maxSeconds != null)
+        {
+            conditions.add(new ElapsedTime(Long.parseLong(maxSeconds) * 1000));
+        }
+        factoriser.setTerminationConditions(conditions.toArray(new TerminationCondition[conditions.size()]));
+        return factoriser;
+    }
+
+
+    private static int getThreadCount(Properties properties)
+    {
+        // By default, use all available processors.
+        String threads = properties.getProperty("zeitgeist.threads");
+        return threads == null ? Runtime.getRuntime().availableProcessors() : Integer.parseInt(threads);
     }
 
 